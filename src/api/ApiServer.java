@@ -0,0 +1,556 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import controller.AlertScheduler;
+import controller.StockReconciler;
+import dao.AlertDAO;
+import dao.BloodRequestDAO;
+import dao.BloodUnitDAO;
+import dao.ConnectionPool;
+import dao.DatabaseConnection;
+import dao.DonorDAO;
+import dao.FulfillmentResult;
+import dao.LatencyHistogram;
+import dao.ListQuery;
+import dao.SchemaMigrator;
+import model.Alert;
+import model.BloodRequest;
+import model.BloodUnit;
+import model.Donor;
+import model.Validation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Headless JSON API for hospital systems, for running without a display (e.g. in the
+ * container). It calls the same DAOs as the Swing pages:
+ *
+ *   GET  /api/stock                    available / pending / free units of every blood type
+ *   GET  /api/stock/{type}             the same for one type, e.g. /api/stock/AB-
+ *   POST /api/requests                 {"blood_type":"O+","quantity":2,"request_date":"2026-05-01"}
+ *   GET  /api/requests/{id}            one request
+ *   POST /api/requests/{id}/fulfill    FEFO allocation, as MARK FULFILLED on the requests page
+ *   GET  /api/alerts                   ?type=Expired&blood_type=A%2B&from=..&to=..&limit=100
+ *   POST /api/donations                {"donor_id":12,"quantity":1,"donation_date":"2026-05-01"}
+ *   GET  /api/events                   stock, request and alert changes as Server-Sent Events
+ *                                      (see EventStream)
+ *   GET  /api/metrics                  per-endpoint counts and latency percentiles, pool stats
+ *   GET  /api/health
+ *
+ * Every exchange runs on its own virtual thread, so thousands of slow clients cost little;
+ * the database is still reached through the bounded ConnectionPool (db.pool.max-size).
+ * At most api.max-in-flight calls are worked on at once; beyond that the server answers
+ * 503 with Retry-After at once instead of queueing. A call that takes longer than
+ * api.timeout-ms gets 504 (the statement it started may still finish in the background).
+ *
+ * If api.key (or BLOODBANK_API_KEY) is set, every call except /api/health must send it
+ * in the X-Api-Key header.
+ *
+ *   java -cp out:lib/mysql-connector.jar api.ApiServer [port]     (default 8080, or api.port)
+ */
+public class ApiServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    static final long TIMEOUT_MS = Long.getLong("api.timeout-ms", 10_000);
+    static final int MAX_IN_FLIGHT = Integer.getInteger("api.max-in-flight", 4_096);
+
+    private static final int BACKLOG = Integer.getInteger("api.backlog", 1_024);
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_ALERTS = 1_000;
+    private static final int SHELF_LIFE_DAYS = 35;   // same as a donation recorded on the donor page
+
+    /** A route's handler; runs on a virtual thread. */
+    private interface Handler {
+        Reply handle(Call call) throws Exception;
+    }
+
+    /** A long-lived route that answers the exchange itself; returns a Reply only to refuse. */
+    private interface StreamHandler {
+        Reply serve(HttpExchange exchange);
+    }
+
+    /** A failure to report to the client with this status code. */
+    static final class ApiError extends RuntimeException {
+        final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>(); // fixed after the constructor
+    private final EndpointStats unmatched = new EndpointStats();
+    private final byte[] apiKey;
+    private final long startedAt = System.currentTimeMillis();
+    private final EventStream events = new EventStream();
+
+    private final BloodRequestDAO requestDAO = new BloodRequestDAO();
+    private final BloodUnitDAO unitDAO = new BloodUnitDAO();
+    private final DonorDAO donorDAO = new DonorDAO();
+    private final AlertDAO alertDAO = new AlertDAO();
+
+    public ApiServer(InetSocketAddress address, String apiKey) throws IOException {
+        this.apiKey = apiKey == null || apiKey.isEmpty() ? null : apiKey.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(workers);
+        server.createContext("/", this::dispatch);
+
+        route("GET", "/api/health", c -> new Reply(200, Json.object("status", "ok")));
+        route("GET", "/api/stock", this::stock);
+        route("GET", "/api/stock/{type}", this::stockOfType);
+        route("POST", "/api/requests", this::submitRequest);
+        route("GET", "/api/requests/{id}", this::getRequest);
+        route("POST", "/api/requests/{id}/fulfill", this::fulfillRequest);
+        route("GET", "/api/alerts", this::alerts);
+        route("POST", "/api/donations", this::registerDonation);
+        route("GET", "/api/metrics", c -> new Reply(200, metrics()));
+        streamRoute("GET", "/api/events", events::serve);
+        stats.put("unmatched", unmatched);
+    }
+
+    public static void main(String[] args) throws Exception {
+        // The JDK server's own limit, so a client that stalls mid-request can't hold a connection forever.
+        // (No maxRspTime: it would also cut off the long-lived /api/events streams.)
+        System.setProperty("sun.net.httpserver.maxReqTime", System.getProperty("sun.net.httpserver.maxReqTime", "30"));
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("api.port", DEFAULT_PORT);
+        String key = System.getProperty("api.key", System.getenv("BLOODBANK_API_KEY"));
+
+        SchemaMigrator.migrate();
+        AlertScheduler.getInstance().start();   // keeps /api/alerts and the expiry index current
+        StockReconciler.getInstance().start();
+
+        ApiServer api = new ApiServer(new InetSocketAddress(port), key);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.stop(2);
+            AlertScheduler.getInstance().shutdown();
+            DatabaseConnection.shutdown();
+        }, "api-shutdown"));
+        api.start();
+        System.out.println("API listening on port " + port + (key == null ? " (no API key set)" : ""));
+    }
+
+    public void start() { server.start(); }
+
+    /** Stops accepting connections and waits up to 'seconds' for the open exchanges. */
+    public void stop(int seconds) {
+        events.close();
+        server.stop(seconds);
+        workers.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() { return server.getAddress(); }
+
+    // --- Endpoints ---
+
+    private Reply stock(Call c) throws SQLException {
+        Map<String, int[]> summary = requestDAO.getStockSummary();
+        List<Object> types = new ArrayList<>();
+        for (String type : Validation.BLOOD_TYPES) types.add(stockJson(type, summary.get(type)));
+        return new Reply(200, Json.object("stock", types));
+    }
+
+    private Reply stockOfType(Call c) throws SQLException {
+        String type = bloodType(c.path(1));
+        return new Reply(200, stockJson(type, requestDAO.getStockSummary().get(type)));
+    }
+
+    private Reply submitRequest(Call c) throws SQLException, IOException {
+        Map<String, Object> body = c.body();
+        String type = bloodType(string(body, "blood_type", null));
+        int quantity = positiveInt(body, "quantity", null);
+        LocalDate date = date(string(body, "request_date", LocalDate.now().toString()), "request_date");
+
+        // Same rule as the requests page: no request for more than is in stock
+        int available = requestDAO.getTotalStockForType(type);
+        if (available < quantity) {
+            throw new ApiError(409, "Insufficient stock: " + available + " unit(s) of " + type + " available.");
+        }
+        BloodRequest request = new BloodRequest(type, quantity, date, false);
+        if (!requestDAO.saveRequest(request)) throw new ApiError(500, "The request was not saved.");
+        return new Reply(201, requestJson(request)).header("Location", "/api/requests/" + request.getRequestId());
+    }
+
+    private Reply getRequest(Call c) throws SQLException {
+        BloodRequest request = requestDAO.getRequestById(c.pathInt(1));
+        if (request == null) throw new ApiError(404, "No request " + c.path(1) + ".");
+        return new Reply(200, requestJson(request));
+    }
+
+    private Reply fulfillRequest(Call c) throws SQLException {
+        FulfillmentResult r = requestDAO.fulfillRequest(c.pathInt(1));
+        List<Object> allocations = new ArrayList<>();
+        for (FulfillmentResult.Allocation a : r.getAllocations()) {
+            allocations.add(Json.object("blood_id", a.getBloodId(), "taken", a.getTaken(), "remaining", a.getRemaining()));
+        }
+        Map<String, Object> json = Json.object("request_id", r.getRequestId(), "status", r.getStatus(),
+                "blood_type", r.getBloodType(), "requested", r.getRequested(), "available", r.getAvailable(),
+                "allocations", allocations, "message", r.toString());
+        switch (r.getStatus()) {
+            case FULFILLED: return new Reply(200, json);
+            case NOT_FOUND: return new Reply(404, json);
+            default:        return new Reply(409, json);   // already fulfilled, or not enough stock
+        }
+    }
+
+    private Reply alerts(Call c) throws SQLException {
+        ListQuery q = ListQuery.ALL
+                .withBloodType(c.query("blood_type") == null ? null : bloodType(c.query("blood_type")))
+                .withStatus(c.query("type"))
+                .withDates(c.query("from") == null ? null : date(c.query("from"), "from"),
+                        c.query("to") == null ? null : date(c.query("to"), "to"));
+        int limit = c.query("limit") == null ? 100 : Math.min(MAX_ALERTS, positive(c.query("limit"), "limit"));
+        List<Object> alerts = new ArrayList<>();
+        for (Alert a : alertDAO.getAlertsAfter(q, null, limit)) {
+            alerts.add(Json.object("alert_id", a.getAlertId(), "blood_id", a.getBloodId(),
+                    "blood_type", a.getBloodTypeDetails(), "alert_type", a.getAlertType(),
+                    "date_generated", a.getDateGenerated(), "status", a.getStatus()));
+        }
+        return new Reply(200, Json.object("count", alerts.size(), "alerts", alerts));
+    }
+
+    private Reply registerDonation(Call c) throws SQLException, IOException {
+        Map<String, Object> body = c.body();
+        int donorId = positiveInt(body, "donor_id", null);
+        int quantity = positiveInt(body, "quantity", 1);
+        LocalDate donated = date(string(body, "donation_date", LocalDate.now().toString()), "donation_date");
+        LocalDate expires = date(string(body, "expiry_date", donated.plusDays(SHELF_LIFE_DAYS).toString()), "expiry_date");
+        String error = Validation.bloodUnitError(donated, expires);
+        if (error != null) throw new ApiError(400, error);
+
+        Donor donor = donorDAO.getDonorById(donorId);
+        if (donor == null) throw new ApiError(404, "No donor " + donorId + ".");
+        BloodUnit unit = new BloodUnit(donor.getBloodType(), quantity, donated, expires, donorId);
+        if (!unitDAO.saveBloodUnit(unit)) throw new ApiError(500, "The donation was not saved.");
+        return new Reply(201, Json.object("blood_id", unit.getBloodId(), "blood_type", unit.getBloodType(),
+                "quantity", unit.getQuantity(), "donation_date", unit.getDonationDate(),
+                "expiry_date", unit.getExpiryDate(), "donor_id", unit.getDonorId()));
+    }
+
+    private Map<String, Object> metrics() {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<String, EndpointStats> e : stats.entrySet()) {
+            if (e.getValue().latency.getCount() > 0) endpoints.put(e.getKey(), e.getValue().toJson());
+        }
+        Map<String, Object> json = Json.object(
+                "uptime_s", (System.currentTimeMillis() - startedAt) / 1000,
+                "in_flight", MAX_IN_FLIGHT - inFlight.availablePermits(),
+                "max_in_flight", MAX_IN_FLIGHT,
+                "endpoints", endpoints,
+                "deadlock_retries", BloodRequestDAO.getDeadlockRetryCount(),
+                "events", events.metrics());
+        try {
+            ConnectionPool pool = DatabaseConnection.getPool();
+            json.put("pool", Json.object("max", pool.getMaxSize(), "active", pool.getActiveCount(),
+                    "idle", pool.getIdleCount(), "borrows", pool.getBorrowCount(), "waits", pool.getWaitCount(),
+                    "timeouts", pool.getTimeoutCount(), "avg_borrow_ms", pool.getAverageBorrowMillis(),
+                    "max_borrow_ms", pool.getMaxBorrowMillis()));
+        } catch (SQLException e) {
+            json.put("pool", Json.object("error", e.getMessage()));
+        }
+        return json;
+    }
+
+    static Map<String, Object> stockJson(String type, int[] counters) {
+        int available = counters == null ? 0 : counters[0];
+        int pending = counters == null ? 0 : counters[1];
+        return Json.object("blood_type", type, "available", available, "pending", pending, "free", available - pending);
+    }
+
+    private static Map<String, Object> requestJson(BloodRequest r) {
+        return Json.object("request_id", r.getRequestId(), "blood_type", r.getBloodType(), "quantity", r.getQuantity(),
+                "request_date", r.getRequestDate(), "fulfilled", r.isFulfilled());
+    }
+
+    // --- Dispatch ---
+
+    private void route(String method, String template, Handler handler) {
+        String name = method + " " + template;
+        EndpointStats s = new EndpointStats();
+        stats.put(name, s);
+        routes.add(new Route(method, Pattern.compile(template.replaceAll("\\{[^/]+}", "([^/]+)")), handler, null, s));
+    }
+
+    private void streamRoute(String method, String path, StreamHandler handler) {
+        EndpointStats s = new EndpointStats();
+        stats.put(method + " " + path, s);
+        routes.add(new Route(method, Pattern.compile(Pattern.quote(path)), null, handler, s));
+    }
+
+    // Runs on the exchange's virtual thread
+    private void dispatch(HttpExchange ex) {
+        long start = System.nanoTime();
+        EndpointStats s = unmatched;
+        Reply reply;
+        try {
+            String path = ex.getRequestURI().getPath();
+            Route route = null;
+            Matcher match = null;
+            boolean pathKnown = false;
+            for (Route r : routes) {
+                Matcher m = r.pattern.matcher(path);
+                if (!m.matches()) continue;
+                pathKnown = true;
+                if (r.method.equals(ex.getRequestMethod())) { route = r; match = m; break; }
+            }
+            if (route == null) {
+                reply = error(pathKnown ? 405 : 404, pathKnown ? "Method not allowed." : "No such endpoint.");
+            } else {
+                s = route.stats;
+                if (!authorized(ex, path)) reply = error(401, "Missing or wrong X-Api-Key.");
+                else if (route.stream != null) reply = route.stream.serve(ex); // null: it answered the exchange
+                else reply = call(route, new Call(ex, match));
+            }
+        } catch (RuntimeException e) {
+            reply = error(500, e.toString());
+        }
+        if (reply == null) {
+            s.record(System.nanoTime() - start, 200);
+            return;
+        }
+        if (reply.status == 504) s.timeouts.increment();
+        send(ex, reply);
+        s.record(System.nanoTime() - start, reply.status);
+    }
+
+    // Admission, then the handler on its own virtual thread so it can be abandoned at the deadline
+    private Reply call(Route route, Call call) {
+        if (!inFlight.tryAcquire()) return error(503, "Server busy, try again.").header("Retry-After", "1");
+        try {
+            Future<Reply> result = workers.submit(() -> route.handler.handle(call));
+            try {
+                return result.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                result.cancel(true);
+                return error(504, "No answer within " + TIMEOUT_MS + " ms.");
+            } catch (ExecutionException e) {
+                return failure(e.getCause());
+            } catch (InterruptedException e) {
+                result.cancel(true);
+                Thread.currentThread().interrupt();
+                return error(503, "Server is shutting down.");
+            }
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private static Reply failure(Throwable t) {
+        if (t instanceof ApiError) return error(((ApiError) t).status, t.getMessage());
+        if (t instanceof IllegalArgumentException) return error(400, t.getMessage());
+        // The pool gave up waiting for a free connection: overloaded, not broken
+        if (t instanceof SQLTransientConnectionException) return error(503, t.getMessage()).header("Retry-After", "1");
+        if (t instanceof SQLException) return error(500, "Database error: " + t.getMessage());
+        return error(500, t.toString());
+    }
+
+    private boolean authorized(HttpExchange ex, String path) {
+        if (apiKey == null || path.equals("/api/health")) return true;
+        String given = ex.getRequestHeaders().getFirst("X-Api-Key");
+        return given != null && MessageDigest.isEqual(apiKey, given.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange ex, Reply reply) {
+        try (HttpExchange exchange = ex) {
+            byte[] body = Json.write(reply.body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            for (Map.Entry<String, String> h : reply.headers.entrySet()) exchange.getResponseHeaders().set(h.getKey(), h.getValue());
+            exchange.sendResponseHeaders(reply.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // The client went away; nothing left to tell it
+        }
+    }
+
+    static Reply error(int status, String message) {
+        return new Reply(status, Json.object("error", message));
+    }
+
+    // --- Input parsing (IllegalArgumentException / ApiError become 4xx) ---
+
+    private static String bloodType(String value) {
+        String type = value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+        if (!Validation.isBloodType(type)) throw new ApiError(400, "Unknown blood type '" + value + "'.");
+        return type;
+    }
+
+    private static String string(Map<String, Object> body, String field, String defaultValue) {
+        Object v = body.get(field);
+        if (v == null) {
+            if (defaultValue == null) throw new ApiError(400, "Missing field '" + field + "'.");
+            return defaultValue;
+        }
+        return v.toString();
+    }
+
+    private static int positiveInt(Map<String, Object> body, String field, Integer defaultValue) {
+        Object v = body.get(field);
+        if (v == null) {
+            if (defaultValue == null) throw new ApiError(400, "Missing field '" + field + "'.");
+            return defaultValue;
+        }
+        if (!(v instanceof Long) || (Long) v <= 0 || (Long) v > Integer.MAX_VALUE) {
+            throw new ApiError(400, field + " must be a positive whole number.");
+        }
+        return (int) (long) (Long) v;
+    }
+
+    private static int positive(String value, String name) {
+        try {
+            int v = Integer.parseInt(value);
+            if (v > 0) return v;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ApiError(400, name + " must be a positive whole number.");
+    }
+
+    private static LocalDate date(String value, String name) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiError(400, name + " must be a date (yyyy-MM-dd).");
+        }
+    }
+
+    // --- Plumbing ---
+
+    private static final class Route {
+        final String method;
+        final Pattern pattern;
+        final Handler handler;
+        final StreamHandler stream;
+        final EndpointStats stats;
+
+        Route(String method, Pattern pattern, Handler handler, StreamHandler stream, EndpointStats stats) {
+            this.method = method;
+            this.pattern = pattern;
+            this.handler = handler;
+            this.stream = stream;
+            this.stats = stats;
+        }
+    }
+
+    /** One exchange as the handler sees it. */
+    private static final class Call {
+        private final HttpExchange exchange;
+        private final Matcher path;
+        private Map<String, String> query;
+
+        Call(HttpExchange exchange, Matcher path) {
+            this.exchange = exchange;
+            this.path = path;
+        }
+
+        String path(int group) { return path.group(group); }
+
+        int pathInt(int group) { return positive(path(group), "id"); }
+
+        /** A query parameter (decoded), or null. */
+        String query(String name) {
+            if (query == null) {
+                query = new HashMap<>();
+                String raw = exchange.getRequestURI().getRawQuery();
+                if (raw != null) {
+                    for (String pair : raw.split("&")) {
+                        int eq = pair.indexOf('=');
+                        String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                        String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                        query.putIfAbsent(key, value);
+                    }
+                }
+            }
+            String v = query.get(name);
+            return v == null || v.isEmpty() ? null : v;
+        }
+
+        Map<String, Object> body() throws IOException {
+            byte[] bytes;
+            try (InputStream in = exchange.getRequestBody()) {
+                bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (bytes.length > MAX_BODY_BYTES) throw new ApiError(413, "Body is larger than " + MAX_BODY_BYTES + " bytes.");
+            if (bytes.length == 0) throw new ApiError(400, "Expected a JSON object in the body.");
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    static final class Reply {
+        final int status;
+        final Object body;
+        final Map<String, String> headers = new HashMap<>(2);
+
+        Reply(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        Reply header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    /** Latency of every call to one endpoint, and how its calls ended. */
+    private static final class EndpointStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder ok = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+
+        void record(long nanos, int status) {
+            latency.record(nanos);
+            if (status >= 500) serverErrors.increment();
+            else if (status >= 400) clientErrors.increment();
+            else ok.increment();
+        }
+
+        Map<String, Object> toJson() {
+            return Json.object("count", latency.getCount(), "2xx", ok.sum(), "4xx", clientErrors.sum(),
+                    "5xx", serverErrors.sum(), "timeouts", timeouts.sum(),
+                    "mean_ms", round(latency.getMeanMillis()), "p50_ms", round(latency.percentileMillis(50)),
+                    "p90_ms", round(latency.percentileMillis(90)), "p99_ms", round(latency.percentileMillis(99)),
+                    "max_ms", round(latency.getMaxMillis()));
+        }
+
+        private static double round(double ms) {
+            return Math.round(ms * 100) / 100.0;
+        }
+    }
+}
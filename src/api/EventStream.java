@@ -0,0 +1,307 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import dao.AlertDAO;
+import dao.BloodRequestDAO;
+import dao.ChangeBus;
+import dao.ChangeEvent;
+import model.BloodRequest;
+import model.Validation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * GET /api/events: committed changes as Server-Sent Events, so dashboards don't poll.
+ *
+ *   event: stock      {"blood_type":"O+","available":41,"pending":6,"free":35}
+ *   event: request    {"request_id":7,"change":"REQUEST_FULFILLED","blood_type":"O+","quantity":2}
+ *   event: alerts     {"created":3}
+ *   event: resync     {}   the client fell behind and events were dropped; re-read what it shows
+ *
+ * A new connection first gets the stock of every blood type, then changes as they commit.
+ *
+ * The ChangeBus only carries this JVM's writes, and the desks write to the same database,
+ * so the database itself is the source: every POLL_MS the sse-stock-flush thread reads the
+ * stock counters, the open requests plus any request past the last one seen, and the
+ * count of alerts past the last alert_id seen, and publishes what changed. A change
+ * published on the ChangeBus (from the writing thread; changed() only records it, so a
+ * writer never waits for a client) brings that poll forward to COALESCE_MS later, so
+ * this server's own writes still show up at once. Either way one poll answers every
+ * client, however many there are, and each change is published once. Each client has its own buffer of at most BUFFER_EVENTS changes,
+ * keyed so that a newer change to the same thing (a blood type's stock, a request)
+ * replaces the older one. A client that can't keep up overflows its buffer: the buffer
+ * is emptied and the client gets a resync, instead of the server holding more for it.
+ */
+final class EventStream implements ChangeBus.Listener {
+
+    static final int MAX_SUBSCRIBERS = Integer.getInteger("api.events.max-subscribers", 1_000);
+    static final int BUFFER_EVENTS = Integer.getInteger("api.events.buffer", 256);
+    static final long COALESCE_MS = Long.getLong("api.events.coalesce-ms", 250);
+    static final long POLL_MS = Long.getLong("api.events.poll-ms", 5_000);
+    private static final long HEARTBEAT_MS = 15_000;
+
+    private final BloodRequestDAO requestDAO = new BloodRequestDAO();
+    private final AlertDAO alertDAO = new AlertDAO();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyTypes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pollScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong eventIds = new AtomicLong();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder stockReads = new LongAdder();
+    private final LongAdder polls = new LongAdder();
+    private volatile Map<String, int[]> levels; // the last stock read, for new subscribers
+
+    // What the last poll saw; only used on the sse-stock-flush thread
+    private boolean primed;
+    private int lastRequestId;
+    private Map<Integer, BloodRequest> openRequests = new HashMap<>();
+    private int lastAlertId;
+
+    EventStream() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-stock-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        ChangeBus.getInstance().addListener(this);
+        flusher.scheduleWithFixedDelay(this::poll, 0, POLL_MS, TimeUnit.MILLISECONDS); // the first run only primes
+    }
+
+    void close() {
+        ChangeBus.getInstance().removeListener(this);
+        flusher.shutdownNow();
+    }
+
+    // On the writer's thread, right after its commit: record and return. The poll publishes it.
+    @Override
+    public void changed(ChangeEvent e) {
+        if (e.getKind() == ChangeEvent.Kind.STOCK) dirtyTypes.add(e.getBloodType());
+        if (pollScheduled.compareAndSet(false, true)) {
+            flusher.schedule(this::poll, COALESCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // One read of the counters, requests and alerts for every change since the last poll, shared by all subscribers
+    private void poll() {
+        pollScheduled.set(false);
+        List<String> types = new ArrayList<>(dirtyTypes);
+        dirtyTypes.removeAll(types);
+        try {
+            pollStock(types);
+            pollRequests();
+            pollAlerts();
+            primed = true;
+            polls.increment();
+        } catch (SQLException | RuntimeException ex) {
+            // Caught so the periodic poll keeps running; the next one catches up
+            System.err.println("Event poll failed: " + ex.getMessage());
+            dirtyTypes.addAll(types);
+        }
+    }
+
+    private void pollStock(List<String> dirty) throws SQLException {
+        Map<String, int[]> before = levels;
+        Map<String, int[]> now = readLevels();
+        Set<String> changed = new LinkedHashSet<>(dirty);
+        if (before != null) {
+            for (Map.Entry<String, int[]> e : now.entrySet()) {
+                if (!Arrays.equals(before.get(e.getKey()), e.getValue())) changed.add(e.getKey());
+            }
+        }
+        for (String type : changed) offerAll("stock:" + type, "stock", ApiServer.stockJson(type, now.get(type)));
+    }
+
+    // New requests are found by id; fulfilled and deleted ones by leaving the open set
+    private void pollRequests() throws SQLException {
+        Map<Integer, BloodRequest> open = new HashMap<>();
+        int last = lastRequestId;
+        for (BloodRequest r : requestDAO.getOpenRequestsOrAfter(lastRequestId)) {
+            if (!r.isFulfilled()) open.put(r.getRequestId(), r);
+            if (r.getRequestId() > lastRequestId) {
+                last = Math.max(last, r.getRequestId());
+                if (primed) {
+                    offerRequest(r.isFulfilled() ? ChangeEvent.Kind.REQUEST_FULFILLED : ChangeEvent.Kind.REQUEST_CREATED, r);
+                }
+            }
+        }
+        for (BloodRequest was : openRequests.values()) {
+            if (open.containsKey(was.getRequestId())) continue;
+            boolean deleted = requestDAO.getRequestById(was.getRequestId()) == null;
+            offerRequest(deleted ? ChangeEvent.Kind.REQUEST_DELETED : ChangeEvent.Kind.REQUEST_FULFILLED, was);
+        }
+        openRequests = open;
+        lastRequestId = last;
+    }
+
+    private void offerRequest(ChangeEvent.Kind change, BloodRequest r) {
+        offerAll("request:" + r.getRequestId(), "request", Json.object("request_id", r.getRequestId(), "change", change,
+                "blood_type", r.getBloodType(), "quantity", r.getQuantity()));
+    }
+
+    private void pollAlerts() throws SQLException {
+        int[] created = alertDAO.countAlertsAfter(lastAlertId);
+        if (created[0] == 0) return;
+        if (primed) offerAll("alerts", "alerts", Json.object("created", created[0]));
+        lastAlertId = created[1];
+    }
+
+    private Map<String, int[]> readLevels() throws SQLException {
+        Map<String, int[]> now = requestDAO.getStockSummary();
+        stockReads.increment();
+        levels = now;
+        return now;
+    }
+
+    private void offerAll(String key, String event, Map<String, Object> data) {
+        for (Subscriber s : subscribers) s.offer(key, event, data);
+    }
+
+    /**
+     * Streams to the client until it goes away or the server stops. Returns a reply only
+     * if the stream is refused; otherwise the exchange has been answered and closed.
+     */
+    ApiServer.Reply serve(HttpExchange ex) {
+        if (subscribers.size() >= MAX_SUBSCRIBERS) {
+            return ApiServer.error(503, "Too many event subscribers.").header("Retry-After", "5");
+        }
+        Subscriber s = new Subscriber();
+        subscribers.add(s);
+        try (HttpExchange exchange = ex) {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            StringBuilder frames = new StringBuilder("retry: 3000\n\n");
+            snapshot(frames);
+            while (true) {
+                write(out, frames);
+                List<Pending> batch = s.take(HEARTBEAT_MS);
+                if (batch == null) {
+                    resyncs.increment();
+                    frame(frames, "resync", Json.object());
+                    snapshot(frames);
+                } else if (batch.isEmpty()) {
+                    frames.append(": keep-alive\n\n");
+                } else {
+                    for (Pending p : batch) frame(frames, p.event, p.data);
+                    delivered.add(batch.size());
+                }
+            }
+        } catch (IOException e) {
+            // The client disconnected
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // server stopping
+        } finally {
+            subscribers.remove(s);
+        }
+        return null;
+    }
+
+    private void snapshot(StringBuilder frames) {
+        try {
+            Map<String, int[]> now = levels != null ? levels : readLevels();
+            for (String type : Validation.BLOOD_TYPES) frame(frames, "stock", ApiServer.stockJson(type, now.get(type)));
+        } catch (SQLException e) {
+            frame(frames, "error", Json.object("error", "Stock could not be read: " + e.getMessage()));
+        }
+    }
+
+    private void frame(StringBuilder sb, String event, Map<String, Object> data) {
+        sb.append("id: ").append(eventIds.incrementAndGet()).append('\n')
+          .append("event: ").append(event).append('\n')
+          .append("data: ").append(Json.write(data)).append("\n\n");
+    }
+
+    private static void write(OutputStream out, StringBuilder frames) throws IOException {
+        out.write(frames.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        frames.setLength(0);
+    }
+
+    Map<String, Object> metrics() {
+        return Json.object("subscribers", subscribers.size(), "max_subscribers", MAX_SUBSCRIBERS,
+                "delivered", delivered.sum(), "resyncs", resyncs.sum(), "stock_reads", stockReads.sum(), "polls", polls.sum());
+    }
+
+    private static final class Pending {
+        final String event;
+        final Map<String, Object> data;
+
+        Pending(String event, Map<String, Object> data) {
+            this.event = event;
+            this.data = data;
+        }
+    }
+
+    /**
+     * One client's undelivered changes. Bounded and coalescing, guarded by a lock that is
+     * only held for a map operation, so offer() never waits on the client.
+     */
+    private static final class Subscriber {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition ready = lock.newCondition();
+        private LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+        private boolean overflowed;
+
+        void offer(String key, String event, Map<String, Object> data) {
+            lock.lock();
+            try {
+                Pending old = pending.get(key);
+                if (old != null && event.equals("alerts")) {
+                    // Alert counts add up; everything else: the newest state wins, in the old one's place
+                    long created = ((Number) old.data.get("created")).longValue() + ((Number) data.get("created")).longValue();
+                    pending.put(key, new Pending(event, Json.object("created", created)));
+                } else if (old != null || pending.size() < BUFFER_EVENTS) {
+                    pending.put(key, new Pending(event, data));
+                } else {
+                    pending.clear();
+                    overflowed = true;
+                }
+                ready.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** The waiting changes (empty after timeoutMs without any), or null if some were dropped. */
+        List<Pending> take(long timeoutMs) throws InterruptedException {
+            lock.lock();
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+                while (pending.isEmpty() && !overflowed && nanos > 0) nanos = ready.awaitNanos(nanos);
+                if (overflowed) {
+                    overflowed = false;
+                    pending.clear();
+                    return null;
+                }
+                List<Pending> batch = new ArrayList<>(pending.values());
+                pending = new LinkedHashMap<>();
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package api;
+
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the API: write maps, lists, strings, numbers, booleans and
+ * dates (as "yyyy-MM-dd"), and parse request bodies into the same shapes
+ * (objects become LinkedHashMaps, numbers Long or Double).
+ */
+final class Json {
+
+    private Json() {
+        // Static helpers only.
+    }
+
+    /** An insertion-ordered object, built in place: Json.object("id", 1, "name", "x"). */
+    static Map<String, Object> object(Object... keysAndValues) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        return map;
+    }
+
+    static String write(Object value) {
+        StringBuilder sb = new StringBuilder(128);
+        write(sb, value);
+        return sb.toString();
+    }
+
+    private static void write(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            quote(sb, (String) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof TemporalAccessor || value instanceof Enum) {
+            quote(sb, value.toString());
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                quote(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                write(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof Collection) {
+            sb.append('[');
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) sb.append(',');
+                first = false;
+                write(sb, item);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Can't write " + value.getClass().getSimpleName() + " as JSON");
+        }
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /** Parses a JSON object; IllegalArgumentException (with the position) if it isn't one. */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> parseObject(String text) {
+        Parser p = new Parser(text);
+        p.skipSpace();
+        if (p.peek() != '{') throw p.error("expected an object");
+        Object value = p.value();
+        p.skipSpace();
+        if (p.pos < text.length()) throw p.error("unexpected text after the object");
+        return (Map<String, Object>) value;
+    }
+
+    private static final class Parser {
+        private static final int MAX_DEPTH = 32;
+
+        private final String s;
+        private int pos;
+        private int depth;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Object value() {
+            skipSpace();
+            char c = peek();
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) return number();
+                    throw error("unexpected '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> object() {
+            enter();
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (peek() == '}') { pos++; depth--; return map; }
+            while (true) {
+                skipSpace();
+                if (peek() != '"') throw error("expected a field name");
+                String key = string();
+                skipSpace();
+                expect(':');
+                map.put(key, value());
+                skipSpace();
+                if (peek() == ',') { pos++; continue; }
+                expect('}');
+                depth--;
+                return map;
+            }
+        }
+
+        private List<Object> array() {
+            enter();
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (peek() == ']') { pos++; depth--; return list; }
+            while (true) {
+                list.add(value());
+                skipSpace();
+                if (peek() == ',') { pos++; continue; }
+                expect(']');
+                depth--;
+                return list;
+            }
+        }
+
+        private String string() {
+            pos++; // opening quote
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= s.length()) throw error("string is not closed");
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                if (pos >= s.length()) throw error("string is not closed");
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case '"': case '\\': case '/': sb.append(e); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("bad \\u escape");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: throw error("bad escape \\" + e);
+                }
+            }
+        }
+
+        private Object number() {
+            int start = pos;
+            if (peek() == '-') pos++;
+            boolean decimal = false;
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c >= '0' && c <= '9') pos++;
+                else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') { decimal = true; pos++; }
+                else break;
+            }
+            String n = s.substring(start, pos);
+            try {
+                return decimal ? (Object) Double.parseDouble(n) : (Object) Long.parseLong(n);
+            } catch (NumberFormatException e) {
+                throw error("bad number '" + n + "'");
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            if (!s.startsWith(word, pos)) throw error("unexpected text");
+            pos += word.length();
+            return value;
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) throw error("nested too deeply");
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("expected '" + c + "'");
+            pos++;
+        }
+
+        char peek() {
+            if (pos >= s.length()) throw error("unexpected end");
+            return s.charAt(pos);
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at " + pos + ": " + message);
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package app;
 
+import controller.Diagnostics;
 import controller.LoginController;
+import dao.SchemaMigrator;
 import dao.UserDAO;
 import view.LoginPage;
 
 import javax.swing.SwingUtilities;
+import java.sql.SQLException;
 
 public class App {
     public static void main(String[] args) {
+        // Keep a flight recording and watch the event thread from the start, login included
+        Diagnostics.getInstance().start();
+
+        // 0. Bring the database schema up to date (before any window opens, off the EDT)
+        try {
+            SchemaMigrator.migrate();
+        } catch (SQLException e) {
+            // Not fatal here: the login screen reports it if the database is unreachable
+            System.err.println("Schema migration failed: " + e.getMessage());
+        }
+
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -0,0 +1,75 @@
+package app;
+
+import dao.DatabaseConnection;
+import dao.ExportReport;
+import dao.Exporter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command-line export for the daily report to the regional authority, e.g. from cron:
+ *
+ *   java -cp out:lib/mysql-connector-j.jar app.ExportTool /srv/exports json --gzip
+ *   java -cp out:... app.ExportTool /srv/exports csv blood_units alerts
+ *
+ * Writes <dir>/<table>_<yyyy-MM-dd>.<csv|json>[.gz] for each table named (all four if
+ * none: blood_units, blood_requests, alerts, donors), every row in id order. Exit code 1
+ * if any export failed; the others are still written.
+ */
+public class ExportTool {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ExportTool <directory> [csv|json] [--gzip] [blood_units|blood_requests|alerts|donors ...]");
+            System.exit(2);
+        }
+        Path dir = Paths.get(args[0]);
+        String ext = ".csv";
+        boolean gzip = false;
+        List<Exporter.Dataset> datasets = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i].toLowerCase(Locale.ROOT);
+            if (arg.equals("csv") || arg.equals("json")) ext = "." + arg;
+            else if (arg.equals("--gzip")) gzip = true;
+            else datasets.add(dataset(arg));
+        }
+        if (datasets.isEmpty()) datasets.addAll(List.of(Exporter.Dataset.values()));
+
+        int failures = 0;
+        Exporter exporter = new Exporter();
+        try {
+            Files.createDirectories(dir);
+            for (Exporter.Dataset dataset : datasets) {
+                Path file = dir.resolve(dataset.getBaseName() + "_" + LocalDate.now() + ext + (gzip ? ".gz" : ""));
+                try {
+                    ExportReport report = exporter.export(dataset, dataset.everything(), file);
+                    System.out.println(report);
+                } catch (Exception e) {
+                    failures++;
+                    System.err.println(dataset.getBaseName() + ": export failed: " + e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            failures++;
+            System.err.println("Export failed: " + e.getMessage());
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static Exporter.Dataset dataset(String name) {
+        for (Exporter.Dataset d : Exporter.Dataset.values()) {
+            if (d.getBaseName().equals(name)) return d;
+        }
+        System.err.println("Unknown table '" + name + "'.");
+        System.exit(2);
+        return null;
+    }
+}
@@ -1,6 +1,8 @@
 -- 1. Create and Select Database
 CREATE DATABASE IF NOT EXISTS blood_bank_db;
 USE blood_bank_db;
+-- Secondary indexes and later schema changes are applied by dao.SchemaMigrator
+-- when the application starts (recorded in the schema_version table).
 
 -- 2. Create Donors Table
 CREATE TABLE IF NOT EXISTS Donors (
@@ -19,6 +21,8 @@ CREATE TABLE IF NOT EXISTS BloodUnits (
     donation_date DATE NOT NULL,
     expiry_date DATE NOT NULL,
     donor_id INT,
+    -- Bumped on every insert/update; the incremental alert scan reads it.
+    last_modified TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (donor_id) REFERENCES Donors(donor_id) ON DELETE SET NULL
 );
 
@@ -38,9 +42,28 @@ CREATE TABLE IF NOT EXISTS Alerts (
     alert_type VARCHAR(20) NOT NULL,
     date_generated DATE NOT NULL,
     status VARCHAR(20) DEFAULT 'Pending',
-    FOREIGN KEY (blood_id) REFERENCES BloodUnits(blood_id) ON DELETE CASCADE
+    FOREIGN KEY (blood_id) REFERENCES BloodUnits(blood_id) ON DELETE CASCADE,
+    -- One alert of each type per unit; the alert scan relies on this.
+    UNIQUE KEY uq_alert_unit_type (blood_id, alert_type)
 );
 
+-- 5b. Watermark of the incremental expiry alert scan
+CREATE TABLE IF NOT EXISTS AlertScanState (
+    scanner VARCHAR(30) PRIMARY KEY,
+    last_scan_date DATE NOT NULL,
+    unit_watermark TIMESTAMP NOT NULL
+);
+
+-- 5c. Maintained stock totals per blood type (kept in step by the DAOs, repaired by the reconciler)
+CREATE TABLE IF NOT EXISTS StockSummary (
+    blood_type VARCHAR(10) PRIMARY KEY,
+    available INT NOT NULL DEFAULT 0,
+    pending INT NOT NULL DEFAULT 0
+);
+
+INSERT IGNORE INTO StockSummary (blood_type) VALUES
+    ('A+'), ('A-'), ('B+'), ('B-'), ('AB+'), ('AB-'), ('O+'), ('O-');
+
 -- 6. Create Users Table (Login)
 CREATE TABLE IF NOT EXISTS Users (
     user_id INT AUTO_INCREMENT PRIMARY KEY,
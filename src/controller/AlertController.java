@@ -1,26 +1,43 @@
 package controller;
 
 import dao.AlertDAO;
+import dao.AlertScanResult;
+import dao.Exporter;
+import dao.ListQuery;
+import model.Alert;
 import model.User;
 import view.AlertsPage;
 import view.MainDashboard;
 
+import javax.swing.SwingUtilities;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.SQLException;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.util.concurrent.CompletionException;
 
-public class AlertController implements ActionListener {
+public class AlertController implements ActionListener, AlertScheduler.AlertListener {
     private final AlertsPage view;
     private final AlertDAO dao;
     private final User currentUser;
+    private final AlertScheduler scheduler;
+    private final BackgroundTasks tasks; // DAO calls run here, never on the EDT
+    private final TablePager<Alert> pager;
 
     public AlertController(AlertsPage view, AlertDAO dao, User user) {
         this.view = view;
         this.dao = dao;
         this.currentUser = user;
+        this.scheduler = AlertScheduler.getInstance();
+        this.tasks = new BackgroundTasks(view.getBusyIndicator());
+        this.pager = new TablePager<>("alerts", view.getTableModel(), tasks, dao::getAlertsAfter, AlertDAO::orderOf,
+                AlertDAO::matcherOf, e -> view.showMessage(e.getMessage()));
+        view.getFilterBar().setOnChange(() -> pager.setFilter(view.getFilterBar().getQuery()));
 
         view.getRefreshButton().addActionListener(this);
         view.getDeleteButton().addActionListener(this);
+        view.getExportButton().addActionListener(this);
 
         // BACK BUTTON LOGIC
         view.getBackButton().addActionListener(e -> {
@@ -28,25 +45,67 @@ public class AlertController implements ActionListener {
             new MainDashboard(currentUser).setVisible(true);
         });
 
-        scan();
+        // New alerts found by the background scan are pushed into the table while the page is open
+        scheduler.addListener(this);
+        view.addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) {
+                scheduler.removeListener(AlertController.this);
+                tasks.cancelAll();
+            }
+        });
+
+        pager.reload();
+        scheduler.start();
+        scheduler.scanNow();
     }
 
     @Override public void actionPerformed(ActionEvent e) {
-        if(e.getSource() == view.getRefreshButton()) { scan(); view.showMessage("Scanned."); }
+        if(e.getSource() == view.getRefreshButton()) scan();
         else if(e.getSource() == view.getDeleteButton()) dismiss();
+        else if(e.getSource() == view.getExportButton()) export();
+    }
+
+    // Called on the scheduler thread after every scan; scans in quick succession share one sync,
+    // which re-reads the loaded pages and only touches the alerts that changed.
+    @Override public void alertsScanned(AlertScanResult result, int pendingAlerts) {
+        SwingUtilities.invokeLater(pager::sync);
     }
 
     private void scan() {
-        try { dao.checkForNewAlerts(); view.refreshTable(dao.getAllAlerts()); }
-        catch (SQLException e) { view.showMessage(e.getMessage()); }
+        view.getRefreshButton().setEnabled(false);
+        // Waits for the scheduler's scan on a background thread, so the busy bar shows meanwhile
+        tasks.run(() -> scheduler.scanNow().join(), result -> {
+            view.getRefreshButton().setEnabled(true);
+            view.showMessage("Scanned. " + result.getTotalCreated() + " new alert(s) in " + result.getElapsedMillis() + " ms.");
+        }, ex -> {
+            view.getRefreshButton().setEnabled(true);
+            Throwable err = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+            view.showMessage(err.getMessage());
+        });
     }
 
     private void dismiss() {
         int r = view.getAlertsTable().getSelectedRow();
         if(r != -1) {
-            try {
-                if(dao.deleteAlert((int)view.getAlertsTable().getValueAt(r, 0))) { scan(); view.showMessage("Dismissed."); }
-            } catch(SQLException e) { view.showMessage(e.getMessage()); }
+            int id = (int)view.getAlertsTable().getValueAt(r, 0);
+            tasks.run(() -> dao.deleteAlert(id),
+                    ok -> { if(ok) { view.removeRow(id); scheduler.scanNow(); view.showMessage("Dismissed."); } },
+                    e -> view.showMessage(e.getMessage()));
         } else view.showMessage("Select an alert.");
     }
-}
\ No newline at end of file
+
+    // Streams every alert the filter matches to the file, not just the pages loaded in the table
+    private void export() {
+        File file = view.chooseExportFile();
+        if (file == null) return;
+        ListQuery filter = view.getFilterBar().getQuery();
+        view.getExportButton().setEnabled(false);
+        tasks.run(() -> new Exporter().export(Exporter.Dataset.ALERTS, filter, file.toPath()), report -> {
+            view.getExportButton().setEnabled(true);
+            view.showMessage("Exported " + report + ".");
+        }, ex -> {
+            view.getExportButton().setEnabled(true);
+            view.showMessage("Export failed: " + ex.getMessage());
+        });
+    }
+}
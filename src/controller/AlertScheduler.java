@@ -0,0 +1,133 @@
+package controller;
+
+import dao.AlertDAO;
+import dao.AlertScanResult;
+import dao.ExpiryIndex;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the expiry alert scan in the background, so alerts are up to date
+ * without anyone opening the Alerts page and without freezing the UI.
+ * The same thread loads the in-memory ExpiryIndex at startup and keeps it
+ * in sync with other terminals' changes before each scan (a full reload on
+ * the first scan of each day, which also drops units deleted elsewhere).
+ *
+ * The cadence can be changed with the system properties
+ * 'alerts.scan.interval.seconds' (default 300) and 'alerts.scan.jitter.seconds'
+ * (default 30, a random extra delay so terminals don't all scan at once).
+ *
+ * Listeners are called on the scheduler thread, NOT the Swing thread.
+ * They must use SwingUtilities.invokeLater before touching any component.
+ */
+public class AlertScheduler {
+
+    /** Notified after every scan. */
+    public interface AlertListener {
+        void alertsScanned(AlertScanResult result, int pendingAlerts);
+    }
+
+    private static final long INITIAL_DELAY_SECONDS = 5;
+    private static AlertScheduler instance;
+
+    private final AlertDAO dao;
+    private final long intervalSeconds;
+    private final long jitterSeconds;
+    private final ScheduledExecutorService executor;
+    private final List<AlertListener> listeners = new CopyOnWriteArrayList<>();
+
+    private boolean started;
+    private CompletableFuture<AlertScanResult> pendingScan; // guarded by 'this'
+    private volatile int lastPendingAlerts = -1;
+
+    public AlertScheduler(AlertDAO dao, long intervalSeconds, long jitterSeconds) {
+        this.dao = dao;
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.jitterSeconds = Math.max(0, jitterSeconds);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "alert-scheduler");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /** The application-wide scheduler, configured from system properties. */
+    public static synchronized AlertScheduler getInstance() {
+        if (instance == null) {
+            instance = new AlertScheduler(new AlertDAO(),
+                    Long.getLong("alerts.scan.interval.seconds", 300),
+                    Long.getLong("alerts.scan.jitter.seconds", 30));
+        }
+        return instance;
+    }
+
+    /** Starts the periodic scan. Calling it again does nothing. */
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        executor.schedule(this::periodicScan, INITIAL_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public void addListener(AlertListener l) { listeners.add(l); }
+    public void removeListener(AlertListener l) { listeners.remove(l); }
+
+    /** Pending alert count from the last scan, or -1 if no scan has finished yet. */
+    public int getLastPendingAlerts() { return lastPendingAlerts; }
+
+    /**
+     * Asks for a scan as soon as possible (e.g. the "SCAN FOR ALERTS" button).
+     * If one is already queued, the caller shares it instead of queuing another.
+     */
+    public synchronized CompletableFuture<AlertScanResult> scanNow() {
+        if (pendingScan == null) {
+            CompletableFuture<AlertScanResult> f = new CompletableFuture<>();
+            pendingScan = f;
+            executor.execute(() -> {
+                synchronized (AlertScheduler.this) { pendingScan = null; }
+                try { f.complete(runScan()); }
+                catch (SQLException e) { f.completeExceptionally(e); }
+            });
+        }
+        return pendingScan;
+    }
+
+    private void periodicScan() {
+        try {
+            runScan();
+        } catch (SQLException e) {
+            System.err.println("Background alert scan failed: " + e.getMessage());
+        } finally {
+            long jitter = jitterSeconds == 0 ? 0 : ThreadLocalRandom.current().nextLong(jitterSeconds + 1);
+            if (!executor.isShutdown()) executor.schedule(this::periodicScan, intervalSeconds + jitter, TimeUnit.SECONDS);
+        }
+    }
+
+    // Always runs on the scheduler thread.
+    private AlertScanResult runScan() throws SQLException {
+        try {
+            ExpiryIndex.getInstance().syncChanges(); // full rebuild the first time each day
+        } catch (SQLException e) {
+            System.err.println("Expiry index sync failed: " + e.getMessage());
+        }
+        AlertScanResult result = dao.checkForNewAlerts();
+        int pending = dao.countPendingAlerts();
+        lastPendingAlerts = pending;
+        for (AlertListener l : listeners) {
+            try { l.alertsScanned(result, pending); }
+            catch (RuntimeException e) { e.printStackTrace(); }
+        }
+        return result;
+    }
+}
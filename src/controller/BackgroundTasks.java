@@ -0,0 +1,254 @@
+package controller;
+
+import view.BusyIndicator;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs DAO calls off the Swing event dispatch thread, so the window never freezes
+ * for a database round trip. Each page's controller owns one BackgroundTasks.
+ *
+ * - The work runs on a virtual thread from one shared executor. The connection pool
+ *   still caps how many queries reach MySQL at once.
+ * - onSuccess / onError are called on the EDT, so they can touch the view directly.
+ * - A refresh with a key is coalesced: asking again while one is running doesn't start
+ *   a second query, it makes the running one load once more when it ends (only the
+ *   newest result is shown).
+ * - cancelAll() (window closed) drops all results. A query already on the wire is
+ *   left to finish, as interrupting it would break the pooled connection.
+ * - The page's BusyIndicator is shown while anything is running.
+ * - repeat() runs something on a timer, e.g. the delta sync of other terminals' edits.
+ * - Each call is recorded as a UiActionEvent for Flight Recorder, named after the
+ *   controller method that started it (see Diagnostics).
+ */
+public class BackgroundTasks {
+
+    /** A DAO call (or a few) to run in the background. */
+    public interface DbCall<T> {
+        T call() throws Exception;
+    }
+
+    /** How often open pages pick up other terminals' edits (-Dui.sync.interval.seconds, 0 = never). */
+    public static final int SYNC_INTERVAL_SECONDS = Integer.getInteger("ui.sync.interval.seconds", 30);
+
+    private static final ExecutorService EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("db-task-", 0).factory());
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private final BusyIndicator busy;
+    private final Map<String, Task<?>> refreshing = new HashMap<>(); // key -> running refresh
+    private final List<Task<?>> tasks = new ArrayList<>();           // everything not finished yet
+    private final List<Timer> timers = new ArrayList<>();             // EDT only
+
+    public BackgroundTasks(BusyIndicator busy) {
+        this.busy = busy;
+    }
+
+    /** Runs a one-off call, e.g. a save or delete. */
+    public <T> Task<T> run(DbCall<T> call, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        Task<T> task = new Task<>(null, call, onSuccess, onError);
+        synchronized (this) {
+            tasks.add(task);
+        }
+        start(task);
+        return task;
+    }
+
+    /**
+     * Runs a refresh, coalesced with any refresh of the same key that is still running.
+     * Safe to call from any thread.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Task<T> refresh(String key, DbCall<T> call, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        Task<T> task;
+        synchronized (this) {
+            Task<T> running = (Task<T>) refreshing.get(key);
+            if (running != null && !running.cancelled) {
+                running.reloadWith(call, onSuccess, onError);
+                return running;
+            }
+            task = new Task<>(key, call, onSuccess, onError);
+            refreshing.put(key, task);
+            tasks.add(task);
+        }
+        start(task);
+        return task;
+    }
+
+    /**
+     * Calls 'tick' on the EDT every few seconds until cancelAll(); it usually starts a
+     * refresh() (e.g. TablePager::sync). Call on the EDT.
+     */
+    public void repeat(int seconds, Runnable tick) {
+        if (seconds <= 0) return;
+        Timer timer = new Timer(seconds * 1000, e -> tick.run());
+        timer.start();
+        timers.add(timer);
+    }
+
+    /** Drops every pending result and stops repeat() timers. Call it when the page closes. */
+    public void cancelAll() {
+        onEdt(() -> {
+            for (Timer t : timers) t.stop();
+            timers.clear();
+        });
+        List<Task<?>> copy;
+        synchronized (this) {
+            copy = new ArrayList<>(tasks);
+        }
+        for (Task<?> t : copy) t.cancel();
+    }
+
+    private void start(Task<?> task) {
+        onEdt(() -> { if (busy != null) busy.taskStarted(); });
+        task.future = EXECUTOR.submit(task::execute);
+    }
+
+    private synchronized void forget(Task<?> task) {
+        tasks.remove(task);
+        if (task.key != null && refreshing.get(task.key) == task) refreshing.remove(task.key);
+    }
+
+    // The controller method that asked for the call, e.g. "BloodRequestController.fulfillRequest"
+    private static String actionName() {
+        return WALKER.walk(frames -> {
+            StackWalker.StackFrame pager = null;
+            for (Iterator<StackWalker.StackFrame> it = frames.iterator(); it.hasNext(); ) {
+                StackWalker.StackFrame f = it.next();
+                String c = f.getClassName();
+                if (c.startsWith(BackgroundTasks.class.getName())) continue;
+                if (c.startsWith(TablePager.class.getName())) {
+                    if (pager == null) pager = f;
+                    continue;
+                }
+                // A pager driven by a Swing timer or scroll listener: name it after the pager
+                if (pager != null && (c.startsWith("java.") || c.startsWith("javax."))) return label(pager);
+                return label(f);
+            }
+            return pager != null ? label(pager) : "unknown";
+        });
+    }
+
+    // controller.DonorController + lambda$new$3 -> DonorController.new
+    private static String label(StackWalker.StackFrame f) {
+        String c = f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1);
+        if (c.indexOf('$') > 0) c = c.substring(0, c.indexOf('$'));
+        String m = f.getMethodName();
+        if (m.startsWith("lambda$") && m.indexOf('$', 7) > 7) m = m.substring(7, m.indexOf('$', 7));
+        return c + "." + m;
+    }
+
+    private static void onEdt(Runnable r) {
+        if (SwingUtilities.isEventDispatchThread()) r.run();
+        else SwingUtilities.invokeLater(r);
+    }
+
+    /** A submitted call; cancel() it to drop its result. */
+    public final class Task<T> {
+        private final String key;
+        private DbCall<T> call;                // guarded by BackgroundTasks.this
+        private Consumer<T> onSuccess;
+        private Consumer<Exception> onError;
+        private boolean reload;
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+        // Whoever sets this first (execute or cancel) is responsible for finishing the task
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final UiActionEvent event = new UiActionEvent();
+
+        private Task(String key, DbCall<T> call, Consumer<T> onSuccess, Consumer<Exception> onError) {
+            this.key = key;
+            this.call = call;
+            this.onSuccess = onSuccess;
+            this.onError = onError;
+            if (event.isEnabled()) {
+                event.action = actionName();
+                event.key = key;
+            }
+            event.begin();
+        }
+
+        private void reloadWith(DbCall<T> call, Consumer<T> onSuccess, Consumer<Exception> onError) {
+            this.call = call;
+            this.onSuccess = onSuccess;
+            this.onError = onError;
+            this.reload = true;
+        }
+
+        private void execute() {
+            if (!claimed.compareAndSet(false, true)) return; // cancelled before it started
+            T result = null;
+            Exception error = null;
+            Consumer<T> success;
+            Consumer<Exception> failure;
+            while (true) {
+                DbCall<T> current;
+                synchronized (BackgroundTasks.this) {
+                    current = call;
+                }
+                try {
+                    result = current.call();
+                    error = null;
+                } catch (Exception e) {
+                    result = null;
+                    error = e;
+                }
+                synchronized (BackgroundTasks.this) {
+                    if (reload && !cancelled) { reload = false; continue; } // newer request came in, load again
+                    success = onSuccess;
+                    failure = onError;
+                    forget(this);
+                }
+                break;
+            }
+            T r = result;
+            Exception e = error;
+            onEdt(() -> {
+                if (busy != null) busy.taskFinished();
+                if (cancelled) { record("cancelled"); return; }
+                try {
+                    if (e == null) { if (success != null) success.accept(r); }
+                    else if (failure != null) failure.accept(e);
+                } finally {
+                    record(e == null ? "ok" : "error");
+                }
+            });
+        }
+
+        // On the EDT, once the result has been shown (or dropped)
+        private void record(String outcome) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            if (claimed.compareAndSet(false, true)) {
+                // Never started: take it out of the queue and hide the busy bar ourselves
+                Future<?> f = future;
+                if (f != null) f.cancel(false);
+                forget(this);
+                onEdt(() -> {
+                    if (busy != null) busy.taskFinished();
+                    record("cancelled");
+                });
+            }
+        }
+
+        public boolean isCancelled() { return cancelled; }
+    }
+}
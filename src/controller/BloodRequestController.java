@@ -2,6 +2,8 @@ package controller;
 
 import dao.BloodRequestDAO;
 import dao.BloodUnitDAO;
+import dao.Exporter;
+import dao.ListQuery;
 import model.BloodRequest;
 import model.User;
 import view.BloodRequestPage;
@@ -10,7 +12,9 @@ import view.MainDashboard;
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.SQLException;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
 import java.time.LocalDate;
 import java.time.ZoneId;
 
@@ -19,16 +23,23 @@ public class BloodRequestController implements ActionListener {
     private final BloodRequestDAO reqDAO;
     private final BloodUnitDAO unitDAO;
     private final User currentUser;
+    private final BackgroundTasks tasks; // DAO calls run here, never on the EDT
+    private final TablePager<BloodRequest> pager;
 
     public BloodRequestController(BloodRequestPage view, BloodRequestDAO reqDAO, User user) {
         this.view = view;
         this.reqDAO = reqDAO;
         this.currentUser = user;
         this.unitDAO = new BloodUnitDAO();
+        this.tasks = new BackgroundTasks(view.getBusyIndicator());
+        this.pager = new TablePager<>("requests", view.getTableModel(), tasks, reqDAO::getRequestsAfter, BloodRequestDAO::orderOf,
+                BloodRequestDAO::matcherOf, e -> view.showMessage("Error: " + e.getMessage()));
+        view.getFilterBar().setOnChange(() -> pager.setFilter(view.getFilterBar().getQuery()));
 
         view.getSubmitButton().addActionListener(this);
         view.getFulfillButton().addActionListener(this);
         view.getDeleteButton().addActionListener(this);
+        view.getExportButton().addActionListener(this);
 
         // BACK BUTTON LOGIC
         view.getBackButton().addActionListener(e -> {
@@ -36,12 +47,18 @@ public class BloodRequestController implements ActionListener {
             new MainDashboard(currentUser).setVisible(true);
         });
 
+        view.addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) { tasks.cancelAll(); }
+        });
+
         loadData();
+        // Other terminals' edits are merged in row by row, keeping the selection
+        tasks.repeat(BackgroundTasks.SYNC_INTERVAL_SECONDS, pager::sync);
     }
 
+    // First page only; the rest is fetched as the user scrolls
     private void loadData() {
-        try { view.refreshTable(reqDAO.getAllRequests()); }
-        catch (SQLException e) { view.showMessage("Error: " + e.getMessage()); }
+        pager.reload();
     }
 
     @Override
@@ -49,21 +66,33 @@ public class BloodRequestController implements ActionListener {
         if (e.getSource() == view.getSubmitButton()) submit();
         else if (e.getSource() == view.getFulfillButton()) fulfill();
         else if (e.getSource() == view.getDeleteButton()) delete();
+        else if (e.getSource() == view.getExportButton()) export();
     }
 
     private void submit() {
+        String type;
+        int qty;
+        LocalDate date;
         try {
-            String type = view.getSelectedBloodType();
-            int qty = Integer.parseInt(view.getQuantity());
+            type = view.getSelectedBloodType();
+            qty = Integer.parseInt(view.getQuantity());
             java.util.Date utilDate = view.getRequestDate();
-            LocalDate date = utilDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-
-            if(type.equals("--Select--")) { view.showMessage("Select blood type."); return; }
-            if(reqDAO.getTotalStockForType(type) < qty) { view.showMessage("STOCK ERROR: Insufficient stock."); return; }
-
-            reqDAO.saveRequest(new BloodRequest(type, qty, date, false));
-            view.showMessage("Saved!"); view.clearForm(); loadData();
-        } catch(Exception ex) { view.showMessage("Error: Check inputs."); }
+            date = utilDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        } catch(Exception ex) { view.showMessage("Error: Check inputs."); return; }
+
+        if(type.equals("--Select--")) { view.showMessage("Select blood type."); return; }
+
+        // Stock check and save in one background call; true = saved (and request has its new id)
+        BloodRequest request = new BloodRequest(type, qty, date, false);
+        tasks.run(() -> {
+                    if(reqDAO.getTotalStockForType(type) < qty) return false;
+                    return reqDAO.saveRequest(request);
+                },
+                saved -> {
+                    if(!saved) { view.showMessage("STOCK ERROR: Insufficient stock."); return; }
+                    view.upsertRow(request); view.showMessage("Saved!"); view.clearForm();
+                },
+                ex -> view.showMessage("Error: " + ex.getMessage()));
     }
 
     private void fulfill() {
@@ -77,21 +106,54 @@ public class BloodRequestController implements ActionListener {
 
         if("Fulfilled".equals(status)) { view.showMessage("Already done."); return; }
 
-        if(JOptionPane.showConfirmDialog(view, "Fulfill Request?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
-            try {
-                if(reqDAO.getTotalStockForType(type) < qty) { view.showMessage("Not enough stock."); return; }
-                unitDAO.deductStock(type, qty);
-                reqDAO.markAsFulfilled(id);
-                view.showMessage("Fulfilled!"); loadData();
-            } catch(SQLException ex) { view.showMessage(ex.getMessage()); }
+        // Dry run: show which bags would be issued, nothing is written
+        tasks.run(() -> unitDAO.deductStock(type, qty, true),
+                planned -> confirmFulfill(id, planned.isEmpty() ? "No stock of " + type + "." : "Bags to issue: " + planned),
+                ex -> confirmFulfill(id, "(Preview unavailable: " + ex.getMessage() + ")"));
+    }
+
+    private void confirmFulfill(int id, String preview) {
+        if(JOptionPane.showConfirmDialog(view, "Fulfill Request?\n" + preview, "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+            // Stock check, FEFO deduction and status change happen in one locked transaction
+            tasks.run(() -> reqDAO.fulfillRequest(id), result -> {
+                refreshRow(id);
+                switch (result.getStatus()) {
+                    case FULFILLED: view.showMessage("Fulfilled! Issued: " + result.getAllocations()); break;
+                    case INSUFFICIENT_STOCK: view.showMessage("Not enough stock. Available: " + result.getAvailable() + ", needed: " + result.getRequested()); break;
+                    case ALREADY_FULFILLED: view.showMessage("Already done."); break;
+                    case NOT_FOUND: view.showMessage("Request no longer exists."); break;
+                }
+            }, ex -> view.showMessage(ex.getMessage()));
         }
     }
 
+    // Reads one request back and updates just its row (removes it if it is gone)
+    private void refreshRow(int id) {
+        tasks.run(() -> reqDAO.getRequestById(id),
+                current -> { if (current != null) view.upsertRow(current); else view.removeRow(id); },
+                ex -> view.showMessage(ex.getMessage()));
+    }
+
     private void delete() {
         int r = view.getRequestTable().getSelectedRow();
         if(r != -1) {
-            try { reqDAO.deleteRequest((int)view.getRequestTable().getValueAt(r, 0)); loadData(); }
-            catch(SQLException ex) { view.showMessage(ex.getMessage()); }
+            int id = (int)view.getRequestTable().getValueAt(r, 0);
+            tasks.run(() -> reqDAO.deleteRequest(id), ok -> view.removeRow(id), ex -> view.showMessage(ex.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    // Streams every request the filter matches to the file, not just the pages loaded in the table
+    private void export() {
+        File file = view.chooseExportFile();
+        if (file == null) return;
+        ListQuery filter = view.getFilterBar().getQuery();
+        view.getExportButton().setEnabled(false);
+        tasks.run(() -> new Exporter().export(Exporter.Dataset.BLOOD_REQUESTS, filter, file.toPath()), report -> {
+            view.getExportButton().setEnabled(true);
+            view.showMessage("Exported " + report + ".");
+        }, ex -> {
+            view.getExportButton().setEnabled(true);
+            view.showMessage("Export failed: " + ex.getMessage());
+        });
+    }
+}
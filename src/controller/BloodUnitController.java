@@ -1,15 +1,26 @@
 package controller;
 
+import dao.AlertDAO;
 import dao.BloodUnitDAO;
+import dao.BulkImporter;
+import dao.ExpiryIndex;
+import dao.Exporter;
+import dao.ListQuery;
 import model.BloodUnit;
 import model.User;
+import model.Validation;
 import view.BloodStockPage;
 import view.MainDashboard;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.SQLException;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.ZoneId;
 
@@ -18,15 +29,24 @@ public class BloodUnitController implements ActionListener {
     private final BloodStockPage view;
     private final BloodUnitDAO dao;
     private final User currentUser;
+    private final BackgroundTasks tasks; // DAO calls run here, never on the EDT
+    private final TablePager<BloodUnit> pager;
 
     public BloodUnitController(BloodStockPage view, BloodUnitDAO dao, User user) {
         this.view = view;
         this.dao = dao;
         this.currentUser = user;
+        this.tasks = new BackgroundTasks(view.getBusyIndicator());
+        this.pager = new TablePager<>("stock", view.getTableModel(), tasks, dao::getBloodUnitsAfter, BloodUnitDAO::orderOf,
+                BloodUnitDAO::matcherOf, e -> view.showMessage("Error loading stock: " + e.getMessage()));
+        pager.setOnLoaded(this::showExpiringUnits);
+        view.getFilterBar().setOnChange(() -> pager.setFilter(view.getFilterBar().getQuery()));
 
         this.view.getSaveButton().addActionListener(this);
         this.view.getUpdateButton().addActionListener(this);
         this.view.getDeleteButton().addActionListener(this);
+        this.view.getImportButton().addActionListener(this);
+        view.getExportButton().addActionListener(this);
 
         // BACK BUTTON LOGIC
         this.view.getBackButton().addActionListener(e -> {
@@ -38,7 +58,13 @@ public class BloodUnitController implements ActionListener {
             if (!e.getValueIsAdjusting()) populateFormFromSelection();
         });
 
+        this.view.addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) { tasks.cancelAll(); }
+        });
+
         loadStockIntoTable();
+        // Other terminals' edits are merged in row by row, keeping the selection
+        tasks.repeat(BackgroundTasks.SYNC_INTERVAL_SECONDS, pager::sync);
     }
 
     @Override
@@ -46,11 +72,22 @@ public class BloodUnitController implements ActionListener {
         if (e.getSource() == view.getSaveButton()) save();
         else if (e.getSource() == view.getUpdateButton()) update();
         else if (e.getSource() == view.getDeleteButton()) delete();
+        else if (e.getSource() == view.getImportButton()) importCsv();
+        else if (e.getSource() == view.getExportButton()) export();
     }
 
+    // First page only; the rest is fetched as the user scrolls
     private void loadStockIntoTable() {
-        try { view.refreshTable(dao.getAllBloodUnits()); }
-        catch (SQLException e) { view.showMessage("Error loading stock: " + e.getMessage()); }
+        pager.reload();
+    }
+
+    // Day-bucket lookup in the expiry index instead of another query
+    private void showExpiringUnits() {
+        ExpiryIndex index = ExpiryIndex.getInstance();
+        if (!index.isLoaded()) return; // still loading in the background
+        int days = AlertDAO.NEAR_EXPIRY_DAYS;
+        LocalDate today = LocalDate.now();
+        view.setExpiringUnits(index.unitsExpiringWithin(days), index.quantityExpiringBetween(today, today.plusDays(days)), days);
     }
 
     private void populateFormFromSelection() {
@@ -81,23 +118,61 @@ public class BloodUnitController implements ActionListener {
         int r = view.getStockTable().getSelectedRow();
         if (r == -1) { view.showMessage("Select row."); return; }
         if(JOptionPane.showConfirmDialog(view, "Delete?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
-            try { if(dao.deleteBloodUnit((int)view.getStockTable().getValueAt(r, 0))) { view.showMessage("Deleted"); view.clearForm(); loadStockIntoTable(); } }
-            catch(SQLException ex) { view.showMessage(ex.getMessage()); }
+            int id = (int)view.getStockTable().getValueAt(r, 0);
+            tasks.run(() -> dao.deleteBloodUnit(id),
+                    ok -> { if(ok) { view.removeRow(id); showExpiringUnits(); view.showMessage("Deleted"); view.clearForm(); } },
+                    ex -> view.showMessage(ex.getMessage()));
         }
     }
 
+    // Bulk intake (e.g. after a donation drive): batched inserts, then one reload of the first page
+    private void importCsv() {
+        File file = view.chooseCsvFile();
+        if (file == null) return;
+        view.getImportButton().setEnabled(false);
+        tasks.run(() -> {
+            try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                return new BulkImporter().importBloodUnits(in);
+            }
+        }, report -> {
+            view.getImportButton().setEnabled(true);
+            pager.reload();
+            view.showMessage(report.summary(15));
+        }, ex -> {
+            view.getImportButton().setEnabled(true);
+            view.showMessage("Import failed: " + ex.getMessage());
+        });
+    }
+
     private void process(int id) {
         try {
             String type = view.getSelectedBloodType();
             int qty = Integer.parseInt(view.getQuantity());
             LocalDate don = view.getDonationDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
             LocalDate exp = view.getExpiryDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-            if (exp.isBefore(don)) { view.showMessage("Expiry cannot be before Donation."); return; }
+            String error = Validation.bloodUnitError(don, exp); // same rule as the CSV import
+            if (error != null) { view.showMessage(error); return; }
             int did = view.getDonorId().isEmpty() ? 0 : Integer.parseInt(view.getDonorId());
 
             BloodUnit u = new BloodUnit(id > 0 ? id : 0, type, qty, don, exp, did);
-            boolean ok = (id == 0) ? dao.saveBloodUnit(u) : dao.updateBloodUnit(u);
-            if(ok) { view.showMessage("Success!"); view.clearForm(); loadStockIntoTable(); }
+            tasks.run(() -> (id == 0) ? dao.saveBloodUnit(u) : dao.updateBloodUnit(u),
+                    ok -> { if(ok) { view.upsertRow(u); showExpiringUnits(); view.showMessage("Success!"); view.clearForm(); } },
+                    ex -> view.showMessage("Error: " + ex.getMessage()));
         } catch(Exception ex) { view.showMessage("Error: " + ex.getMessage()); }
     }
-}
\ No newline at end of file
+
+    // Streams every unit the filter matches to the file, not just the pages loaded in the table
+    private void export() {
+        File file = view.chooseExportFile();
+        if (file == null) return;
+        ListQuery filter = view.getFilterBar().getQuery();
+        view.getExportButton().setEnabled(false);
+        tasks.run(() -> new Exporter().export(Exporter.Dataset.BLOOD_UNITS, filter, file.toPath()), report -> {
+            view.getExportButton().setEnabled(true);
+            view.showMessage("Exported " + report + ".");
+        }, ex -> {
+            view.getExportButton().setEnabled(true);
+            view.showMessage("Export failed: " + ex.getMessage());
+        });
+    }
+}
@@ -0,0 +1,100 @@
+package controller;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A Flight Recorder recording that runs all the time, so that when a clerk says "the
+ * system hung" there is something to look at: dump() writes the last few minutes to a
+ * .jfr file (open it in JDK Mission Control, or print it with 'jfr print').
+ *
+ * Besides the JVM's own events (JFR's low-overhead "default" settings: GC, locks, I/O,
+ * CPU samples) it records the application's:
+ *   bloodbank.UiAction       every controller action run through BackgroundTasks
+ *   bloodbank.DaoCall        every DAO call, i.e. connection borrow (needs db.instrument)
+ *   bloodbank.JdbcStatement  statements slower than jfr.statement-threshold-ms (10)
+ *   bloodbank.EdtStall       the Swing event thread not responding for ui.edt.stall-ms (500)
+ *
+ * The recording keeps jfr.max-age-minutes (30) of history and at most jfr.max-size-mb
+ * (100) on disk; dumps go to jfr.dump-dir (./recordings).
+ */
+public final class Diagnostics {
+
+    public static final long EDT_STALL_MS = Long.getLong("ui.edt.stall-ms", 500);
+    private static final long STATEMENT_THRESHOLD_MS = Long.getLong("jfr.statement-threshold-ms", 10);
+    private static final long MAX_AGE_MINUTES = Long.getLong("jfr.max-age-minutes", 30);
+    private static final long MAX_SIZE_MB = Long.getLong("jfr.max-size-mb", 100);
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final Diagnostics INSTANCE = new Diagnostics();
+
+    private Recording recording;
+    private EdtWatchdog watchdog;
+
+    public static Diagnostics getInstance() { return INSTANCE; }
+
+    private Diagnostics() {}
+
+    /**
+     * Starts the recording and the EDT watchdog. Does nothing the second time. If the JVM
+     * can't record (e.g. JFR disabled), that is reported and the app carries on without it.
+     */
+    public synchronized void start() {
+        if (recording != null) return;
+        try {
+            Recording r = new Recording(Configuration.getConfiguration("default"));
+            r.setName("bloodbank-continuous");
+            r.setToDisk(true);
+            r.setMaxAge(Duration.ofMinutes(MAX_AGE_MINUTES));
+            r.setMaxSize(MAX_SIZE_MB * 1024 * 1024);
+            r.enable("bloodbank.UiAction");
+            r.enable("bloodbank.DaoCall");
+            r.enable("bloodbank.JdbcStatement").withThreshold(Duration.ofMillis(STATEMENT_THRESHOLD_MS));
+            r.enable("bloodbank.EdtStall");
+            r.start();
+            recording = r;
+        } catch (IOException | ParseException | RuntimeException e) {
+            System.err.println("Flight recording not started: " + e);
+        }
+
+        watchdog = new EdtWatchdog(EDT_STALL_MS);
+        Thread t = new Thread(watchdog, "edt-watchdog");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /** Writes what has been recorded so far to a new file and returns it. Slow; call off the EDT. */
+    public Path dump() throws IOException {
+        Recording r;
+        synchronized (this) {
+            r = recording;
+        }
+        if (r == null) throw new IOException("No flight recording is running (see the console for why).");
+        Path dir = Paths.get(System.getProperty("jfr.dump-dir", "recordings"));
+        Files.createDirectories(dir);
+        Path file = dir.resolve("bloodbank-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+        r.dump(file);
+        return file;
+    }
+
+    /** Stops the watchdog and the recording (without dumping it). */
+    public synchronized void stop() {
+        if (watchdog != null) watchdog.stop();
+        watchdog = null;
+        if (recording != null) recording.close();
+        recording = null;
+    }
+}
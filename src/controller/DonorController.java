@@ -1,17 +1,26 @@
 package controller;
 
 import dao.BloodUnitDAO;
+import dao.BulkImporter;
 import dao.DonorDAO;
+import dao.Exporter;
+import dao.ListQuery;
 import model.BloodUnit;
 import model.Donor;
 import model.User;
+import model.Validation;
 import view.DonorRegistrationPage;
 import view.MainDashboard;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.SQLException;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.ZoneId;
 
@@ -20,17 +29,25 @@ public class DonorController implements ActionListener {
     private final DonorDAO dao;
     private final BloodUnitDAO bloodDAO;
     private final User currentUser; // Needed for Dashboard return
+    private final BackgroundTasks tasks; // DAO calls run here, never on the EDT
+    private final TablePager<Donor> pager;
 
     public DonorController(DonorRegistrationPage view, DonorDAO dao, User user) {
         this.view = view;
         this.dao = dao;
         this.currentUser = user;
         this.bloodDAO = new BloodUnitDAO();
+        this.tasks = new BackgroundTasks(view.getBusyIndicator());
+        this.pager = new TablePager<>("donors", view.getTableModel(), tasks, dao::getDonorsAfter, DonorDAO::orderOf,
+                DonorDAO::matcherOf, e -> view.showMessage("Error: " + e.getMessage()));
+        view.getFilterBar().setOnChange(() -> pager.setFilter(view.getFilterBar().getQuery()));
 
         view.getSaveButton().addActionListener(this);
         view.getUpdateButton().addActionListener(this);
         view.getDeleteButton().addActionListener(this);
         view.getDonateButton().addActionListener(this);
+        view.getImportButton().addActionListener(this);
+        view.getExportButton().addActionListener(this);
 
         // BACK BUTTON LOGIC
         view.getBackButton().addActionListener(e -> {
@@ -42,12 +59,18 @@ public class DonorController implements ActionListener {
             if(!e.getValueIsAdjusting()) populateForm();
         });
 
+        view.addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) { tasks.cancelAll(); }
+        });
+
         loadData();
+        // Other terminals' edits are merged in row by row, keeping the selection
+        tasks.repeat(BackgroundTasks.SYNC_INTERVAL_SECONDS, pager::sync);
     }
 
+    // First page only; the rest is fetched as the user scrolls
     private void loadData() {
-        try { view.refreshTable(dao.getAllDonors()); }
-        catch (SQLException e) { view.showMessage("Error: " + e.getMessage()); }
+        pager.reload();
     }
 
     private void populateForm() {
@@ -69,6 +92,8 @@ public class DonorController implements ActionListener {
         else if (e.getSource() == view.getUpdateButton()) update();
         else if (e.getSource() == view.getDeleteButton()) delete();
         else if (e.getSource() == view.getDonateButton()) recordDonation();
+        else if (e.getSource() == view.getImportButton()) importCsv();
+        else if (e.getSource() == view.getExportButton()) export();
     }
 
     private void recordDonation() {
@@ -80,18 +105,36 @@ public class DonorController implements ActionListener {
         String bloodType = (String) view.getDonorTable().getValueAt(row, 3);
 
         if (JOptionPane.showConfirmDialog(view, "Record 1 Unit (" + bloodType + ") from " + name + "?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
-            try {
-                if (bloodDAO.saveBloodUnit(new BloodUnit(bloodType, 1, LocalDate.now(), LocalDate.now().plusDays(35), donorId))) {
-                    view.showMessage("Success! Donation added to Stock.");
-                }
-            } catch (SQLException ex) { view.showMessage("Database Error: " + ex.getMessage()); }
+            BloodUnit unit = new BloodUnit(bloodType, 1, LocalDate.now(), LocalDate.now().plusDays(35), donorId);
+            tasks.run(() -> bloodDAO.saveBloodUnit(unit),
+                    ok -> { if (ok) view.showMessage("Success! Donation added to Stock."); },
+                    ex -> view.showMessage("Database Error: " + ex.getMessage()));
         }
     }
 
+    // Registers a whole list of donors at once: batched inserts, then one reload of the first page
+    private void importCsv() {
+        File file = view.chooseCsvFile();
+        if (file == null) return;
+        view.getImportButton().setEnabled(false);
+        tasks.run(() -> {
+            try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                return new BulkImporter().importDonors(in);
+            }
+        }, report -> {
+            view.getImportButton().setEnabled(true);
+            pager.reload();
+            view.showMessage(report.summary(15));
+        }, ex -> {
+            view.getImportButton().setEnabled(true);
+            view.showMessage("Import failed: " + ex.getMessage());
+        });
+    }
+
+    // Same rules as the CSV import (model.Validation)
     private boolean validateInput(String name, String contact, String type) {
-        if (name.isEmpty() || contact.isEmpty()) { view.showMessage("Fields cannot be empty."); return false; }
-        if (type.equals("--Select--")) { view.showMessage("Select a Blood Type."); return false; }
-        if (!contact.matches("\\d{10}")) { view.showMessage("Contact must be 10 digits."); return false; }
+        String error = Validation.donorError(name, contact, type);
+        if (error != null) { view.showMessage(error); return false; }
         return true;
     }
 
@@ -100,11 +143,10 @@ public class DonorController implements ActionListener {
         java.util.Date utilDate = view.getSelectedDate();
         LocalDate dateReg = utilDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
 
-        try {
-            if(dao.saveDonor(new Donor(view.getDonorName(), view.getDonorContact(), view.getSelectedBloodType(), dateReg))) {
-                view.showMessage("Saved!"); view.clearForm(); loadData();
-            }
-        } catch(SQLException ex) { view.showMessage("Error: " + ex.getMessage()); }
+        Donor donor = new Donor(view.getDonorName(), view.getDonorContact(), view.getSelectedBloodType(), dateReg);
+        tasks.run(() -> dao.saveDonor(donor),
+                ok -> { if(ok) { view.upsertRow(donor); view.showMessage("Saved!"); view.clearForm(); } },
+                ex -> view.showMessage("Error: " + ex.getMessage()));
     }
 
     private void update() {
@@ -116,11 +158,18 @@ public class DonorController implements ActionListener {
         java.util.Date utilDate = view.getSelectedDate();
         LocalDate dateReg = utilDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
 
-        try {
-            if(dao.updateDonor(new Donor(id, view.getDonorName(), view.getDonorContact(), view.getSelectedBloodType(), dateReg))) {
-                view.showMessage("Updated!"); view.clearForm(); loadData();
-            }
-        } catch(SQLException ex) { view.showMessage("Error: " + ex.getMessage()); }
+        Donor donor = new Donor(id, view.getDonorName(), view.getDonorContact(), view.getSelectedBloodType(), dateReg);
+        tasks.run(() -> dao.updateDonor(donor),
+                ok -> { if(ok) { refreshRow(id); view.showMessage("Updated!"); view.clearForm(); } },
+                ex -> view.showMessage("Error: " + ex.getMessage()));
+    }
+
+    // Reads one donor back and updates just its row (removes it if it is gone).
+    // Not the form's values: UPDATE leaves date_registered as it was.
+    private void refreshRow(int id) {
+        tasks.run(() -> dao.getDonorById(id),
+                current -> { if (current != null) view.upsertRow(current); else view.removeRow(id); },
+                ex -> view.showMessage("Error: " + ex.getMessage()));
     }
 
     private void delete() {
@@ -128,8 +177,24 @@ public class DonorController implements ActionListener {
         if(row == -1) { view.showMessage("Select a donor."); return; }
         int id = (int) view.getDonorTable().getValueAt(row, 0);
         if(JOptionPane.showConfirmDialog(view, "Delete this donor?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
-            try { if(dao.deleteDonor(id)) { view.showMessage("Deleted!"); view.clearForm(); loadData(); } }
-            catch(SQLException ex) { view.showMessage("Error: " + ex.getMessage()); }
+            tasks.run(() -> dao.deleteDonor(id),
+                    ok -> { if(ok) { view.removeRow(id); view.showMessage("Deleted!"); view.clearForm(); } },
+                    ex -> view.showMessage("Error: " + ex.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    // Streams every donor the filter matches to the file, not just the pages loaded in the table
+    private void export() {
+        File file = view.chooseExportFile();
+        if (file == null) return;
+        ListQuery filter = view.getFilterBar().getQuery();
+        view.getExportButton().setEnabled(false);
+        tasks.run(() -> new Exporter().export(Exporter.Dataset.DONORS, filter, file.toPath()), report -> {
+            view.getExportButton().setEnabled(true);
+            view.showMessage("Exported " + report + ".");
+        }, ex -> {
+            view.getExportButton().setEnabled(true);
+            view.showMessage("Export failed: " + ex.getMessage());
+        });
+    }
+}
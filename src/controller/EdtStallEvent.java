@@ -0,0 +1,25 @@
+package controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** The Swing event thread did not get to a queued event for longer than the stall threshold. */
+@Name("bloodbank.EdtStall")
+@Label("EDT Stall")
+@Category({"Blood Bank", "UI"})
+@Description("The Swing event dispatch thread was busy or blocked, so the window did not respond")
+@StackTrace(false)
+final class EdtStallEvent extends jdk.jfr.Event {
+
+    @Label("Event Thread Stack")
+    @Description("What the event thread was doing once the stall passed the threshold")
+    String edtStack;
+
+    @Label("Recovered")
+    @Description("False for the event recorded when the stall passed the threshold; true for the one "
+            + "recorded when the event thread responded again, whose duration is the whole stall")
+    boolean recovered;
+}
@@ -0,0 +1,96 @@
+package controller;
+
+import java.awt.EventQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notices when the Swing event thread stops responding. Every PERIOD_MS a no-op is
+ * queued on the EDT; if it hasn't run after stallMillis, the EDT's stack is sampled and
+ * logged to stderr, and an EdtStallEvent with that stack is recorded right away, so a
+ * thread that never recovers (a deadlock, an endless loop) still leaves a trace. While
+ * it stays stuck the stack is logged again every STILL_STALLED_MS; once it recovers a
+ * second event covers the whole stall. Modal dialogs keep pumping events, so they don't
+ * count as a stall.
+ */
+final class EdtWatchdog implements Runnable {
+
+    private static final long PERIOD_MS = 100;
+    private static final long STILL_STALLED_MS = 10_000;
+    private static final int MAX_FRAMES = 40;
+
+    private final long stallMillis;
+    private volatile Thread edt;
+    private volatile boolean running = true;
+
+    EdtWatchdog(long stallMillis) {
+        this.stallMillis = stallMillis;
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                probe();
+                Thread.sleep(PERIOD_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void probe() throws InterruptedException {
+        // Both start now: one is committed at the threshold, the other once the EDT is back
+        EdtStallEvent stalled = new EdtStallEvent();
+        EdtStallEvent whole = new EdtStallEvent();
+        stalled.begin();
+        whole.begin();
+        CountDownLatch ran = new CountDownLatch(1);
+        long posted = System.nanoTime();
+        EventQueue.invokeLater(() -> {
+            edt = Thread.currentThread();
+            ran.countDown();
+        });
+        if (ran.await(stallMillis, TimeUnit.MILLISECONDS)) return;
+
+        // Stalled: record what the EDT is stuck on now, in case it never gets out
+        String stack = sample();
+        System.err.println("EDT not responding for " + millisSince(posted) + " ms, at:" + System.lineSeparator() + stack);
+        stalled.edtStack = stack;
+        stalled.recovered = false;
+        stalled.commit();
+
+        while (!ran.await(STILL_STALLED_MS, TimeUnit.MILLISECONDS)) {
+            if (!running) return;
+            System.err.println("EDT still not responding after " + millisSince(posted) + " ms, at:"
+                    + System.lineSeparator() + sample());
+        }
+        whole.end();
+        System.err.println("EDT responding again after " + millisSince(posted) + " ms");
+        whole.edtStack = stack;
+        whole.recovered = true;
+        whole.commit();
+    }
+
+    private String sample() {
+        Thread thread = edt;
+        return thread != null ? format(thread.getStackTrace()) : "(event thread not seen yet)";
+    }
+
+    private static long millisSince(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos);
+    }
+
+    private static String format(StackTraceElement[] frames) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(frames.length, MAX_FRAMES); i++) {
+            sb.append("\tat ").append(frames[i]).append(System.lineSeparator());
+        }
+        if (frames.length > MAX_FRAMES) sb.append("\t... ").append(frames.length - MAX_FRAMES).append(" more");
+        return sb.toString();
+    }
+}
@@ -7,12 +7,12 @@ import view.MainDashboard;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.SQLException;
 
 public class LoginController implements ActionListener {
 
     private final LoginPage view;
     private final UserDAO dao;
+    private final BackgroundTasks tasks = new BackgroundTasks(null); // the button is disabled instead of a busy bar
 
     public LoginController(LoginPage view, UserDAO dao) {
         this.view = view;
@@ -32,10 +32,11 @@ public class LoginController implements ActionListener {
             return;
         }
 
-        try {
-            if (view.isLoginMode()) {
-                // --- HANDLE LOGIN ---
-                User validUser = dao.login(user, pass, role);
+        view.getActionButton().setEnabled(false);
+        if (view.isLoginMode()) {
+            // --- HANDLE LOGIN ---
+            tasks.run(() -> dao.login(user, pass, role), validUser -> {
+                view.getActionButton().setEnabled(true);
                 if (validUser != null) {
                     view.dispose(); // Close Login
 
@@ -45,19 +46,25 @@ public class LoginController implements ActionListener {
                 } else {
                     view.showMessage("Invalid Credentials or Wrong Role!");
                 }
-            } else {
-                // --- HANDLE REGISTER ---
-                User newUser = new User(0, user, pass, role);
-                if (dao.registerUser(newUser)) {
+            }, this::showError);
+        } else {
+            // --- HANDLE REGISTER ---
+            User newUser = new User(0, user, pass, role);
+            tasks.run(() -> dao.registerUser(newUser), registered -> {
+                view.getActionButton().setEnabled(true);
+                if (registered) {
                     view.showMessage("Account Created Successfully! Please Login.");
                     view.clearFields();
                     // Toggle back to login automatically would be nice, or user clicks link
                 } else {
                     view.showMessage("Registration Failed. Username might exist.");
                 }
-            }
-        } catch (SQLException ex) {
-            view.showMessage("Database Error: " + ex.getMessage());
+            }, this::showError);
         }
     }
+
+    private void showError(Exception ex) {
+        view.getActionButton().setEnabled(true);
+        view.showMessage("Database Error: " + ex.getMessage());
+    }
 }
\ No newline at end of file
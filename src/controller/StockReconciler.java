@@ -0,0 +1,62 @@
+package controller;
+
+import dao.StockCounters;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically checks the maintained per-blood-type stock counters against the
+ * real sums and repairs any drift (e.g. rows changed by hand in MySQL).
+ *
+ * The interval can be changed with the system property
+ * 'stock.reconcile.interval.seconds' (default 600). The first check runs shortly
+ * after startup; a freshly upgraded database has already had its counters filled
+ * by the schema migration.
+ */
+public class StockReconciler {
+
+    private static final long INITIAL_DELAY_SECONDS = 10;
+    private static StockReconciler instance;
+
+    private final long intervalSeconds;
+    private final ScheduledExecutorService executor;
+    private boolean started;
+
+    public StockReconciler(long intervalSeconds) {
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-reconciler");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    public static synchronized StockReconciler getInstance() {
+        if (instance == null) instance = new StockReconciler(Long.getLong("stock.reconcile.interval.seconds", 600));
+        return instance;
+    }
+
+    /** Starts the periodic check. Calling it again does nothing. */
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        executor.scheduleWithFixedDelay(this::reconcile, INITIAL_DELAY_SECONDS, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void reconcile() {
+        try {
+            int repaired = StockCounters.reconcile();
+            if (repaired > 0) System.err.println("Stock counters had drifted for " + repaired + " blood type(s); repaired.");
+        } catch (SQLException e) {
+            System.err.println("Stock reconciliation failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package controller;
+
+import dao.ListQuery;
+import view.ListTableModel;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Loads a page's table one keyset page at a time.
+ *
+ * reload() shows the first PAGE_SIZE rows; when the user scrolls near the end, the
+ * table model asks for more (ListTableModel.prefetchOnScroll) and the next page is fetched after the last loaded row.
+ * The first paint therefore costs one small indexed query, whether the table has a
+ * thousand rows or ten million. sync() re-reads only the rows that are loaded.
+ *
+ * The filter and sort are applied by the database (setFilter); the table model is
+ * given the matching row order so saved rows land in the right place, and the same
+ * filter in Java so a saved row that no longer matches leaves the table.
+ */
+public class TablePager<T> {
+
+    /** The DAO's keyset query: the next 'limit' rows matching 'filter' after 'last' (null = from the start). */
+    public interface PageQuery<T> {
+        List<T> after(ListQuery filter, T last, int limit) throws Exception;
+    }
+
+    /** Rows per page (-Dui.page.size). */
+    public static final int PAGE_SIZE = Math.max(1, Integer.getInteger("ui.page.size", 200));
+
+    private final String key;
+    private final ListTableModel<T> model;
+    private final BackgroundTasks tasks;
+    private final PageQuery<T> query;
+    private final Function<ListQuery, Comparator<T>> orderOf;
+    private final Function<ListQuery, Predicate<T>> matcherOf;
+    private final Consumer<Exception> onError;
+    private Runnable onLoaded = () -> {};
+    private ListQuery filter = ListQuery.ALL; // EDT only
+
+    /**
+     * @param query     the DAO's page method, e.g. dao::getBloodUnitsAfter
+     * @param orderOf   the order that method returns rows in, e.g. BloodUnitDAO::orderOf
+     * @param matcherOf the rows that method returns, e.g. BloodUnitDAO::matcherOf
+     */
+    public TablePager(String key, ListTableModel<T> model, BackgroundTasks tasks, PageQuery<T> query,
+                      Function<ListQuery, Comparator<T>> orderOf, Function<ListQuery, Predicate<T>> matcherOf,
+                      Consumer<Exception> onError) {
+        this.key = key;
+        this.model = model;
+        this.tasks = tasks;
+        this.query = query;
+        this.orderOf = orderOf;
+        this.matcherOf = matcherOf;
+        this.onError = onError;
+        model.setOrder(orderOf.apply(filter));
+        model.setFilter(matcherOf.apply(filter));
+        model.setMoreRowsLoader(this::loadMore);
+    }
+
+    /** Called on the EDT after each reload() or sync() has been applied. */
+    public void setOnLoaded(Runnable onLoaded) { this.onLoaded = onLoaded; }
+
+    /** Shows the first page for a new filter / sort, unless it is the one already shown. Call on the EDT. */
+    public void setFilter(ListQuery filter) {
+        if (filter.equals(this.filter)) return;
+        this.filter = filter;
+        model.setOrder(orderOf.apply(filter));
+        model.setFilter(matcherOf.apply(filter));
+        reload();
+    }
+
+    /** Shows the first page again (scrolls the loaded range back to one page). Call on the EDT. */
+    public void reload() {
+        ListQuery f = filter;
+        tasks.refresh(key, () -> query.after(f, null, PAGE_SIZE),
+                page -> { model.setRows(page, page.size() == PAGE_SIZE); onLoaded.run(); }, onError);
+    }
+
+    /** Re-reads the loaded range and applies only what changed. Call on the EDT. */
+    public void sync() {
+        ListQuery f = filter;
+        int n = Math.max(PAGE_SIZE, model.getRowCount());
+        tasks.refresh(key, () -> query.after(f, null, n),
+                rows -> { model.syncRows(rows, rows.size() == n); onLoaded.run(); },
+                ex -> System.err.println("Background sync '" + key + "' failed: " + ex.getMessage()));
+    }
+
+    // Called by the model (EDT) when a row near the end is scrolled into view
+    private void loadMore() {
+        int generation = model.getGeneration();
+        T last = model.getLastRow();
+        ListQuery f = filter;
+        tasks.run(() -> query.after(f, last, PAGE_SIZE),
+                page -> model.appendRows(page, page.size() == PAGE_SIZE, generation),
+                ex -> {
+                    model.moreRowsFailed();
+                    onError.accept(ex);
+                });
+    }
+}
@@ -0,0 +1,26 @@
+package controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One controller action run through BackgroundTasks, from the click to its result on screen. */
+@Name("bloodbank.UiAction")
+@Label("UI Action")
+@Category({"Blood Bank", "UI"})
+@Description("A controller action (e.g. BloodRequestController.fulfillRequest), from when it was started until its result was shown")
+@StackTrace(false)
+final class UiActionEvent extends jdk.jfr.Event {
+
+    @Label("Action")
+    String action;
+
+    @Label("Refresh Key")
+    String key;
+
+    @Label("Outcome")
+    @Description("ok, error or cancelled")
+    String outcome;
+}
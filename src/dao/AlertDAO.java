@@ -4,42 +4,164 @@ import model.Alert;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class AlertDAO {
 
-    public void checkForNewAlerts() throws SQLException {
-        String queryUnits = "SELECT blood_id, expiry_date FROM BloodUnits";
-        String insertAlert = "INSERT INTO Alerts (blood_id, alert_type, date_generated, status) VALUES (?, ?, ?, 'Pending')";
-        String checkExists = "SELECT count(*) FROM Alerts WHERE blood_id = ? AND alert_type = ?";
-        LocalDate today = LocalDate.now();
+    /** A unit becomes "Near Expiry" when it expires within this many days. */
+    public static final int NEAR_EXPIRY_DAYS = 8;
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(queryUnits)) {
+    /** Row key in AlertScanState for the expiry scanner's watermark. */
+    private static final String SCANNER_NAME = "expiry";
+
+    /**
+     * How far the next incremental scan reaches back before this scan's start. last_modified
+     * is stamped when a row is written, not when its transaction commits, so a unit written
+     * by a transaction still open when we scan carries an older stamp than our start time.
+     * Must be longer than the longest write transaction; units in the overlap are simply
+     * matched again, and INSERT IGNORE skips the alerts they already have.
+     */
+    static final long WATERMARK_OVERLAP_SECONDS = Long.getLong("alerts.watermark-overlap-seconds", 600);
+
+    // Set-based scan: the database finds the units and skips the ones that already
+    // have an alert, so a scan is a handful of statements no matter how big the stock is.
+    // The UNIQUE (blood_id, alert_type) key lets two terminals scan at the same time (IGNORE).
+    // Params: date_generated, today [, extra filter param]
+    private static final String INSERT_EXPIRED =
+            "INSERT IGNORE INTO Alerts (blood_id, alert_type, date_generated, status) " +
+            "SELECT b.blood_id, 'Expired', ?, 'Pending' FROM BloodUnits b " +
+            "WHERE b.expiry_date < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM Alerts a WHERE a.blood_id = b.blood_id AND a.alert_type = 'Expired')";
+
+    // Params: date_generated, today, today + NEAR_EXPIRY_DAYS [, extra filter param]
+    private static final String INSERT_NEAR_EXPIRY =
+            "INSERT IGNORE INTO Alerts (blood_id, alert_type, date_generated, status) " +
+            "SELECT b.blood_id, 'Near Expiry', ?, 'Pending' FROM BloodUnits b " +
+            "WHERE b.expiry_date >= ? AND b.expiry_date < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM Alerts a WHERE a.blood_id = b.blood_id AND a.alert_type = 'Near Expiry')";
+
+    // Extra filters for the incremental scan
+    private static final String SINCE_EXPIRY = " AND b.expiry_date >= ?";
+    private static final String SINCE_MODIFIED = " AND b.last_modified >= ?";
+
+    /**
+     * Incremental scan. Only looks at units whose expiry date crossed the Expired or
+     * Near Expiry line since the last scan, plus units added or changed since then.
+     * Falls back to a full scan the first time (no watermark yet).
+     */
+    public AlertScanResult checkForNewAlerts() throws SQLException {
+        return scan(false);
+    }
 
-            while (rs.next()) {
-                int bid = rs.getInt("blood_id");
-                LocalDate exp = rs.getDate("expiry_date").toLocalDate();
-                String type = null;
+    /**
+     * Full rescan of every unit. Use this if the watermark is suspected to be wrong
+     * (e.g. rows were changed by hand without touching last_modified).
+     */
+    public AlertScanResult rescanAllUnits() throws SQLException {
+        return scan(true);
+    }
+
+    private AlertScanResult scan(boolean forceFull) throws SQLException {
+        long start = System.nanoTime();
+        LocalDate todayLocal = LocalDate.now();
+        Date today = Date.valueOf(todayLocal);
+        Date nearLimit = Date.valueOf(todayLocal.plusDays(NEAR_EXPIRY_DAYS));
+        int expired = 0;
+        int nearExpiry = 0;
+        boolean full;
 
-                if (exp.isBefore(today)) type = "Expired";
-                else if (exp.isBefore(today.plusDays(8))) type = "Near Expiry";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Taken before scanning: anything modified while we run is picked up next time,
+                // and so is anything stamped a little earlier but committed after we looked
+                Timestamp scanStartedAt = databaseNow(conn);
+                Timestamp nextWatermark = new Timestamp(scanStartedAt.getTime() - WATERMARK_OVERLAP_SECONDS * 1000);
+                ScanState state = lockScanState(conn); // also serialises concurrent scanners
+                full = forceFull || state == null || state.lastScanDate.isAfter(todayLocal);
 
-                if (type != null && !alertExists(conn, bid, type, checkExists)) {
-                    try (PreparedStatement ps = conn.prepareStatement(insertAlert)) {
-                        ps.setInt(1, bid); ps.setString(2, type); ps.setDate(3, Date.valueOf(today));
-                        ps.executeUpdate();
+                if (full) {
+                    expired = insert(conn, INSERT_EXPIRED, today, null, null);
+                    nearExpiry = insert(conn, INSERT_NEAR_EXPIRY, today, nearLimit, null);
+                } else {
+                    LocalDate last = state.lastScanDate;
+                    if (last.isBefore(todayLocal)) {
+                        // Crossed the Expired line: expiry in [last scan, today)
+                        expired += insert(conn, INSERT_EXPIRED + SINCE_EXPIRY, today, null, Date.valueOf(last));
+                        // Crossed the Near Expiry line: expiry in [last scan + 8, today + 8)
+                        nearExpiry += insert(conn, INSERT_NEAR_EXPIRY + SINCE_EXPIRY, today, nearLimit,
+                                Date.valueOf(last.plusDays(NEAR_EXPIRY_DAYS)));
                     }
+                    // Added or edited since the last scan, whatever their expiry date
+                    expired += insert(conn, INSERT_EXPIRED + SINCE_MODIFIED, today, null, state.unitWatermark);
+                    nearExpiry += insert(conn, INSERT_NEAR_EXPIRY + SINCE_MODIFIED, today, nearLimit, state.unitWatermark);
                 }
+
+                saveScanState(conn, today, nextWatermark);
+                conn.commit();
+                if (expired + nearExpiry > 0) ChangeBus.getInstance().publish(ChangeEvent.alertsCreated(expired + nearExpiry));
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         }
+        return new AlertScanResult(expired, nearExpiry, (System.nanoTime() - start) / 1_000_000, full);
     }
 
-    private boolean alertExists(Connection conn, int bid, String type, String sql) throws SQLException {
+    private int insert(Connection conn, String sql, Date today, Date nearLimit, Object extra) throws SQLException {
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, bid); ps.setString(2, type);
-            try (ResultSet rs = ps.executeQuery()) { return rs.next() && rs.getInt(1) > 0; }
+            int i = 1;
+            ps.setDate(i++, today);
+            ps.setDate(i++, today);
+            if (nearLimit != null) ps.setDate(i++, nearLimit);
+            if (extra != null) ps.setObject(i, extra);
+            return ps.executeUpdate();
+        }
+    }
+
+    private Timestamp databaseNow(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT CURRENT_TIMESTAMP")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    private ScanState lockScanState(Connection conn) throws SQLException {
+        String sql = "SELECT last_scan_date, unit_watermark FROM AlertScanState WHERE scanner = ? FOR UPDATE";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, SCANNER_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new ScanState(rs.getDate("last_scan_date").toLocalDate(), rs.getTimestamp("unit_watermark"));
+            }
+        }
+    }
+
+    private void saveScanState(Connection conn, Date scanDate, Timestamp watermark) throws SQLException {
+        String sql = "INSERT INTO AlertScanState (scanner, last_scan_date, unit_watermark) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE last_scan_date = VALUES(last_scan_date), unit_watermark = VALUES(unit_watermark)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, SCANNER_NAME);
+            ps.setDate(2, scanDate);
+            ps.setTimestamp(3, watermark);
+            ps.executeUpdate();
+        }
+    }
+
+    private static final class ScanState {
+        final LocalDate lastScanDate;
+        final Timestamp unitWatermark;
+
+        ScanState(LocalDate lastScanDate, Timestamp unitWatermark) {
+            this.lastScanDate = lastScanDate;
+            this.unitWatermark = unitWatermark;
         }
     }
 
@@ -47,28 +169,128 @@ public class AlertDAO {
     public List<Alert> getAllAlerts() throws SQLException {
         List<Alert> list = new ArrayList<>();
 
-        // SQL: Join Alerts with BloodUnits to get the blood_type string
-        String sql = "SELECT a.alert_id, a.blood_id, b.blood_type, a.alert_type, a.date_generated, a.status " +
-                "FROM Alerts a " +
-                "JOIN BloodUnits b ON a.blood_id = b.blood_id " +
-                "ORDER BY a.date_generated DESC";
+        String sql = ALERT_COLUMNS + " ORDER BY a.date_generated DESC, a.alert_id DESC";
 
         try (Connection conn = DatabaseConnection.getConnection();
              ResultSet rs = conn.createStatement().executeQuery(sql)) {
-            while (rs.next()) {
-                list.add(new Alert(
-                        rs.getInt("alert_id"),
-                        rs.getInt("blood_id"),
-                        rs.getString("blood_type"), // Pass the fetched blood type to Model
-                        rs.getString("alert_type"),
-                        rs.getDate("date_generated").toLocalDate(),
-                        rs.getString("status")
-                ));
+            ResultStreams.RowReader<Alert> reader = alertReader(rs);
+            while (rs.next()) list.add(reader.read(rs));
+        }
+        return list;
+    }
+
+    /**
+     * Keyset page: the next 'limit' alerts after 'last' (null = the first page) that match
+     * the filter, in the query's sort order (default: date_generated, newest first).
+     * Seeks with an index instead of OFFSET.
+     */
+    public List<Alert> getAlertsAfter(ListQuery q, Alert last, int limit) throws SQLException {
+        PageSql page = alertQuery(q, last);
+        List<Alert> list = new ArrayList<>(Math.max(limit, 16));
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(page.sql(ALERT_COLUMNS, limit))) {
+            page.bind(ps, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultStreams.RowReader<Alert> reader = alertReader(rs);
+                while (rs.next()) list.add(reader.read(rs));
             }
         }
         return list;
     }
 
+    /** All alerts that match the filter (no paging). */
+    public List<Alert> getAlerts(ListQuery q) throws SQLException {
+        return getAlertsAfter(q, null, 0);
+    }
+
+    /** Like getAlerts(), but read as the Stream is consumed. Close it (try-with-resources). */
+    public Stream<Alert> streamAlerts(ListQuery q) throws SQLException {
+        return ResultStreams.stream(alertQuery(q, null), ALERT_COLUMNS, AlertDAO::alertReader);
+    }
+
+    /** The order getAlertsAfter() returns rows in for this query. */
+    public static Comparator<Alert> orderOf(ListQuery q) {
+        boolean desc = PageSql.descending(SORTS, q, true);
+        return PageSql.pick(SORTS, q, "date_generated").comparator(Alert::getAlertId, desc);
+    }
+
+    /** Whether an alert is one getAlertsAfter() would return for this query (the same WHERE, in Java). */
+    public static Predicate<Alert> matcherOf(ListQuery q) {
+        Integer id = q.textAsId();
+        return a -> {
+            if (q.getBloodType() != null && !q.getBloodType().equals(a.getBloodTypeDetails())) return false;
+            if (q.getStatus() != null && !q.getStatus().equals(a.getAlertType())) return false;
+            if (!q.inDateRange(a.getDateGenerated())) return false;
+            return id == null || id == a.getAlertId() || id == a.getBloodId();
+        };
+    }
+
+    // Keys are the column names the UI passes in; the values name them with the table alias
+    private static final Map<String, PageSql.Sort<Alert>> SORTS = Map.of(
+            "date_generated", new PageSql.Sort<>("a.date_generated", Alert::getDateGenerated),
+            "alert_type", new PageSql.Sort<>("a.alert_type", Alert::getAlertType),
+            "blood_id", new PageSql.Sort<>("a.blood_id", Alert::getBloodId),
+            "alert_id", new PageSql.Sort<>("a.alert_id", Alert::getAlertId));
+
+    // SQL: Join Alerts with BloodUnits to get the blood_type string
+    private static final String ALERT_COLUMNS =
+            "SELECT a.alert_id, a.blood_id, b.blood_type, a.alert_type, a.date_generated, a.status " +
+            "FROM Alerts a " +
+            "JOIN BloodUnits b ON a.blood_id = b.blood_id";
+
+    private static PageSql alertQuery(ListQuery q, Alert last) {
+        PageSql.Sort<Alert> sort = PageSql.pick(SORTS, q, "date_generated");
+        PageSql page = new PageSql(sort.column, "a.alert_id", PageSql.descending(SORTS, q, true));
+        if (q.getBloodType() != null) page.where("b.blood_type = ?", q.getBloodType());
+        if (q.getStatus() != null) page.where("a.alert_type = ?", q.getStatus());
+        if (q.getFrom() != null) page.where("a.date_generated >= ?", q.getFrom());
+        if (q.getTo() != null) page.where("a.date_generated <= ?", q.getTo());
+        Integer id = q.textAsId();
+        if (id != null) page.where("(a.alert_id = ? OR a.blood_id = ?)", id, id);
+        if (last != null) page.after(sort.value.apply(last), last.getAlertId());
+        return page;
+    }
+
+    // Column positions are looked up once per result set
+    private static ResultStreams.RowReader<Alert> alertReader(ResultSet rs) throws SQLException {
+        int id = rs.findColumn("alert_id");
+        int unit = rs.findColumn("blood_id");
+        int type = rs.findColumn("blood_type");
+        int alertType = rs.findColumn("alert_type");
+        int date = rs.findColumn("date_generated");
+        int status = rs.findColumn("status");
+        return r -> new Alert(
+                r.getInt(id),
+                r.getInt(unit),
+                r.getString(type), // Pass the fetched blood type to Model
+                r.getString(alertType),
+                r.getDate(date).toLocalDate(),
+                r.getString(status)
+        );
+    }
+
+    // Used for the badge on the dashboard's "Expiry Alerts" card
+    public int countPendingAlerts() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM Alerts WHERE status = 'Pending'";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /** Alerts created after alert 'afterId', by any terminal: {how many, the last alert_id} (0 if none). */
+    public int[] countAlertsAfter(int afterId) throws SQLException {
+        String sql = "SELECT COUNT(*), MAX(alert_id) FROM Alerts WHERE alert_id > ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, afterId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new int[] { rs.getInt(1), rs.getInt(2) } : new int[] { 0, 0 };
+            }
+        }
+    }
+
     public boolean deleteAlert(int id) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement("DELETE FROM Alerts WHERE alert_id=?")) {
@@ -0,0 +1,39 @@
+package dao;
+
+/**
+ * What a call to AlertDAO.checkForNewAlerts() did:
+ * how many alerts of each kind it created, how long the scan took,
+ * and whether it was a full or an incremental scan.
+ */
+public class AlertScanResult {
+
+    private final int expiredCreated;
+    private final int nearExpiryCreated;
+    private final long elapsedMillis;
+    private final boolean fullScan;
+
+    public AlertScanResult(int expiredCreated, int nearExpiryCreated, long elapsedMillis, boolean fullScan) {
+        this.expiredCreated = expiredCreated;
+        this.nearExpiryCreated = nearExpiryCreated;
+        this.elapsedMillis = elapsedMillis;
+        this.fullScan = fullScan;
+    }
+
+    public int getExpiredCreated() { return expiredCreated; }
+    public int getNearExpiryCreated() { return nearExpiryCreated; }
+    public int getTotalCreated() { return expiredCreated + nearExpiryCreated; }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    /** True if every unit was examined, false if only the changes since the last scan were. */
+    public boolean isFullScan() { return fullScan; }
+
+    @Override
+    public String toString() {
+        return "AlertScanResult{" +
+                "expiredCreated=" + expiredCreated +
+                ", nearExpiryCreated=" + nearExpiryCreated +
+                ", elapsedMillis=" + elapsedMillis +
+                ", fullScan=" + fullScan +
+                '}';
+    }
+}
@@ -1,84 +1,336 @@
 package dao;
 
+import dao.FulfillmentResult.Status;
 import model.BloodRequest;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class BloodRequestDAO {
 
+    /** How many times fulfillRequest() retries after losing a deadlock to another clerk. */
+    private static final int MAX_DEADLOCK_RETRIES = 3;
+
+    // Deadlocks lost and retried by fulfillRequest(), over all instances (for monitoring)
+    private static final LongAdder deadlockRetries = new LongAdder();
+
+    // Committed changes are announced here (after the commit, never for a rollback)
+    private final ChangeBus changes = ChangeBus.getInstance();
+
     public boolean saveRequest(BloodRequest request) throws SQLException {
         String sql = "INSERT INTO BloodRequests (blood_type, quantity, request_date, fulfilled) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, request.getBloodType());
-            pstmt.setInt(2, request.getQuantity());
-            pstmt.setDate(3, Date.valueOf(request.getRequestDate()));
-            pstmt.setBoolean(4, request.isFulfilled());
-            return pstmt.executeUpdate() > 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, request.getBloodType());
+                pstmt.setInt(2, request.getQuantity());
+                pstmt.setDate(3, Date.valueOf(request.getRequestDate()));
+                pstmt.setBoolean(4, request.isFulfilled());
+                if (pstmt.executeUpdate() == 0) { conn.rollback(); return false; }
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (keys.next()) request.setRequestId(keys.getInt(1));
+                }
+                if (!request.isFulfilled()) StockCounters.adjust(conn, request.getBloodType(), 0, request.getQuantity());
+                conn.commit();
+                changes.publish(ChangeEvent.requestCreated(request));
+                if (!request.isFulfilled()) changes.stockChanged(request.getBloodType());
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
     public List<BloodRequest> getAllRequests() throws SQLException {
         List<BloodRequest> requests = new ArrayList<>();
-        String sql = "SELECT * FROM BloodRequests ORDER BY request_date DESC";
+        String sql = "SELECT * FROM BloodRequests ORDER BY request_date DESC, request_id DESC";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
-            while (rs.next()) {
-                requests.add(new BloodRequest(
-                        rs.getInt("request_id"),
-                        rs.getString("blood_type"),
-                        rs.getInt("quantity"),
-                        rs.getDate("request_date").toLocalDate(),
-                        rs.getBoolean("fulfilled")
-                ));
+            ResultStreams.RowReader<BloodRequest> reader = requestReader(rs);
+            while (rs.next()) requests.add(reader.read(rs));
+        }
+        return requests;
+    }
+
+    /**
+     * Keyset page: the next 'limit' requests after 'last' (null = the first page) that match
+     * the filter, in the query's sort order (default: request_date, newest first).
+     * Seeks with an index instead of OFFSET.
+     */
+    public List<BloodRequest> getRequestsAfter(ListQuery q, BloodRequest last, int limit) throws SQLException {
+        PageSql page = requestQuery(q, last);
+        List<BloodRequest> requests = new ArrayList<>(Math.max(limit, 16));
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(page.sql("SELECT * FROM BloodRequests", limit))) {
+            page.bind(pstmt, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ResultStreams.RowReader<BloodRequest> reader = requestReader(rs);
+                while (rs.next()) requests.add(reader.read(rs));
             }
         }
         return requests;
     }
 
-    public int getTotalStockForType(String bloodType) throws SQLException {
-        String sql = "SELECT SUM(quantity) AS total FROM BloodUnits WHERE blood_type = ?";
+    /** All requests that match the filter (no paging). */
+    public List<BloodRequest> getRequests(ListQuery q) throws SQLException {
+        return getRequestsAfter(q, null, 0);
+    }
+
+    /** Like getRequests(), but read as the Stream is consumed. Close it (try-with-resources). */
+    public Stream<BloodRequest> streamRequests(ListQuery q) throws SQLException {
+        return ResultStreams.stream(requestQuery(q, null), "SELECT * FROM BloodRequests", BloodRequestDAO::requestReader);
+    }
+
+    /** The order getRequestsAfter() returns rows in for this query. */
+    public static Comparator<BloodRequest> orderOf(ListQuery q) {
+        boolean desc = PageSql.descending(SORTS, q, true);
+        return PageSql.pick(SORTS, q, "request_date").comparator(BloodRequest::getRequestId, desc);
+    }
+
+    /** Whether a request is one getRequestsAfter() would return for this query (the same WHERE, in Java). */
+    public static Predicate<BloodRequest> matcherOf(ListQuery q) {
+        Integer id = q.textAsId();
+        return r -> {
+            if (q.getBloodType() != null && !q.getBloodType().equals(r.getBloodType())) return false;
+            if ("Pending".equals(q.getStatus()) && r.isFulfilled()) return false;
+            if ("Fulfilled".equals(q.getStatus()) && !r.isFulfilled()) return false;
+            if (!q.inDateRange(r.getRequestDate())) return false;
+            return id == null || id == r.getRequestId();
+        };
+    }
+
+    private static final Map<String, PageSql.Sort<BloodRequest>> SORTS = Map.of(
+            "request_date", new PageSql.Sort<>("request_date", BloodRequest::getRequestDate),
+            "blood_type", new PageSql.Sort<>("blood_type", BloodRequest::getBloodType),
+            "quantity", new PageSql.Sort<>("quantity", BloodRequest::getQuantity),
+            "request_id", new PageSql.Sort<>("request_id", BloodRequest::getRequestId));
+
+    private static PageSql requestQuery(ListQuery q, BloodRequest last) {
+        PageSql.Sort<BloodRequest> sort = PageSql.pick(SORTS, q, "request_date");
+        PageSql page = new PageSql(sort.column, "request_id", PageSql.descending(SORTS, q, true));
+        if (q.getBloodType() != null) page.where("blood_type = ?", q.getBloodType());
+        if ("Pending".equals(q.getStatus())) page.where("fulfilled = ?", false);
+        else if ("Fulfilled".equals(q.getStatus())) page.where("fulfilled = ?", true);
+        if (q.getFrom() != null) page.where("request_date >= ?", q.getFrom());
+        if (q.getTo() != null) page.where("request_date <= ?", q.getTo());
+        Integer id = q.textAsId();
+        if (id != null) page.where("request_id = ?", id);
+        if (last != null) page.after(sort.value.apply(last), last.getRequestId());
+        return page;
+    }
+
+    /** One request as it is now in the database, or null if it was deleted. */
+    public BloodRequest getRequestById(int id) throws SQLException {
+        String sql = "SELECT * FROM BloodRequests WHERE request_id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, bloodType);
+            pstmt.setInt(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) return rs.getInt("total");
+                return rs.next() ? requestReader(rs).read(rs) : null;
             }
         }
-        return 0;
     }
 
-    // --- NEW METHOD: CALCULATE PENDING STOCK ---
-    // Counts how much blood is currently requested but not yet fulfilled.
-    public int getPendingStockForType(String bloodType) throws SQLException {
-        String sql = "SELECT SUM(quantity) AS total FROM BloodRequests WHERE blood_type = ? AND fulfilled = 0";
+    /**
+     * Every unfulfilled request, plus every request after 'afterId' whatever its state.
+     * For following changes made by other terminals, which the ChangeBus never sees.
+     */
+    public List<BloodRequest> getOpenRequestsOrAfter(int afterId) throws SQLException {
+        // A UNION rather than OR, so each half can use its index
+        String sql = "SELECT * FROM BloodRequests WHERE fulfilled = ? UNION SELECT * FROM BloodRequests WHERE request_id > ?";
+        List<BloodRequest> requests = new ArrayList<>();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, bloodType);
+            pstmt.setBoolean(1, false);
+            pstmt.setInt(2, afterId);
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) return rs.getInt("total");
+                ResultStreams.RowReader<BloodRequest> reader = requestReader(rs);
+                while (rs.next()) requests.add(reader.read(rs));
             }
         }
-        return 0; // Return 0 if no pending requests found
+        return requests;
+    }
+
+    // Column positions are looked up once per result set
+    private static ResultStreams.RowReader<BloodRequest> requestReader(ResultSet rs) throws SQLException {
+        int id = rs.findColumn("request_id");
+        int type = rs.findColumn("blood_type");
+        int quantity = rs.findColumn("quantity");
+        int date = rs.findColumn("request_date");
+        int fulfilled = rs.findColumn("fulfilled");
+        return r -> new BloodRequest(
+                r.getInt(id),
+                r.getString(type),
+                r.getInt(quantity),
+                r.getDate(date).toLocalDate(),
+                r.getBoolean(fulfilled)
+        );
+    }
+
+    // Reads the maintained counter (one primary-key lookup) instead of SUM()-ing BloodUnits
+    public int getTotalStockForType(String bloodType) throws SQLException {
+        return StockCounters.getAvailable(bloodType);
+    }
+
+    // --- NEW METHOD: CALCULATE PENDING STOCK ---
+    // Counts how much blood is currently requested but not yet fulfilled.
+    public int getPendingStockForType(String bloodType) throws SQLException {
+        return StockCounters.getPending(bloodType);
+    }
+
+    /** Available and pending quantity of every blood type that has counters: type -> {available, pending}. */
+    public Map<String, int[]> getStockSummary() throws SQLException {
+        return StockCounters.getAll();
     }
 
     public boolean deleteRequest(int id) throws SQLException {
         String sql = "DELETE FROM BloodRequests WHERE request_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                LockedRequest req = lockRequest(conn, id);
+                if (req == null) { conn.rollback(); return false; }
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, id);
+                    pstmt.executeUpdate();
+                }
+                if (!req.fulfilled) StockCounters.adjust(conn, req.bloodType, 0, -req.quantity);
+                conn.commit();
+                changes.publish(ChangeEvent.request(ChangeEvent.Kind.REQUEST_DELETED, id, req.bloodType, req.quantity));
+                if (!req.fulfilled) changes.stockChanged(req.bloodType);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Fulfills a request in ONE transaction on ONE connection:
+     * locks the request row, locks the matching units in FEFO order (SELECT ... FOR UPDATE),
+     * checks stock, deducts it with batched statements and flips 'fulfilled'.
+     * Two clerks fulfilling at the same time are serialised by the row locks, so stock can't be oversold.
+     */
+    public FulfillmentResult fulfillRequest(int requestId) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tryFulfill(requestId);
+            } catch (SQLException e) {
+                // 40001 = deadlock victim (MySQL rolled us back); safe to simply try again
+                if (!"40001".equals(e.getSQLState()) || attempt >= MAX_DEADLOCK_RETRIES) throw e;
+                deadlockRetries.increment();
+            }
+        }
+    }
+
+    private FulfillmentResult tryFulfill(int requestId) throws SQLException {
+        String markFulfilled = "UPDATE BloodRequests SET fulfilled = 1 WHERE request_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                LockedRequest req = lockRequest(conn, requestId);
+                if (req == null) {
+                    conn.rollback();
+                    return new FulfillmentResult(Status.NOT_FOUND, requestId, null, 0, 0, null);
+                }
+                if (req.fulfilled) {
+                    conn.rollback();
+                    return new FulfillmentResult(Status.ALREADY_FULFILLED, requestId, req.bloodType, req.quantity, 0, null);
+                }
+
+                BloodUnitDAO.FefoPlan plan = BloodUnitDAO.planFefo(conn, req.bloodType, req.quantity, true);
+                if (plan.allocated < req.quantity) {
+                    conn.rollback();
+                    return new FulfillmentResult(Status.INSUFFICIENT_STOCK, requestId, req.bloodType, req.quantity, plan.available, null);
+                }
+
+                BloodUnitDAO.applyFefo(conn, req.bloodType, plan.allocations);
+                try (PreparedStatement ps = conn.prepareStatement(markFulfilled)) {
+                    ps.setInt(1, requestId);
+                    ps.executeUpdate();
+                }
+                StockCounters.adjust(conn, req.bloodType, 0, -req.quantity);
+                conn.commit();
+
+                BloodUnitDAO.indexFefo(plan.allocations);
+                changes.publish(ChangeEvent.request(ChangeEvent.Kind.REQUEST_FULFILLED, requestId, req.bloodType, req.quantity));
+                changes.stockChanged(req.bloodType);
+                return new FulfillmentResult(Status.FULFILLED, requestId, req.bloodType, req.quantity, plan.available, plan.allocations);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
+    /** How many times fulfillRequest() has retried after a deadlock since startup. */
+    public static long getDeadlockRetryCount() {
+        return deadlockRetries.sum();
+    }
+
     public boolean markAsFulfilled(int id) throws SQLException {
         String sql = "UPDATE BloodRequests SET fulfilled = 1 WHERE request_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                LockedRequest req = lockRequest(conn, id);
+                if (req == null) { conn.rollback(); return false; }
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, id);
+                    pstmt.executeUpdate();
+                }
+                if (!req.fulfilled) StockCounters.adjust(conn, req.bloodType, 0, -req.quantity);
+                conn.commit();
+                if (!req.fulfilled) {
+                    changes.publish(ChangeEvent.request(ChangeEvent.Kind.REQUEST_FULFILLED, id, req.bloodType, req.quantity));
+                    changes.stockChanged(req.bloodType);
+                }
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** Locks a request row (SELECT ... FOR UPDATE) and returns it, or null if it doesn't exist. */
+    private LockedRequest lockRequest(Connection conn, int requestId) throws SQLException {
+        String sql = "SELECT blood_type, quantity, fulfilled FROM BloodRequests WHERE request_id = ? FOR UPDATE";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, requestId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new LockedRequest(rs.getString("blood_type"), rs.getInt("quantity"), rs.getBoolean("fulfilled"));
+            }
+        }
+    }
+
+    private static final class LockedRequest {
+        final String bloodType;
+        final int quantity;
+        final boolean fulfilled;
+
+        LockedRequest(String bloodType, int quantity, boolean fulfilled) {
+            this.bloodType = bloodType;
+            this.quantity = quantity;
+            this.fulfilled = fulfilled;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,107 +1,266 @@
 package dao;
 
+import dao.FulfillmentResult.Allocation;
 import model.BloodUnit;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Date;
+import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class BloodUnitDAO {
 
+    // In-memory expiry buckets; every successful write below is mirrored into it.
+    private final ExpiryIndex expiryIndex = ExpiryIndex.getInstance();
+    // Committed stock changes are announced here (after the commit, never for a rollback)
+    private final ChangeBus changes = ChangeBus.getInstance();
+
     public boolean saveBloodUnit(BloodUnit unit) throws SQLException {
         String sql = "INSERT INTO BloodUnits (blood_type, quantity, donation_date, expiry_date, donor_id) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, unit.getBloodType());
-            pstmt.setInt(2, unit.getQuantity());
-            pstmt.setDate(3, Date.valueOf(unit.getDonationDate()));
-            pstmt.setDate(4, Date.valueOf(unit.getExpiryDate()));
-            if (unit.getDonorId() > 0) pstmt.setInt(5, unit.getDonorId());
-            else pstmt.setNull(5, java.sql.Types.INTEGER);
-            return pstmt.executeUpdate() > 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, unit.getBloodType());
+                pstmt.setInt(2, unit.getQuantity());
+                pstmt.setDate(3, Date.valueOf(unit.getDonationDate()));
+                pstmt.setDate(4, Date.valueOf(unit.getExpiryDate()));
+                if (unit.getDonorId() > 0) pstmt.setInt(5, unit.getDonorId());
+                else pstmt.setNull(5, java.sql.Types.INTEGER);
+                if (pstmt.executeUpdate() == 0) { conn.rollback(); return false; }
+
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (keys.next()) unit.setBloodId(keys.getInt(1));
+                }
+                StockCounters.adjust(conn, unit.getBloodType(), unit.getQuantity(), 0);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
+        if (unit.getBloodId() > 0) expiryIndex.put(unit.getBloodId(), unit.getQuantity(), unit.getExpiryDate());
+        changes.stockChanged(unit.getBloodType());
+        return true;
     }
 
     public List<BloodUnit> getAllBloodUnits() throws SQLException {
         List<BloodUnit> units = new ArrayList<>();
-        String sql = "SELECT * FROM BloodUnits ORDER BY expiry_date ASC";
+        String sql = "SELECT * FROM BloodUnits ORDER BY expiry_date ASC, blood_id ASC";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
-            while (rs.next()) {
-                units.add(new BloodUnit(
-                        rs.getInt("blood_id"),
-                        rs.getString("blood_type"),
-                        rs.getInt("quantity"),
-                        rs.getDate("donation_date").toLocalDate(),
-                        rs.getDate("expiry_date").toLocalDate(),
-                        rs.getInt("donor_id")
-                ));
+            ResultStreams.RowReader<BloodUnit> reader = unitReader(rs);
+            while (rs.next()) units.add(reader.read(rs));
+        }
+        return units;
+    }
+
+    /**
+     * Keyset page: the next 'limit' units after 'last' (null = the first page) that match
+     * the filter, in the query's sort order (default: expiry date, soonest first).
+     * Seeks with an index instead of OFFSET, so page 1000 costs the same as page 1.
+     */
+    public List<BloodUnit> getBloodUnitsAfter(ListQuery q, BloodUnit last, int limit) throws SQLException {
+        PageSql page = unitQuery(q, last);
+        List<BloodUnit> units = new ArrayList<>(Math.max(limit, 16));
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(page.sql("SELECT * FROM BloodUnits", limit))) {
+            page.bind(pstmt, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ResultStreams.RowReader<BloodUnit> reader = unitReader(rs);
+                while (rs.next()) units.add(reader.read(rs));
             }
         }
         return units;
     }
 
+    /** All units that match the filter (no paging). */
+    public List<BloodUnit> getBloodUnits(ListQuery q) throws SQLException {
+        return getBloodUnitsAfter(q, null, 0);
+    }
+
+    /**
+     * All units that match the filter, read as the Stream is consumed (constant memory).
+     * Holds a connection until closed: use it in try-with-resources. A read error surfaces
+     * as DataAccessException.
+     */
+    public Stream<BloodUnit> streamBloodUnits(ListQuery q) throws SQLException {
+        return ResultStreams.stream(unitQuery(q, null), "SELECT * FROM BloodUnits", BloodUnitDAO::unitReader);
+    }
+
+    /** The order getBloodUnitsAfter() returns rows in for this query. */
+    public static Comparator<BloodUnit> orderOf(ListQuery q) {
+        boolean desc = PageSql.descending(SORTS, q, false);
+        return PageSql.pick(SORTS, q, "expiry_date").comparator(BloodUnit::getBloodId, desc);
+    }
+
+    /** Whether a unit is one getBloodUnitsAfter() would return for this query (the same WHERE, in Java). */
+    public static Predicate<BloodUnit> matcherOf(ListQuery q) {
+        Integer id = q.textAsId();
+        return u -> {
+            if (q.getBloodType() != null && !q.getBloodType().equals(u.getBloodType())) return false;
+            if (!q.inDateRange(u.getExpiryDate())) return false;
+            LocalDate today = LocalDate.now();
+            if ("Expired".equals(q.getStatus()) && !u.getExpiryDate().isBefore(today)) return false;
+            if ("Usable".equals(q.getStatus()) && u.getExpiryDate().isBefore(today)) return false;
+            if ("Expiring".equals(q.getStatus()) && (u.getExpiryDate().isBefore(today)
+                    || !u.getExpiryDate().isBefore(today.plusDays(AlertDAO.NEAR_EXPIRY_DAYS)))) return false;
+            return id == null || id == u.getBloodId() || id == u.getDonorId();
+        };
+    }
+
+    private static final Map<String, PageSql.Sort<BloodUnit>> SORTS = Map.of(
+            "expiry_date", new PageSql.Sort<>("expiry_date", BloodUnit::getExpiryDate),
+            "donation_date", new PageSql.Sort<>("donation_date", BloodUnit::getDonationDate),
+            "blood_type", new PageSql.Sort<>("blood_type", BloodUnit::getBloodType),
+            "quantity", new PageSql.Sort<>("quantity", BloodUnit::getQuantity),
+            "blood_id", new PageSql.Sort<>("blood_id", BloodUnit::getBloodId));
+
+    // WHERE + ORDER BY for a ListQuery, starting after 'last' (null = from the start)
+    private static PageSql unitQuery(ListQuery q, BloodUnit last) {
+        PageSql.Sort<BloodUnit> sort = PageSql.pick(SORTS, q, "expiry_date");
+        PageSql page = new PageSql(sort.column, "blood_id", PageSql.descending(SORTS, q, false));
+        // (blood_type, expiry_date) index covers type + expiry range + expiry order
+        if (q.getBloodType() != null) page.where("blood_type = ?", q.getBloodType());
+        if (q.getFrom() != null) page.where("expiry_date >= ?", q.getFrom());
+        if (q.getTo() != null) page.where("expiry_date <= ?", q.getTo());
+        LocalDate today = LocalDate.now();
+        if ("Expired".equals(q.getStatus())) page.where("expiry_date < ?", today);
+        else if ("Usable".equals(q.getStatus())) page.where("expiry_date >= ?", today);
+        else if ("Expiring".equals(q.getStatus())) {
+            // The same window as a Near Expiry alert: the upper day is exclusive
+            page.where("expiry_date >= ? AND expiry_date < ?", today, today.plusDays(AlertDAO.NEAR_EXPIRY_DAYS));
+        }
+        Integer id = q.textAsId();
+        if (id != null) page.where("(blood_id = ? OR donor_id = ?)", id, id);
+        if (last != null) page.after(sort.value.apply(last), last.getBloodId());
+        return page;
+    }
+
+    // Column positions are looked up once per result set, not by name on every row
+    private static ResultStreams.RowReader<BloodUnit> unitReader(ResultSet rs) throws SQLException {
+        int id = rs.findColumn("blood_id");
+        int type = rs.findColumn("blood_type");
+        int quantity = rs.findColumn("quantity");
+        int donated = rs.findColumn("donation_date");
+        int expiry = rs.findColumn("expiry_date");
+        int donor = rs.findColumn("donor_id");
+        return r -> new BloodUnit(
+                r.getInt(id),
+                r.getString(type),
+                r.getInt(quantity),
+                r.getDate(donated).toLocalDate(),
+                r.getDate(expiry).toLocalDate(),
+                r.getInt(donor)
+        );
+    }
+
     public boolean updateBloodUnit(BloodUnit unit) throws SQLException {
         String sql = "UPDATE BloodUnits SET blood_type=?, quantity=?, donation_date=?, expiry_date=?, donor_id=? WHERE blood_id=?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, unit.getBloodType());
-            pstmt.setInt(2, unit.getQuantity());
-            pstmt.setDate(3, Date.valueOf(unit.getDonationDate()));
-            pstmt.setDate(4, Date.valueOf(unit.getExpiryDate()));
-            if (unit.getDonorId() > 0) pstmt.setInt(5, unit.getDonorId());
-            else pstmt.setNull(5, java.sql.Types.INTEGER);
-            pstmt.setInt(6, unit.getBloodId());
-            return pstmt.executeUpdate() > 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // The old type and quantity are needed to move the stock counters
+                Object[] old = lockTypeAndQuantity(conn, unit.getBloodId());
+                if (old == null) { conn.rollback(); return false; }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, unit.getBloodType());
+                    pstmt.setInt(2, unit.getQuantity());
+                    pstmt.setDate(3, Date.valueOf(unit.getDonationDate()));
+                    pstmt.setDate(4, Date.valueOf(unit.getExpiryDate()));
+                    if (unit.getDonorId() > 0) pstmt.setInt(5, unit.getDonorId());
+                    else pstmt.setNull(5, java.sql.Types.INTEGER);
+                    pstmt.setInt(6, unit.getBloodId());
+                    pstmt.executeUpdate();
+                }
+                StockCounters.adjust(conn, (String) old[0], -(int) old[1], 0);
+                StockCounters.adjust(conn, unit.getBloodType(), unit.getQuantity(), 0);
+                conn.commit();
+                changes.stockChanged((String) old[0], unit.getBloodType());
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
+        expiryIndex.put(unit.getBloodId(), unit.getQuantity(), unit.getExpiryDate());
+        return true;
     }
 
     public boolean deleteBloodUnit(int bloodId) throws SQLException {
         String sql = "DELETE FROM BloodUnits WHERE blood_id=?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, bloodId);
-            return pstmt.executeUpdate() > 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Object[] old = lockTypeAndQuantity(conn, bloodId);
+                if (old == null) { conn.rollback(); return false; }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, bloodId);
+                    pstmt.executeUpdate();
+                }
+                StockCounters.adjust(conn, (String) old[0], -(int) old[1], 0);
+                conn.commit();
+                changes.stockChanged((String) old[0]);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
+        expiryIndex.remove(bloodId);
+        return true;
     }
 
+    /** Locks a unit's row and returns {blood_type, quantity}, or null if it doesn't exist. */
+    private Object[] lockTypeAndQuantity(Connection conn, int bloodId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT blood_type, quantity FROM BloodUnits WHERE blood_id = ? FOR UPDATE")) {
+            ps.setInt(1, bloodId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Object[]{rs.getString(1), rs.getInt(2)} : null;
+            }
+        }
+    }
 
     public void deductStock(String bloodType, int quantityNeeded) throws SQLException {
-        String selectSql = "SELECT blood_id, quantity FROM BloodUnits WHERE blood_type = ? AND quantity > 0 ORDER BY expiry_date ASC";
-        String updateSql = "UPDATE BloodUnits SET quantity = ? WHERE blood_id = ?";
-        String deleteSql = "DELETE FROM BloodUnits WHERE blood_id = ?";
+        deductStock(bloodType, quantityNeeded, false);
+    }
 
+    /**
+     * Takes stock of a blood type, earliest expiry first. As before, if there is less
+     * stock than asked for, everything that exists is taken.
+     *
+     * The whole allocation is worked out first, then written as one batched UPDATE and
+     * one batched DELETE (sent as multi-row statements thanks to rewriteBatchedStatements).
+     *
+     * @param dryRun true = only plan it, nothing is written or locked (lets the UI preview which bags would go)
+     * @return the bags taken (or that would be taken) and how much is left in each
+     */
+    public List<Allocation> deductStock(String bloodType, int quantityNeeded, boolean dryRun) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
+            if (dryRun) return planFefo(conn, bloodType, quantityNeeded, false).allocations;
 
-            try (PreparedStatement fetchStmt = conn.prepareStatement(selectSql)) {
-                fetchStmt.setString(1, bloodType);
-                ResultSet rs = fetchStmt.executeQuery();
-
-                while (rs.next() && quantityNeeded > 0) {
-                    int id = rs.getInt("blood_id");
-                    int currentQty = rs.getInt("quantity");
-
-                    if (currentQty <= quantityNeeded) {
-                        try (PreparedStatement del = conn.prepareStatement(deleteSql)) {
-                            del.setInt(1, id);
-                            del.executeUpdate();
-                        }
-                        quantityNeeded -= currentQty;
-                    } else {
-                        try (PreparedStatement upd = conn.prepareStatement(updateSql)) {
-                            upd.setInt(1, currentQty - quantityNeeded);
-                            upd.setInt(2, id);
-                            upd.executeUpdate();
-                        }
-                        quantityNeeded = 0;
-                    }
-                }
+            conn.setAutoCommit(false);
+            try {
+                FefoPlan plan = planFefo(conn, bloodType, quantityNeeded, true);
+                applyFefo(conn, bloodType, plan.allocations);
                 conn.commit();
+                indexFefo(plan.allocations);
+                changes.stockChanged(bloodType);
+                return plan.allocations;
             } catch (SQLException e) {
                 conn.rollback();
                 throw e;
@@ -110,4 +269,76 @@ public class BloodUnitDAO {
             }
         }
     }
-}
\ No newline at end of file
+
+    // --- FEFO (first-expired, first-out) helpers, shared with deductStock and BloodRequestDAO.fulfillRequest ---
+
+    /** Which units to take for a request, and how much of this blood type there is in total. */
+    static final class FefoPlan {
+        final List<Allocation> allocations = new ArrayList<>();
+        int available;
+        int allocated;
+    }
+
+    /**
+     * Reads the units of a blood type, earliest expiry first, and plans the deduction.
+     * Nothing is written. With lock = true the rows stay locked (FOR UPDATE) until the
+     * caller's transaction ends, so nobody else can take the same bags in the meantime.
+     */
+    static FefoPlan planFefo(Connection conn, String bloodType, int quantityNeeded, boolean lock) throws SQLException {
+        String sql = "SELECT blood_id, quantity FROM BloodUnits WHERE blood_type = ? AND quantity > 0 " +
+                "ORDER BY expiry_date ASC, blood_id ASC" + (lock ? " FOR UPDATE" : "");
+        FefoPlan plan = new FefoPlan();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, bloodType);
+            try (ResultSet rs = ps.executeQuery()) {
+                // Read every row: the total is reported back, and the rows are locked either way
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    int qty = rs.getInt(2);
+                    plan.available += qty;
+                    int stillNeeded = quantityNeeded - plan.allocated;
+                    if (stillNeeded > 0) {
+                        int take = Math.min(qty, stillNeeded);
+                        plan.allocations.add(new Allocation(id, take, qty - take));
+                        plan.allocated += take;
+                    }
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Writes a plan as one batched UPDATE (partly used bags) and one batched DELETE (used-up bags),
+     * and takes the issued quantity off the blood type's stock counter.
+     */
+    static void applyFefo(Connection conn, String bloodType, List<Allocation> allocations) throws SQLException {
+        try (PreparedStatement upd = conn.prepareStatement("UPDATE BloodUnits SET quantity = ? WHERE blood_id = ?");
+             PreparedStatement del = conn.prepareStatement("DELETE FROM BloodUnits WHERE blood_id = ?")) {
+            boolean anyUpdate = false, anyDelete = false;
+            for (Allocation a : allocations) {
+                if (a.getRemaining() > 0) {
+                    upd.setInt(1, a.getRemaining());
+                    upd.setInt(2, a.getBloodId());
+                    upd.addBatch();
+                    anyUpdate = true;
+                } else {
+                    del.setInt(1, a.getBloodId());
+                    del.addBatch();
+                    anyDelete = true;
+                }
+            }
+            if (anyUpdate) upd.executeBatch();
+            if (anyDelete) del.executeBatch();
+        }
+        int issued = 0;
+        for (Allocation a : allocations) issued += a.getTaken();
+        StockCounters.adjust(conn, bloodType, -issued, 0);
+    }
+
+    /** Mirrors a committed plan into the expiry index. */
+    static void indexFefo(List<Allocation> allocations) {
+        ExpiryIndex index = ExpiryIndex.getInstance();
+        for (Allocation a : allocations) index.updateQuantity(a.getBloodId(), a.getRemaining());
+    }
+}
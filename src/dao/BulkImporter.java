@@ -0,0 +1,251 @@
+package dao;
+
+import model.BloodUnit;
+import model.Donor;
+import model.Validation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bulk import of blood units and donors from CSV, e.g. after a donation drive.
+ *
+ * The file is read one record at a time (CsvReader), each row is checked with the same
+ * rules as the entry forms (model.Validation), and valid rows are written BATCH_SIZE at a
+ * time as one multi-row INSERT, one transaction per batch. The stock counters and the
+ * expiry index are updated per batch, as saveBloodUnit() does per unit.
+ *
+ * If a batch is refused by the database (e.g. a unit names a donor that doesn't exist),
+ * it is rolled back and its rows are retried one by one, so only the bad rows are
+ * rejected. Every rejected row is listed in the ImportReport with its line number.
+ *
+ * CSV layout (first line is the header; column order is free, other columns are ignored):
+ *   blood units: blood_type, quantity, donation_date, expiry_date, donor_id
+ *                (expiry_date empty = donation date + 35 days, donor_id empty = none)
+ *   donors:      name, contact, blood_type, date_registered (empty = today)
+ * Dates are yyyy-MM-dd.
+ */
+public class BulkImporter {
+
+    /** Rows per INSERT statement and transaction (-Dimport.batch.size). */
+    public static final int BATCH_SIZE = Math.max(1, Integer.getInteger("import.batch.size", 500));
+
+    /** Shelf life used when the CSV has no expiry date (same as a donation recorded on the donor page). */
+    static final int DEFAULT_SHELF_LIFE_DAYS = 35;
+
+    private static final String UNIT_COLUMNS = "(blood_type, quantity, donation_date, expiry_date, donor_id)";
+    private static final String DONOR_COLUMNS = "(name, contact, blood_type, date_registered)";
+
+    private final ExpiryIndex expiryIndex = ExpiryIndex.getInstance();
+
+    /** A parsed CSV row that can go into one INSERT ... VALUES (...). */
+    private interface RowWriter<T> {
+        T parse(Row row);                                                     // IllegalArgumentException = bad row
+        int columnCount();
+        void bind(PreparedStatement ps, int offset, T item) throws SQLException;
+        void inserted(Connection conn, List<T> items, ResultSet keys) throws SQLException; // inside the transaction
+        void committed(List<T> items);
+    }
+
+    public ImportReport importBloodUnits(Reader csv) throws IOException, SQLException {
+        return run(csv, "BloodUnits", UNIT_COLUMNS, new String[]{"blood_type", "quantity", "donation_date"}, new RowWriter<BloodUnit>() {
+            @Override public BloodUnit parse(Row row) {
+                String type = row.get("blood_type").toUpperCase(Locale.ROOT);
+                if (!Validation.isBloodType(type)) throw new IllegalArgumentException("Unknown blood type '" + row.get("blood_type") + "'.");
+                int qty = row.positiveInt("quantity");
+                LocalDate donated = row.date("donation_date");
+                LocalDate expires = row.has("expiry_date") ? row.date("expiry_date") : donated.plusDays(DEFAULT_SHELF_LIFE_DAYS);
+                String error = Validation.bloodUnitError(donated, expires);
+                if (error != null) throw new IllegalArgumentException(error);
+                int donor = row.has("donor_id") ? row.positiveInt("donor_id") : 0;
+                return new BloodUnit(type, qty, donated, expires, donor);
+            }
+
+            @Override public int columnCount() { return 5; }
+
+            @Override public void bind(PreparedStatement ps, int i, BloodUnit u) throws SQLException {
+                ps.setString(i + 1, u.getBloodType());
+                ps.setInt(i + 2, u.getQuantity());
+                ps.setDate(i + 3, Date.valueOf(u.getDonationDate()));
+                ps.setDate(i + 4, Date.valueOf(u.getExpiryDate()));
+                if (u.getDonorId() > 0) ps.setInt(i + 5, u.getDonorId());
+                else ps.setNull(i + 5, java.sql.Types.INTEGER);
+            }
+
+            @Override public void inserted(Connection conn, List<BloodUnit> units, ResultSet keys) throws SQLException {
+                for (BloodUnit u : units) if (keys.next()) u.setBloodId(keys.getInt(1));
+                // One counter update per blood type in the batch, not one per unit
+                Map<String, Integer> added = new HashMap<>();
+                for (BloodUnit u : units) added.merge(u.getBloodType(), u.getQuantity(), Integer::sum);
+                for (Map.Entry<String, Integer> e : added.entrySet()) StockCounters.adjust(conn, e.getKey(), e.getValue(), 0);
+            }
+
+            @Override public void committed(List<BloodUnit> units) {
+                for (BloodUnit u : units) if (u.getBloodId() > 0) expiryIndex.put(u.getBloodId(), u.getQuantity(), u.getExpiryDate());
+                List<String> types = new ArrayList<>(units.size());
+                for (BloodUnit u : units) types.add(u.getBloodType());
+                ChangeBus.getInstance().stockChanged(types);
+            }
+        });
+    }
+
+    public ImportReport importDonors(Reader csv) throws IOException, SQLException {
+        return run(csv, "Donors", DONOR_COLUMNS, new String[]{"name", "contact", "blood_type"}, new RowWriter<Donor>() {
+            @Override public Donor parse(Row row) {
+                String type = row.get("blood_type").toUpperCase(Locale.ROOT);
+                if (!Validation.isBloodType(type)) throw new IllegalArgumentException("Unknown blood type '" + row.get("blood_type") + "'.");
+                String error = Validation.donorError(row.get("name"), row.get("contact"), type);
+                if (error != null) throw new IllegalArgumentException(error);
+                LocalDate registered = row.has("date_registered") ? row.date("date_registered") : LocalDate.now();
+                return new Donor(row.get("name"), row.get("contact"), type, registered);
+            }
+
+            @Override public int columnCount() { return 4; }
+
+            @Override public void bind(PreparedStatement ps, int i, Donor d) throws SQLException {
+                ps.setString(i + 1, d.getName());
+                ps.setString(i + 2, d.getContact());
+                ps.setString(i + 3, d.getBloodType());
+                ps.setDate(i + 4, Date.valueOf(d.getDateRegistered()));
+            }
+
+            @Override public void inserted(Connection conn, List<Donor> donors, ResultSet keys) throws SQLException {
+                for (Donor d : donors) if (keys.next()) d.setDonorId(keys.getInt(1));
+            }
+
+            @Override public void committed(List<Donor> donors) {}
+        });
+    }
+
+    private <T> ImportReport run(Reader csv, String table, String columns, String[] required, RowWriter<T> writer)
+            throws IOException, SQLException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        CsvReader reader = new CsvReader(csv);
+        List<String> header = reader.next();
+        if (header == null) throw new IOException("The file is empty.");
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) positions.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        for (String column : required) {
+            if (!positions.containsKey(column)) throw new IOException("Missing column '" + column + "' in the header line.");
+        }
+
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        List<Integer> lines = new ArrayList<>(BATCH_SIZE);
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            Row row = new Row(positions);
+            List<String> fields;
+            while ((fields = reader.next()) != null) {
+                report.rowRead();
+                try {
+                    row.fields = fields;
+                    batch.add(writer.parse(row));
+                    lines.add(reader.getLineNumber());
+                } catch (IllegalArgumentException e) {
+                    report.rejected(reader.getLineNumber(), e.getMessage());
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    writeBatch(conn, table, columns, writer, batch, lines, report);
+                    batch.clear();
+                    lines.clear();
+                }
+            }
+            if (!batch.isEmpty()) writeBatch(conn, table, columns, writer, batch, lines, report);
+        }
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    // One multi-row INSERT in its own transaction; row by row if the database refuses it
+    private <T> void writeBatch(Connection conn, String table, String columns, RowWriter<T> writer,
+                                List<T> batch, List<Integer> lines, ImportReport report) throws SQLException {
+        try {
+            insert(conn, table, columns, writer, batch);
+            report.imported(batch.size());
+            return;
+        } catch (SQLException e) {
+            if (batch.size() == 1) { report.rejected(lines.get(0), e.getMessage()); return; }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                insert(conn, table, columns, writer, batch.subList(i, i + 1));
+                report.imported(1);
+            } catch (SQLException e) {
+                report.rejected(lines.get(i), e.getMessage());
+            }
+        }
+    }
+
+    private <T> void insert(Connection conn, String table, String columns, RowWriter<T> writer, List<T> items) throws SQLException {
+        int n = writer.columnCount();
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(' ').append(columns).append(" VALUES ");
+        String tuple = "(" + "?, ".repeat(n - 1) + "?)";
+        for (int i = 0; i < items.size(); i++) sql.append(i == 0 ? "" : ", ").append(tuple);
+
+        conn.setAutoCommit(false);
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < items.size(); i++) writer.bind(ps, i * n, items.get(i));
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                writer.inserted(conn, items, keys);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        writer.committed(items);
+    }
+
+    /** The current CSV record, read by column name. */
+    private static final class Row {
+        private final Map<String, Integer> positions;
+        private List<String> fields;
+
+        Row(Map<String, Integer> positions) {
+            this.positions = positions;
+        }
+
+        boolean has(String column) {
+            return !get(column).isEmpty();
+        }
+
+        String get(String column) {
+            Integer i = positions.get(column);
+            return i == null || i >= fields.size() ? "" : fields.get(i).trim();
+        }
+
+        int positiveInt(String column) {
+            try {
+                int v = Integer.parseInt(get(column));
+                if (v > 0) return v;
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException(column + " must be a positive whole number, got '" + get(column) + "'.");
+        }
+
+        LocalDate date(String column) {
+            try {
+                return LocalDate.parse(get(column));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException(column + " must be a date (yyyy-MM-dd), got '" + get(column) + "'.");
+            }
+        }
+    }
+}
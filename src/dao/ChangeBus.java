@@ -0,0 +1,62 @@
+package dao;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process notifications of committed changes to stock, requests and alerts.
+ *
+ * The DAOs publish right after their transaction commits (never for a rollback), on
+ * the thread that made the change. Listeners are therefore called on that thread and
+ * must not block or do I/O; the usual pattern is to record the event and let another
+ * thread act on it (see api.EventStream). A listener that throws is reported and
+ * skipped, it never fails the write that published the event.
+ *
+ * With no listeners (the desktop app), publishing costs one isEmpty() check.
+ * Changes made by other processes are not seen here.
+ */
+public class ChangeBus {
+
+    /** Called on the publishing thread; must return quickly. */
+    public interface Listener {
+        void changed(ChangeEvent event);
+    }
+
+    private static final ChangeBus INSTANCE = new ChangeBus();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public static ChangeBus getInstance() { return INSTANCE; }
+
+    private ChangeBus() {}
+
+    public void addListener(Listener l) { listeners.add(l); }
+    public void removeListener(Listener l) { listeners.remove(l); }
+
+    void publish(ChangeEvent event) {
+        if (listeners.isEmpty()) return;
+        for (Listener l : listeners) {
+            try {
+                l.changed(event);
+            } catch (RuntimeException e) {
+                System.err.println("Change listener failed on " + event + ": " + e);
+            }
+        }
+    }
+
+    /** One STOCK event per distinct blood type. */
+    void stockChanged(String... bloodTypes) {
+        if (listeners.isEmpty()) return;
+        Set<String> distinct = new LinkedHashSet<>(List.of(bloodTypes));
+        for (String type : distinct) publish(ChangeEvent.stock(type));
+    }
+
+    void stockChanged(Iterable<String> bloodTypes) {
+        if (listeners.isEmpty()) return;
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String type : bloodTypes) distinct.add(type);
+        for (String type : distinct) publish(ChangeEvent.stock(type));
+    }
+}
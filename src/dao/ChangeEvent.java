@@ -0,0 +1,60 @@
+package dao;
+
+import model.BloodRequest;
+
+/**
+ * A committed change, as published on the ChangeBus.
+ *
+ * STOCK only says which blood type's counters moved; listeners that need the new
+ * levels read them (see BloodRequestDAO.getStockSummary), so a burst of changes
+ * to one type can be answered with one read.
+ */
+public final class ChangeEvent {
+
+    public enum Kind {
+        STOCK,              // bloodType
+        REQUEST_CREATED,    // id, bloodType, quantity
+        REQUEST_FULFILLED,  // id, bloodType, quantity
+        REQUEST_DELETED,    // id, bloodType, quantity
+        ALERTS_CREATED      // quantity = how many new alerts
+    }
+
+    private final Kind kind;
+    private final int id;
+    private final String bloodType;
+    private final int quantity;
+
+    private ChangeEvent(Kind kind, int id, String bloodType, int quantity) {
+        this.kind = kind;
+        this.id = id;
+        this.bloodType = bloodType;
+        this.quantity = quantity;
+    }
+
+    static ChangeEvent stock(String bloodType) {
+        return new ChangeEvent(Kind.STOCK, 0, bloodType, 0);
+    }
+
+    static ChangeEvent request(Kind kind, int requestId, String bloodType, int quantity) {
+        return new ChangeEvent(kind, requestId, bloodType, quantity);
+    }
+
+    static ChangeEvent requestCreated(BloodRequest r) {
+        return request(Kind.REQUEST_CREATED, r.getRequestId(), r.getBloodType(), r.getQuantity());
+    }
+
+    static ChangeEvent alertsCreated(int count) {
+        return new ChangeEvent(Kind.ALERTS_CREATED, 0, null, count);
+    }
+
+    public Kind getKind() { return kind; }
+    /** The request id for REQUEST_* events, otherwise 0. */
+    public int getId() { return id; }
+    public String getBloodType() { return bloodType; }
+    public int getQuantity() { return quantity; }
+
+    @Override
+    public String toString() {
+        return kind + (id > 0 ? " #" + id : "") + (bloodType != null ? " " + bloodType : "") + (quantity != 0 ? " x" + quantity : "");
+    }
+}
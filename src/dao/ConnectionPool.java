@@ -0,0 +1,355 @@
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small, bounded JDBC connection pool.
+ * DatabaseConnection hands out connections from here instead of opening a
+ * brand-new MySQL socket for every DAO call.
+ *
+ * Borrowed connections are wrapped so that calling close() (which every DAO
+ * already does through try-with-resources) returns them to the pool instead
+ * of closing the physical socket. With instrument() the statements they create
+ * are wrapped too, and each borrow is timed (see JdbcMetrics).
+ */
+public class ConnectionPool implements ConnectionPoolMXBean {
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+
+    // LIFO: the most recently returned connection is the "warmest" one.
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+    private volatile JdbcMetrics metrics; // null = not instrumented
+
+    // --- Metrics ---
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger physicalOpen = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong totalBorrowNanos = new AtomicLong();
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password,
+                          int maxSize, int minIdle, long maxWaitMillis, long idleTimeoutMillis) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = 2;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        // First run right away: it opens the minIdle connections in the background
+        evictor.scheduleWithFixedDelay(this::evictIdle, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to maxWaitMillis if all of them are in use.
+     * Idle connections are validated before being handed out.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+
+        boolean acquired = permits.tryAcquire();
+        if (!acquired) {
+            waitCount.incrementAndGet();
+            try {
+                acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            if (!acquired) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + maxWaitMillis + " ms waiting for a database connection (" + maxSize + " in use)");
+            }
+        }
+
+        try {
+            Connection physical = takeValidIdle();
+            if (physical == null) physical = openPhysical();
+            active.incrementAndGet();
+            recordBorrow(System.nanoTime() - start);
+            return wrap(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeValidIdle() {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (isUsable(candidate.connection)) return candidate.connection;
+            validationFailures.incrementAndGet();
+            closeQuietly(candidate.connection);
+        }
+        return null;
+    }
+
+    private boolean isUsable(Connection c) {
+        try {
+            return !c.isClosed() && c.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection c = DriverManager.getConnection(url, user, password);
+        physicalOpen.incrementAndGet();
+        return c;
+    }
+
+    private void recordBorrow(long nanos) {
+        borrowCount.incrementAndGet();
+        totalBorrowNanos.addAndGet(nanos);
+        maxBorrowNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Called by the wrapper when the DAO closes its connection. */
+    private void release(Connection physical, boolean broken) {
+        active.decrementAndGet();
+        try {
+            if (broken || closed || physical.isClosed()) {
+                closeQuietly(physical);
+                return;
+            }
+            // Never hand a half-finished transaction to the next borrower.
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            idle.offerFirst(new IdleConnection(physical, System.currentTimeMillis()));
+        } catch (SQLException e) {
+            closeQuietly(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Drops connections that have been idle too long, keeping at least minIdle warm. */
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<IdleConnection> it = idle.descendingIterator(); // oldest first
+        while (it.hasNext() && idle.size() > minIdle) {
+            IdleConnection ic = it.next();
+            if (ic.idleSince < cutoff && idle.remove(ic)) {
+                evictedCount.incrementAndGet();
+                closeQuietly(ic.connection);
+            }
+        }
+        topUpIdle();
+    }
+
+    /**
+     * Opens connections until minIdle are idle again: at startup, and after idle ones were
+     * dropped by a failed validation or a broken release. Never beyond maxSize.
+     */
+    private void topUpIdle() {
+        while (!closed && idle.size() < minIdle && physicalOpen.get() < maxSize) {
+            if (!permits.tryAcquire()) return; // all in use; nothing to keep warm right now
+            try {
+                IdleConnection ic = new IdleConnection(openPhysical(), System.currentTimeMillis());
+                idle.offerLast(ic); // behind the connections in use recently
+                if (closed && idle.remove(ic)) closeQuietly(ic.connection); // shutdown() ran meanwhile
+            } catch (SQLException e) {
+                System.err.println("Could not open an idle database connection: " + e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+            // Nothing useful to do, the socket is being thrown away anyway.
+        } finally {
+            physicalOpen.decrementAndGet();
+        }
+    }
+
+    /** Times the statements and connection holds of every connection borrowed from now on. */
+    void instrument(JdbcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Closes every idle connection and stops the evictor. Borrowed connections are closed when returned. */
+    public void shutdown() {
+        closed = true;
+        evictor.shutdownNow();
+        IdleConnection ic;
+        while ((ic = idle.pollFirst()) != null) closeQuietly(ic.connection);
+    }
+
+    // --- Metrics getters ---
+    public int getMaxSize() { return maxSize; }
+    public int getActiveCount() { return active.get(); }
+    public int getIdleCount() { return idle.size(); }
+    public int getOpenCount() { return physicalOpen.get(); }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getWaitCount() { return waitCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getValidationFailureCount() { return validationFailures.get(); }
+    public long getEvictedCount() { return evictedCount.get(); }
+
+    public double getAverageBorrowMillis() {
+        long n = borrowCount.get();
+        return n == 0 ? 0.0 : totalBorrowNanos.get() / (double) n / 1_000_000.0;
+    }
+
+    public double getMaxBorrowMillis() { return maxBorrowNanos.get() / 1_000_000.0; }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool{active=%d, idle=%d, open=%d, max=%d, borrows=%d, waits=%d, timeouts=%d, " +
+                        "validationFailures=%d, evicted=%d, avgBorrow=%.3fms, maxBorrow=%.3fms}",
+                getActiveCount(), getIdleCount(), getOpenCount(), maxSize, getBorrowCount(), getWaitCount(),
+                getTimeoutCount(), getValidationFailureCount(), getEvictedCount(), getAverageBorrowMillis(), getMaxBorrowMillis());
+    }
+
+    // --- Wrapping ---
+
+    private Connection wrap(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledHandler(physical, metrics));
+    }
+
+    private static final class IdleConnection {
+        final Connection connection;
+        final long idleSince;
+
+        IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    /**
+     * Forwards everything to the physical connection, except close(), which
+     * returns it to the pool. Statements created through the wrapper are
+     * remembered and closed on return, because some DAO methods never close
+     * the Statement they create and the socket no longer goes away to do it for them.
+     */
+    private final class PooledHandler implements InvocationHandler {
+        private final Connection physical;
+        private final List<Statement> statements = new ArrayList<>();
+        private final JdbcMetrics metrics;
+        private final JdbcMetrics.Borrow borrow; // when instrumented
+        private boolean returned;
+        private boolean broken;
+
+        PooledHandler(Connection physical, JdbcMetrics metrics) {
+            this.physical = physical;
+            this.metrics = metrics;
+            this.borrow = metrics != null ? metrics.borrowed() : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        closeStatements();
+                        if (metrics != null) metrics.returned(borrow, broken);
+                        release(physical, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + physical + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                default:
+                    break;
+            }
+            if (returned) throw new SQLException("Connection has already been returned to the pool");
+
+            try {
+                Object result = method.invoke(physical, args);
+                if (result instanceof Statement) {
+                    statements.add((Statement) result);
+                    if (metrics != null) {
+                        String sql = name.equals("prepareStatement") || name.equals("prepareCall") ? (String) args[0] : null;
+                        result = InstrumentedStatement.wrap((Statement) result, physical, metrics, borrow, sql);
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                // SQLState class 08 = connection exception; do not put this socket back.
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    if (state != null && state.startsWith("08")) broken = true;
+                }
+                throw cause;
+            }
+        }
+
+        private void closeStatements() {
+            for (Statement s : statements) {
+                try {
+                    s.close();
+                } catch (SQLException ignored) {
+                    // Already closed or the connection is broken.
+                }
+            }
+            statements.clear();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package dao;
+
+/** JMX view of the connection pool, registered as bloodbank:type=ConnectionPool. */
+public interface ConnectionPoolMXBean {
+    int getMaxSize();
+    int getActiveCount();
+    int getIdleCount();
+    int getOpenCount();
+    long getBorrowCount();
+    long getWaitCount();
+    long getTimeoutCount();
+    long getValidationFailureCount();
+    long getEvictedCount();
+    double getAverageBorrowMillis();
+    double getMaxBorrowMillis();
+}
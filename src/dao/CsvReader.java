@@ -0,0 +1,93 @@
+package dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV one record at a time (RFC 4180: comma separated, fields may be quoted,
+ * "" inside quotes is a quote, quoted fields may span lines). Only the current record
+ * is held in memory, so files of any size can be read.
+ *
+ * Empty lines are skipped. A UTF-8 byte order mark at the start is ignored.
+ */
+public class CsvReader implements Closeable {
+
+    private final Reader in;
+    private final char[] buf = new char[64 * 1024];
+    private int pos;
+    private int len;
+    private int line = 1;        // line the reader is on
+    private int recordLine;      // line the last record started on
+    private boolean first = true;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /** The next record's fields, or null at the end of the input. */
+    public List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;     // inside quotes
+        boolean any = false;        // anything read for this record
+        recordLine = line;
+        int c;
+        while ((c = read()) != -1) {
+            if (first) {
+                first = false;
+                if (c == '\uFEFF') continue;
+            }
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') { read(); field.append('"'); }
+                    else quoted = false;
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+                continue;
+            }
+            if (c == '"') { quoted = true; any = true; }
+            else if (c == ',') { fields.add(field.toString()); field.setLength(0); any = true; }
+            else if (c == '\r') { /* part of \r\n */ }
+            else if (c == '\n') {
+                line++;
+                if (!any && field.length() == 0) { recordLine = line; continue; } // empty line
+                fields.add(field.toString());
+                return fields;
+            } else { field.append((char) c); any = true; }
+        }
+        if (quoted) throw new IOException("Line " + recordLine + ": quoted field is not closed");
+        if (!any && field.length() == 0) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /** The line number (1-based) the last record returned by next() started on. */
+    public int getLineNumber() { return recordLine; }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        if (pos == len && !fill()) return -1;
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == len && !fill()) return -1;
+        return buf[pos];
+    }
+
+    private boolean fill() throws IOException {
+        len = in.read(buf, 0, buf.length);
+        pos = 0;
+        if (len <= 0) { len = 0; return false; }
+        return true;
+    }
+}
@@ -0,0 +1,28 @@
+package dao;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One DAO call, i.e. one borrow of a pooled connection, from getConnection() to close(). */
+@Name("bloodbank.DaoCall")
+@Label("DAO Call")
+@Category({"Blood Bank", "Database"})
+@Description("A DAO method's use of a pooled connection: who borrowed it, how many statements it ran and how many rows they read or changed")
+@StackTrace(false)
+final class DaoCallEvent extends jdk.jfr.Event {
+
+    @Label("Caller")
+    String caller;
+
+    @Label("Statements")
+    int statements;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Connection Broken")
+    boolean broken;
+}
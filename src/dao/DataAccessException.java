@@ -0,0 +1,19 @@
+package dao;
+
+import java.sql.SQLException;
+
+/**
+ * A SQLException thrown while a Stream from one of the DAOs' stream methods was being read.
+ * Stream operations can't throw checked exceptions, so the SQLException travels as the cause.
+ */
+public class DataAccessException extends RuntimeException {
+
+    public DataAccessException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,141 @@
+package dao;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Where the database is and how the connection pool is sized.
+ *
+ * Each setting is looked up in this order (first one found wins):
+ *   1. a system property, e.g.      -Ddb.url=jdbc:mysql://dbhost:3306/blood_bank_db
+ *   2. an environment variable:     BLOODBANK_DB_URL (the key upper-cased, '.' and '-' become '_')
+ *   3. the properties file:         ./bloodbank.properties, or the file named by -Dbloodbank.config
+ *   4. the defaults of the profile
+ *
+ * Profiles (db.profile):
+ *   mysql (default) - the docker-compose MySQL server on localhost:3307
+ *   h2              - an in-memory H2 database in MySQL mode, created from blood_bank_setup.sql.
+ *                     Needs the H2 jar on the classpath instead of the MySQL connector.
+ *                     Nothing leaves the process, so it suits offline runs, CI and benchmarks.
+ */
+public final class DatabaseConfig {
+
+    public static final String PROFILE_MYSQL = "mysql";
+    public static final String PROFILE_H2 = "h2";
+
+    private static final String CONFIG_FILE = "bloodbank.properties";
+
+    private final String profile;
+    private final String driverClass;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String initScript;
+    private final int poolMaxSize;
+    private final int poolMinIdle;
+    private final long poolMaxWaitMillis;
+    private final long poolIdleTimeoutMillis;
+    private final int streamFetchSize;
+    private final boolean instrumented;
+    private final long slowQueryMillis;
+    private final boolean slowQueryExplain;
+
+    private DatabaseConfig(Properties file) {
+        this.profile = lookup(file, "db.profile", PROFILE_MYSQL).toLowerCase(Locale.ROOT);
+        boolean h2 = PROFILE_H2.equals(profile);
+        if (!h2 && !PROFILE_MYSQL.equals(profile)) {
+            throw new IllegalArgumentException("Unknown db.profile '" + profile + "' (expected mysql or h2)");
+        }
+
+        this.driverClass = lookup(file, "db.driver", h2 ? "org.h2.Driver" : "com.mysql.cj.jdbc.Driver");
+        this.url = lookup(file, "db.url", h2
+                ? "jdbc:h2:mem:blood_bank_db;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+                : "jdbc:mysql://localhost:3307/blood_bank_db?rewriteBatchedStatements=true");
+        this.user = lookup(file, "db.user", h2 ? "sa" : "JeanLucJava");
+        this.password = lookup(file, "db.password", h2 ? "" : "StrongPass123!");
+        // The MySQL container runs the setup script itself (docker-compose), the embedded database can't
+        this.initScript = emptyToNull(lookup(file, "db.init-script", h2 ? "src/blood_bank_setup.sql" : ""));
+
+        this.poolMaxSize = Integer.parseInt(lookup(file, "db.pool.max-size", "10"));
+        this.poolMinIdle = Integer.parseInt(lookup(file, "db.pool.min-idle", "2"));
+        this.poolMaxWaitMillis = Long.parseLong(lookup(file, "db.pool.max-wait-ms", "5000"));
+        this.poolIdleTimeoutMillis = Long.parseLong(lookup(file, "db.pool.idle-timeout-ms", String.valueOf(5 * 60_000)));
+        // Connector/J only streams with fetch size Integer.MIN_VALUE (row by row), unless the URL asks
+        // for server-side cursors (useCursorFetch=true), which then fetch this many rows per round trip
+        boolean mysqlRowByRow = !h2 && !url.contains("useCursorFetch=true");
+        this.streamFetchSize = Integer.parseInt(lookup(file, "db.fetch-size",
+                mysqlRowByRow ? String.valueOf(Integer.MIN_VALUE) : "1000"));
+        this.instrumented = Boolean.parseBoolean(lookup(file, "db.instrument", "true"));
+        this.slowQueryMillis = Long.parseLong(lookup(file, "db.slow-query-ms", "200"));
+        this.slowQueryExplain = Boolean.parseBoolean(lookup(file, "db.slow-query.explain", "false"));
+    }
+
+    /** Reads the settings from system properties, environment variables and the properties file. */
+    public static DatabaseConfig load() {
+        return new DatabaseConfig(readConfigFile());
+    }
+
+    private static Properties readConfigFile() {
+        Properties props = new Properties();
+        Path path = Paths.get(System.getProperty("bloodbank.config", CONFIG_FILE));
+        if (Files.isRegularFile(path)) {
+            try (InputStream in = new FileInputStream(path.toFile())) {
+                props.load(in);
+            } catch (IOException e) {
+                System.err.println("Could not read " + path + ": " + e.getMessage());
+            }
+        }
+        return props;
+    }
+
+    private static String lookup(Properties file, String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) value = System.getenv(envName(key));
+        if (value == null) value = file.getProperty(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    /** db.pool.max-size -> BLOODBANK_DB_POOL_MAX_SIZE */
+    static String envName(String key) {
+        return "BLOODBANK_" + key.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_');
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    public String getProfile() { return profile; }
+    public boolean isEmbedded() { return PROFILE_H2.equals(profile); }
+    public String getDriverClass() { return driverClass; }
+    public String getUrl() { return url; }
+    public String getUser() { return user; }
+    String getPassword() { return password; }
+    /** The SQL script that creates the schema when the pool starts, or null if there is none. */
+    public String getInitScript() { return initScript; }
+    public int getPoolMaxSize() { return poolMaxSize; }
+    public int getPoolMinIdle() { return poolMinIdle; }
+    public long getPoolMaxWaitMillis() { return poolMaxWaitMillis; }
+    public long getPoolIdleTimeoutMillis() { return poolIdleTimeoutMillis; }
+    /** Fetch size of the streaming reads (ResultStreams), so a large table is never held in memory at once. */
+    public int getStreamFetchSize() { return streamFetchSize; }
+    /** Whether statements and connection holds are timed and published over JMX (see JdbcMetrics). */
+    public boolean isInstrumented() { return instrumented; }
+    /** Statements at least this slow go to the slow query log; 0 = no log. */
+    public long getSlowQueryMillis() { return slowQueryMillis; }
+    /** Whether the slow query log also records the EXPLAIN plan of slow SELECTs. */
+    public boolean isSlowQueryExplain() { return slowQueryExplain; }
+
+    @Override
+    public String toString() {
+        // No password here: this ends up in logs
+        return "profile=" + profile + ", url=" + url + ", user=" + user
+                + ", pool=" + poolMinIdle + ".." + poolMaxSize
+                + (initScript != null ? ", init-script=" + initScript : "");
+    }
+}
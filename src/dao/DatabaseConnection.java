@@ -1,11 +1,10 @@
 package dao;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
- * Manages the connection to the MySQL database.
+ * Manages the connection to the database (MySQL, or embedded H2 - see DatabaseConfig).
  * This is a utility class that all DAO classes will use.
  * We keep the connection details in one single place for easy maintenance.
  * This class is not meant to be instantiated (hence the private constructor).
@@ -13,31 +12,17 @@ import java.sql.SQLException;
 public class DatabaseConnection {
 
     // --- JDBC Connection Details ---
-    // These are the "credentials" for our Java application to log into MySQL.
+    // The URL, credentials and pool sizes come from DatabaseConfig (system properties,
+    // BLOODBANK_* environment variables or bloodbank.properties). Without any of those,
+    // the app connects to the docker-compose MySQL server like it always did:
+    //   jdbc:mysql://localhost:3307/blood_bank_db as 'JeanLucJava'
+    // !! If your MySQL password differs, set db.password instead of editing the code !!
 
-    /**
-     * The JDBC driver class for MySQL.
-     * We need to tell Java's DriverManager what "language" to speak.
-     */
-    private static final String DRIVER_CLASS = "com.mysql.cj.jdbc.Driver";
-
-    /**
-     * The connection string (or URL) to our database.
-     * It follows the format: jdbc:<driver>://<host>:<port>/<database_name>
-     * 'blood_bank_db' is the database we created.
-     */
-    private static final String DATABASE_URL = "jdbc:mysql://localhost:3307/blood_bank_db";
+    /** The settings in use, read once when the pool is first created. */
+    private static volatile DatabaseConfig config;
 
-    /**
-     * The MySQL user we created and gave permissions to.
-     */
-    private static final String DATABASE_USER = "JeanLucJava";
-
-    /**
-     * The password for our 'JeanLucJava' user.
-     * !! YOU MUST CHANGE THIS TO SUIT YOUR DATABASE PASSWORD, THIS IS MINE BUT WON'T ACCESS YOURS UNLESS YOU MODIFY YOUR PASSWORD TO MATCH YOUR DB'S!!
-     */
-    private static final String DATABASE_PASSWORD = "StrongPass123!"; // <-- IMPORTANT!
+    /** The shared pool, created the first time a DAO asks for a connection. */
+    private static volatile ConnectionPool pool;
 
     /**
      * Private constructor to prevent anyone from creating a
@@ -57,23 +42,92 @@ public class DatabaseConnection {
      * @throws SQLException if a database access error occurs.
      */
     public static Connection getConnection() throws SQLException {
+        // The connection comes from the pool; closing it hands it back.
+        return getPool().getConnection();
+    }
+
+    /**
+     * Returns the shared connection pool (for its metrics: active, idle, waits, borrow latency).
+     * The JDBC driver is loaded only once, when the pool is first created.
+     * For the embedded profile, the setup script is run at that point too.
+     */
+    public static ConnectionPool getPool() throws SQLException {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseConnection.class) {
+                p = pool;
+                if (p == null) {
+                    DatabaseConfig c = getConfig();
+                    loadDriver(c.getDriverClass());
+                    p = new ConnectionPool(c.getUrl(), c.getUser(), c.getPassword(),
+                            c.getPoolMaxSize(), c.getPoolMinIdle(), c.getPoolMaxWaitMillis(), c.getPoolIdleTimeoutMillis());
+                    if (c.isInstrumented()) {
+                        JdbcMetrics.getInstance().configure(c);
+                        p.instrument(JdbcMetrics.getInstance());
+                    }
+                    JdbcMetrics.register(p, "ConnectionPool", null);
+                    if (c.getInitScript() != null) initSchema(p, c.getInitScript());
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /** The current settings (see DatabaseConfig for where they come from). */
+    public static DatabaseConfig getConfig() {
+        DatabaseConfig c = config;
+        if (c == null) {
+            synchronized (DatabaseConnection.class) {
+                c = config;
+                if (c == null) {
+                    c = DatabaseConfig.load();
+                    config = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Creates the tables of an embedded database. The script only uses
+     * CREATE TABLE IF NOT EXISTS / INSERT IGNORE, so running it again (e.g. after
+     * shutdown() and a new pool on the same in-memory database) changes nothing.
+     */
+    private static void initSchema(ConnectionPool p, String script) throws SQLException {
+        try (Connection conn = p.getConnection()) {
+            SetupScript.run(conn, script);
+        } catch (SQLException e) {
+            p.shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all pooled connections. Safe to call more than once.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            JdbcMetrics.unregister("ConnectionPool", null);
+            pool = null;
+        }
+    }
+
+    private static void loadDriver(String driverClass) throws SQLException {
         try {
-            // Step 1: Load the MySQL driver class.
+            // Step 1: Load the JDBC driver class (MySQL, or H2 for the embedded profile).
             // This "registers" the driver with Java's DriverManager.
-            Class.forName(DRIVER_CLASS);
+            Class.forName(driverClass);
         } catch (ClassNotFoundException e) {
             // This is a "setup" error, not a "runtime" error.
-            // It means the MySQL .jar file is missing from the project.
-            System.err.println("CRITICAL ERROR: MySQL JDBC Driver not found.");
+            // It means the driver's .jar file is missing from the project.
+            System.err.println("CRITICAL ERROR: JDBC Driver not found: " + driverClass);
             e.printStackTrace();
             // We re-throw this as an SQLException so the calling method
             // (in the DAO) knows the database connection failed.
-            throw new SQLException("MySQL JDBC Driver not found", e);
+            throw new SQLException("JDBC Driver not found: " + driverClass, e);
         }
-
-        // Step 2: Ask the DriverManager to create a connection
-        // using our URL, username, and password.
-        return DriverManager.getConnection(DATABASE_URL, DATABASE_USER, DATABASE_PASSWORD);
     }
 
     // --- Helper Main Method (for testing) ---
@@ -83,6 +137,7 @@ public class DatabaseConnection {
      */
     public static void main(String[] args) {
         System.out.println("--- Attempting Database Connection Test ---");
+        System.out.println("Settings: " + getConfig());
         try (Connection conn = getConnection()) {
             // The 'try-with-resources' block automatically closes the connection.
 
@@ -100,6 +155,12 @@ public class DatabaseConnection {
             e.printStackTrace();
         }
 
+        try {
+            System.out.println("Pool: " + getPool());
+        } catch (SQLException ignored) {
+            // The failure was already reported above.
+        }
+        shutdown();
         System.out.println("--- Connection Test Finished ---");
     }
 }
\ No newline at end of file
@@ -3,41 +3,142 @@ package dao;
 import model.Donor;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class DonorDAO {
 
+    // The new donor_id is written back into 'donor', so the caller can show the row without reloading
     public boolean saveDonor(Donor donor) throws SQLException {
         String sql = "INSERT INTO Donors (name, contact, blood_type, date_registered) VALUES (?, ?, ?, ?)";
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setString(1, donor.getName());
             pstmt.setString(2, donor.getContact());
             pstmt.setString(3, donor.getBloodType());
             pstmt.setDate(4, Date.valueOf(donor.getDateRegistered()));
-            return pstmt.executeUpdate() > 0;
+            if (pstmt.executeUpdate() == 0) return false;
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) donor.setDonorId(keys.getInt(1));
+            }
+            return true;
         }
     }
 
     public List<Donor> getAllDonors() throws SQLException {
         List<Donor> donors = new ArrayList<>();
-        String sql = "SELECT * FROM Donors";
+        String sql = "SELECT * FROM Donors ORDER BY donor_id";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
-            while (rs.next()) {
-                donors.add(new Donor(
-                        rs.getInt("donor_id"),
-                        rs.getString("name"),
-                        rs.getString("contact"),
-                        rs.getString("blood_type"),
-                        rs.getDate("date_registered").toLocalDate()
-                ));
+            ResultStreams.RowReader<Donor> reader = donorReader(rs);
+            while (rs.next()) donors.add(reader.read(rs));
+        }
+        return donors;
+    }
+
+    /**
+     * Keyset page: the next 'limit' donors after 'last' (null = the first page) that match
+     * the filter, in the query's sort order (default: donor_id). The search text matches
+     * the start of the name or contact, or the donor id.
+     */
+    public List<Donor> getDonorsAfter(ListQuery q, Donor last, int limit) throws SQLException {
+        PageSql page = donorQuery(q, last);
+        List<Donor> donors = new ArrayList<>(Math.max(limit, 16));
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(page.sql("SELECT * FROM Donors", limit))) {
+            page.bind(pstmt, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ResultStreams.RowReader<Donor> reader = donorReader(rs);
+                while (rs.next()) donors.add(reader.read(rs));
             }
         }
         return donors;
     }
 
+    /** All donors that match the filter (no paging). */
+    public List<Donor> getDonors(ListQuery q) throws SQLException {
+        return getDonorsAfter(q, null, 0);
+    }
+
+    /** Like getDonors(), but read as the Stream is consumed. Close it (try-with-resources). */
+    public Stream<Donor> streamDonors(ListQuery q) throws SQLException {
+        return ResultStreams.stream(donorQuery(q, null), "SELECT * FROM Donors", DonorDAO::donorReader);
+    }
+
+    /** The order getDonorsAfter() returns rows in for this query. */
+    public static Comparator<Donor> orderOf(ListQuery q) {
+        boolean desc = PageSql.descending(SORTS, q, false);
+        return PageSql.pick(SORTS, q, "donor_id").comparator(Donor::getDonorId, desc);
+    }
+
+    /** Whether a donor is one getDonorsAfter() would return for this query (the same WHERE, in Java). */
+    public static Predicate<Donor> matcherOf(ListQuery q) {
+        Integer id = q.textAsId();
+        return d -> {
+            if (q.getBloodType() != null && !q.getBloodType().equals(d.getBloodType())) return false;
+            if (!q.inDateRange(d.getDateRegistered())) return false;
+            if (q.getText() == null) return true;
+            if (PageSql.startsWith(d.getContact(), q.getText())) return true;
+            return id != null ? id == d.getDonorId() : PageSql.startsWith(d.getName(), q.getText());
+        };
+    }
+
+    private static final Map<String, PageSql.Sort<Donor>> SORTS = Map.of(
+            "donor_id", new PageSql.Sort<>("donor_id", Donor::getDonorId),
+            "name", new PageSql.Sort<>("name", Donor::getName),
+            "blood_type", new PageSql.Sort<>("blood_type", Donor::getBloodType),
+            "date_registered", new PageSql.Sort<>("date_registered", Donor::getDateRegistered));
+
+    private static PageSql donorQuery(ListQuery q, Donor last) {
+        PageSql.Sort<Donor> sort = PageSql.pick(SORTS, q, "donor_id");
+        PageSql page = new PageSql(sort.column, "donor_id", PageSql.descending(SORTS, q, false));
+        if (q.getBloodType() != null) page.where("blood_type = ?", q.getBloodType());
+        if (q.getFrom() != null) page.where("date_registered >= ?", q.getFrom());
+        if (q.getTo() != null) page.where("date_registered <= ?", q.getTo());
+        if (q.getText() != null) {
+            // "starts with" so the name index can be used; LIKE '%x%' would scan every donor
+            String prefix = PageSql.prefix(q.getText());
+            Integer id = q.textAsId();
+            if (id != null) page.where("(donor_id = ? OR contact LIKE ?)", id, prefix);
+            else page.where("(name LIKE ? OR contact LIKE ?)", prefix, prefix);
+        }
+        if (last != null) page.after(sort.value.apply(last), last.getDonorId());
+        return page;
+    }
+
+    /** One donor, or null if there is none with that id. */
+    public Donor getDonorById(int id) throws SQLException {
+        String sql = "SELECT * FROM Donors WHERE donor_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? donorReader(rs).read(rs) : null;
+            }
+        }
+    }
+
+    // Column positions are looked up once per result set
+    private static ResultStreams.RowReader<Donor> donorReader(ResultSet rs) throws SQLException {
+        int id = rs.findColumn("donor_id");
+        int name = rs.findColumn("name");
+        int contact = rs.findColumn("contact");
+        int type = rs.findColumn("blood_type");
+        int registered = rs.findColumn("date_registered");
+        return r -> new Donor(
+                r.getInt(id),
+                r.getString(name),
+                r.getString(contact),
+                r.getString(type),
+                r.getDate(registered).toLocalDate()
+        );
+    }
+
     /**
      * UPDATED METHOD: Uses a Transaction.
      * When we update a Donor, we MUST also update the blood_type
@@ -53,7 +154,16 @@ public class DonorDAO {
             // 1. Turn off AutoCommit (Start Transaction)
             conn.setAutoCommit(false);
 
-            // 2. Update the Donor Profile
+            // 2. Remember how much stock of each type is moving to the new type (for the stock counters)
+            Map<String, Integer> movedStock = new HashMap<>();
+            try (PreparedStatement ps0 = conn.prepareStatement("SELECT blood_type, quantity FROM BloodUnits WHERE donor_id = ? FOR UPDATE")) {
+                ps0.setInt(1, donor.getDonorId());
+                try (ResultSet rs = ps0.executeQuery()) {
+                    while (rs.next()) movedStock.merge(rs.getString(1), rs.getInt(2), Integer::sum);
+                }
+            }
+
+            // 3. Update the Donor Profile
             try (PreparedStatement ps1 = conn.prepareStatement(updateDonorSql)) {
                 ps1.setString(1, donor.getName());
                 ps1.setString(2, donor.getContact());
@@ -62,15 +172,23 @@ public class DonorDAO {
                 ps1.executeUpdate();
             }
 
-            // 3. Update the Linked Blood Stock (Keep them in sync!)
+            // 4. Update the Linked Blood Stock (Keep them in sync!)
             try (PreparedStatement ps2 = conn.prepareStatement(updateStockSql)) {
                 ps2.setString(1, donor.getBloodType()); // New Blood Type
                 ps2.setInt(2, donor.getDonorId());      // Where ID matches
                 ps2.executeUpdate();
             }
+            for (Map.Entry<String, Integer> moved : movedStock.entrySet()) {
+                StockCounters.adjust(conn, moved.getKey(), -moved.getValue(), 0);
+                StockCounters.adjust(conn, donor.getBloodType(), moved.getValue(), 0);
+            }
 
-            // 4. Commit (Save Everything)
+            // 5. Commit (Save Everything)
             conn.commit();
+            if (!movedStock.isEmpty()) {
+                movedStock.put(donor.getBloodType(), 0);
+                ChangeBus.getInstance().stockChanged(movedStock.keySet());
+            }
             return true;
 
         } catch (SQLException e) {
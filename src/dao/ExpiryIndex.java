@@ -0,0 +1,230 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of blood unit expiry dates, bucketed by day.
+ *
+ * Answers "which units expire in the next N days" and "which units cross the
+ * Near Expiry / Expired line on a given day" by looking at a few day buckets
+ * instead of querying the whole BloodUnits table.
+ *
+ * BloodUnitDAO keeps it up to date for changes made by this application.
+ * Changes made by other terminals are picked up by syncChanges(), which reads
+ * rows whose last_modified moved since the previous sync. Deletes leave no
+ * row to read, so syncChanges() also rebuilds the whole index on the first
+ * sync of each day: a unit deleted elsewhere lingers until the next day at
+ * most. Treat results as "at most these units"; the SQL alert scan is still
+ * the source of truth.
+ */
+public class ExpiryIndex {
+
+    private static final ExpiryIndex INSTANCE = new ExpiryIndex();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private NavigableMap<Long, Map<Integer, Integer>> byDay = new TreeMap<>(); // epochDay -> (bloodId -> quantity)
+    private Map<Integer, Long> dayOfUnit = new HashMap<>();                     // bloodId -> epochDay
+    private volatile boolean loaded;
+    private volatile Timestamp lastSync;
+    private volatile LocalDate builtOn; // the day of the last rebuild()
+
+    public static ExpiryIndex getInstance() { return INSTANCE; }
+
+    private ExpiryIndex() {}
+
+    /** A fresh, empty index that is not connected to the DAOs (for benchmarks). */
+    public static ExpiryIndex standalone() { return new ExpiryIndex(); }
+
+    public boolean isLoaded() { return loaded; }
+
+    // --- Loading from the database ---
+
+    /** Reloads the whole index from BloodUnits. Runs off the Swing thread (see AlertScheduler). */
+    public void rebuild() throws SQLException {
+        LocalDate today = LocalDate.now();
+        NavigableMap<Long, Map<Integer, Integer>> newByDay = new TreeMap<>();
+        Map<Integer, Long> newDayOfUnit = new HashMap<>();
+        Timestamp syncPoint;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // Taken before reading, so anything committed during the load is caught by the next syncChanges()
+            syncPoint = databaseNow(conn);
+            // Streamed, so only the index itself is held in memory, not the result set as well
+            try (PreparedStatement ps = ResultStreams.prepareStreaming(conn, "SELECT blood_id, quantity, expiry_date FROM BloodUnits WHERE quantity > 0");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    long day = rs.getDate(3).toLocalDate().toEpochDay();
+                    newByDay.computeIfAbsent(day, d -> new HashMap<>()).put(id, rs.getInt(2));
+                    newDayOfUnit.put(id, day);
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            byDay = newByDay;
+            dayOfUnit = newDayOfUnit;
+            lastSync = syncPoint;
+            builtOn = today;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies rows inserted or updated (by anyone) since the previous sync.
+     * Does a full rebuild instead if the index has never been loaded or was
+     * last rebuilt on an earlier day, to drop units other terminals deleted.
+     */
+    public void syncChanges() throws SQLException {
+        if (!loaded || !LocalDate.now().equals(builtOn)) { rebuild(); return; }
+
+        String sql = "SELECT blood_id, quantity, expiry_date FROM BloodUnits WHERE last_modified >= ?";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            Timestamp syncPoint = databaseNow(conn);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setTimestamp(1, lastSync);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) put(rs.getInt(1), rs.getInt(2), rs.getDate(3).toLocalDate());
+                }
+            }
+            lastSync = syncPoint;
+        }
+    }
+
+    private Timestamp databaseNow(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT CURRENT_TIMESTAMP")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    // --- Updates (called by BloodUnitDAO after a successful write) ---
+
+    /** Adds or moves a unit. A quantity of 0 or less removes it. */
+    public void put(int bloodId, int quantity, LocalDate expiryDate) {
+        if (quantity <= 0) { remove(bloodId); return; }
+        long day = expiryDate.toEpochDay();
+        lock.writeLock().lock();
+        try {
+            Long oldDay = dayOfUnit.put(bloodId, day);
+            if (oldDay != null && oldDay != day) removeFromBucket(oldDay, bloodId);
+            byDay.computeIfAbsent(day, d -> new HashMap<>()).put(bloodId, quantity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Changes the quantity of a unit whose expiry date is already known. */
+    public void updateQuantity(int bloodId, int quantity) {
+        if (quantity <= 0) { remove(bloodId); return; }
+        lock.writeLock().lock();
+        try {
+            Long day = dayOfUnit.get(bloodId);
+            if (day != null) byDay.get(day).put(bloodId, quantity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int bloodId) {
+        lock.writeLock().lock();
+        try {
+            Long day = dayOfUnit.remove(bloodId);
+            if (day != null) removeFromBucket(day, bloodId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeFromBucket(long day, int bloodId) {
+        Map<Integer, Integer> bucket = byDay.get(day);
+        if (bucket == null) return;
+        bucket.remove(bloodId);
+        if (bucket.isEmpty()) byDay.remove(day);
+    }
+
+    // --- Queries ---
+
+    /** IDs of units expiring on or after 'from' and before 'toExclusive'. */
+    public List<Integer> unitsExpiringBetween(LocalDate from, LocalDate toExclusive) {
+        lock.readLock().lock();
+        try {
+            List<Integer> ids = new ArrayList<>();
+            for (Map<Integer, Integer> bucket : byDay.subMap(from.toEpochDay(), true, toExclusive.toEpochDay(), false).values()) {
+                ids.addAll(bucket.keySet());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** IDs of units expiring today or within the next 'days' days (not yet expired). */
+    public List<Integer> unitsExpiringWithin(int days) {
+        LocalDate today = LocalDate.now();
+        return unitsExpiringBetween(today, today.plusDays(days));
+    }
+
+    /** Total bags (sum of quantity) expiring on or after 'from' and before 'toExclusive'. */
+    public int quantityExpiringBetween(LocalDate from, LocalDate toExclusive) {
+        lock.readLock().lock();
+        try {
+            int total = 0;
+            for (Map<Integer, Integer> bucket : byDay.subMap(from.toEpochDay(), true, toExclusive.toEpochDay(), false).values()) {
+                for (int q : bucket.values()) total += q;
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Units that become "Near Expiry" on the given day (i.e. expire exactly NEAR_EXPIRY_DAYS - 1 days later). */
+    public List<Integer> unitsCrossingNearExpiry(LocalDate day) {
+        LocalDate expiry = day.plusDays(AlertDAO.NEAR_EXPIRY_DAYS - 1);
+        return unitsExpiringBetween(expiry, expiry.plusDays(1));
+    }
+
+    /** Units that become "Expired" on the given day (their expiry date was the day before). */
+    public List<Integer> unitsCrossingExpired(LocalDate day) {
+        return unitsExpiringBetween(day.minusDays(1), day);
+    }
+
+    /** Expiry date of a unit, or null if it is not in the index. */
+    public LocalDate expiryOf(int bloodId) {
+        lock.readLock().lock();
+        try {
+            Long day = dayOfUnit.get(bloodId);
+            return day == null ? null : LocalDate.ofEpochDay(day);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return dayOfUnit.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package dao;
+
+import java.nio.file.Path;
+
+/** What an Exporter run wrote: where, how many rows and bytes, and how fast. */
+public class ExportReport {
+
+    private final Path file;
+    private final long rows;
+    private final long bytes;
+    private final long elapsedMillis;
+
+    ExportReport(Path file, long rows, long bytes, long elapsedMillis) {
+        this.file = file;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public Path getFile() { return file; }
+    public long getRows() { return rows; }
+    /** Size of the file as written (after gzip, if used). */
+    public long getBytes() { return bytes; }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d row(s), %.1f MB to %s in %d ms (%.0f rows/s, %.1f MB/s)",
+                rows, bytes / 1e6, file.getFileName(), elapsedMillis, getRowsPerSecond(),
+                elapsedMillis == 0 ? 0 : bytes / 1e3 / elapsedMillis);
+    }
+}
@@ -0,0 +1,340 @@
+package dao;
+
+import model.Alert;
+import model.BloodRequest;
+import model.BloodUnit;
+import model.Donor;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports BloodUnits, BloodRequests, Alerts and Donors to CSV or JSON, e.g. for the
+ * daily report to the regional authority.
+ *
+ * Rows come from the DAOs' stream methods (a forward-only cursor, see ResultStreams)
+ * and are formatted straight into a large buffer in front of the file channel, so
+ * memory use doesn't depend on the table size and there is one write per BUFFER_SIZE
+ * bytes. Gzip uses the fastest level by default (-Dexport.gzip.level) so compression
+ * keeps up with the disk.
+ *
+ * The file is written as "<name>.part" and renamed when complete, so a failed or
+ * cancelled export never leaves a truncated file under the real name.
+ *
+ * Format and compression follow the file name: .csv, .json, .csv.gz or .json.gz.
+ * CSV is RFC 4180 with a header line (CsvReader reads it back); JSON is one array
+ * with one object per line. Dates are yyyy-MM-dd; a missing donor id is empty / null.
+ */
+public class Exporter {
+
+    /** Bytes per write to the file (and the gzip buffer size). */
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+    static final int GZIP_LEVEL = Integer.getInteger("export.gzip.level", Deflater.BEST_SPEED);
+
+    // Formatted rows are handed to the encoder in chunks of about this many chars
+    private static final int FLUSH_CHARS = 64 * 1024;
+
+    public enum Format { CSV, JSON }
+
+    /** What can be exported, with the columns written for each row. */
+    public enum Dataset {
+        BLOOD_UNITS("blood_units", "blood_id",
+                "blood_id", "blood_type", "quantity", "donation_date", "expiry_date", "donor_id") {
+            @Override long copy(ListQuery q, Sink out) throws SQLException, IOException {
+                try (Stream<BloodUnit> rows = new BloodUnitDAO().streamBloodUnits(q)) {
+                    return out.rows(rows, (u, s) -> {
+                        s.number(u.getBloodId());
+                        s.text(u.getBloodType());
+                        s.number(u.getQuantity());
+                        s.date(u.getDonationDate());
+                        s.date(u.getExpiryDate());
+                        s.id(u.getDonorId());
+                    });
+                }
+            }
+        },
+        BLOOD_REQUESTS("blood_requests", "request_id",
+                "request_id", "blood_type", "quantity", "request_date", "fulfilled") {
+            @Override long copy(ListQuery q, Sink out) throws SQLException, IOException {
+                try (Stream<BloodRequest> rows = new BloodRequestDAO().streamRequests(q)) {
+                    return out.rows(rows, (r, s) -> {
+                        s.number(r.getRequestId());
+                        s.text(r.getBloodType());
+                        s.number(r.getQuantity());
+                        s.date(r.getRequestDate());
+                        s.bool(r.isFulfilled());
+                    });
+                }
+            }
+        },
+        ALERTS("alerts", "alert_id",
+                "alert_id", "blood_id", "blood_type", "alert_type", "date_generated", "status") {
+            @Override long copy(ListQuery q, Sink out) throws SQLException, IOException {
+                try (Stream<Alert> rows = new AlertDAO().streamAlerts(q)) {
+                    return out.rows(rows, (a, s) -> {
+                        s.number(a.getAlertId());
+                        s.number(a.getBloodId());
+                        s.text(a.getBloodTypeDetails());
+                        s.text(a.getAlertType());
+                        s.date(a.getDateGenerated());
+                        s.text(a.getStatus());
+                    });
+                }
+            }
+        },
+        DONORS("donors", "donor_id",
+                "donor_id", "name", "contact", "blood_type", "date_registered") {
+            @Override long copy(ListQuery q, Sink out) throws SQLException, IOException {
+                try (Stream<Donor> rows = new DonorDAO().streamDonors(q)) {
+                    return out.rows(rows, (d, s) -> {
+                        s.number(d.getDonorId());
+                        s.text(d.getName());
+                        s.text(d.getContact());
+                        s.text(d.getBloodType());
+                        s.date(d.getDateRegistered());
+                    });
+                }
+            }
+        };
+
+        private final String baseName;
+        private final String idColumn;
+        private final String[] columns;
+
+        Dataset(String baseName, String idColumn, String... columns) {
+            this.baseName = baseName;
+            this.idColumn = idColumn;
+            this.columns = columns;
+        }
+
+        /** File name without extension, e.g. "blood_units". */
+        public String getBaseName() { return baseName; }
+
+        /** Every row in primary key order: the cheapest full scan, and a stable order from day to day. */
+        public ListQuery everything() { return ListQuery.ALL.sortedBy(idColumn, false); }
+
+        abstract long copy(ListQuery q, Sink out) throws SQLException, IOException;
+    }
+
+    /** CSV or JSON, from the file name (a trailing .gz is ignored). */
+    public static Format formatOf(Path file) {
+        String name = stripGz(file.getFileName().toString().toLowerCase(Locale.ROOT));
+        if (name.endsWith(".csv")) return Format.CSV;
+        if (name.endsWith(".json")) return Format.JSON;
+        throw new IllegalArgumentException("Export file must end in .csv, .json, .csv.gz or .json.gz: " + file.getFileName());
+    }
+
+    public static boolean isGzip(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    /** Writes the rows of the dataset that match the filter to the file; format and gzip follow the name. */
+    public ExportReport export(Dataset dataset, ListQuery q, Path file) throws IOException, SQLException {
+        Format format = formatOf(file);
+        long start = System.nanoTime();
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        long rows;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            if (isGzip(file)) out = new FastGzip(out);
+            try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                rows = write(dataset, q, format, writer);
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        try {
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new ExportReport(file, rows, Files.size(file), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes the rows to a Writer the caller owns (flushed, not closed). Returns the row count.
+     * A read error part way through surfaces as the SQLException, not as DataAccessException.
+     */
+    public long write(Dataset dataset, ListQuery q, Format format, Writer out) throws IOException, SQLException {
+        Sink sink = new Sink(out, format, dataset.columns);
+        try {
+            sink.begin();
+            long rows = dataset.copy(q, sink);
+            sink.finish();
+            return rows;
+        } catch (DataAccessException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String stripGz(String name) {
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    /** GZIPOutputStream at GZIP_LEVEL instead of the default level. */
+    private static final class FastGzip extends GZIPOutputStream {
+        FastGzip(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(GZIP_LEVEL);
+        }
+    }
+
+    interface RowFormat<T> {
+        void write(T row, Sink out);
+    }
+
+    /**
+     * Formats fields into one reused StringBuilder, which goes to the Writer every
+     * FLUSH_CHARS chars. Values are written in the dataset's column order.
+     */
+    static final class Sink {
+        private final Writer out;
+        private final boolean json;
+        private final String[] columns;
+        private final String[] keys;   // "\"name\":" for JSON
+        private final StringBuilder buf = new StringBuilder(FLUSH_CHARS + 4096);
+        private char[] chars = new char[FLUSH_CHARS + 4096];
+        private int column;
+        private long rows;
+
+        Sink(Writer out, Format format, String[] columns) {
+            this.out = out;
+            this.json = format == Format.JSON;
+            this.columns = columns;
+            this.keys = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) keys[i] = '"' + columns[i] + "\":";
+        }
+
+        void begin() {
+            if (json) {
+                buf.append('[');
+            } else {
+                buf.append(String.join(",", columns)).append("\r\n");
+            }
+        }
+
+        <T> long rows(Stream<T> rows, RowFormat<T> format) throws IOException {
+            Iterator<T> it = rows.iterator();
+            long count = 0;
+            while (it.hasNext()) {
+                column = 0;
+                if (json) buf.append(this.rows == 0 ? "\n{" : ",\n{");
+                format.write(it.next(), this);
+                buf.append(json ? "}" : "\r\n");
+                this.rows++;
+                count++;
+                if (buf.length() >= FLUSH_CHARS) drain();
+            }
+            return count;
+        }
+
+        void finish() throws IOException {
+            if (json) buf.append(rows == 0 ? "]\n" : "\n]\n");
+            drain();
+            out.flush();
+        }
+
+        void number(long v) {
+            next();
+            buf.append(v);
+        }
+
+        void bool(boolean v) {
+            next();
+            buf.append(v);
+        }
+
+        /** A key column; 0 means none (e.g. a unit without a donor). */
+        void id(int v) {
+            if (v > 0) number(v);
+            else text(null);
+        }
+
+        void date(LocalDate d) {
+            if (d == null) { text(null); return; }
+            next();
+            if (json) buf.append('"').append(d).append('"');
+            else buf.append(d);
+        }
+
+        void text(String s) {
+            next();
+            if (s == null) {
+                if (json) buf.append("null");
+            } else if (json) {
+                jsonString(s);
+            } else {
+                csvField(s);
+            }
+        }
+
+        private void next() {
+            if (column > 0) buf.append(',');
+            if (json) buf.append(keys[column]);
+            column++;
+        }
+
+        private void csvField(String s) {
+            boolean quote = false;
+            for (int i = 0; i < s.length() && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) { buf.append(s); return; }
+            buf.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"') buf.append('"');
+                buf.append(c);
+            }
+            buf.append('"');
+        }
+
+        private void jsonString(String s) {
+            buf.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': buf.append("\\\""); break;
+                    case '\\': buf.append("\\\\"); break;
+                    case '\n': buf.append("\\n"); break;
+                    case '\r': buf.append("\\r"); break;
+                    case '\t': buf.append("\\t"); break;
+                    default:
+                        if (c < 0x20) buf.append(String.format("\\u%04x", (int) c));
+                        else buf.append(c);
+                }
+            }
+            buf.append('"');
+        }
+
+        private void drain() throws IOException {
+            int n = buf.length();
+            if (chars.length < n) chars = new char[n];
+            buf.getChars(0, n, chars, 0);
+            out.write(chars, 0, n);
+            buf.setLength(0);
+        }
+    }
+}
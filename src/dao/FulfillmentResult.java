@@ -0,0 +1,78 @@
+package dao;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of BloodRequestDAO.fulfillRequest(): whether the request was fulfilled
+ * and, if so, which blood units (bags) were issued and how much was taken from each.
+ */
+public class FulfillmentResult {
+
+    public enum Status { FULFILLED, ALREADY_FULFILLED, NOT_FOUND, INSUFFICIENT_STOCK }
+
+    /** Quantity taken from one blood unit. remaining == 0 means the unit was used up and deleted. */
+    public static class Allocation {
+        private final int bloodId;
+        private final int taken;
+        private final int remaining;
+
+        public Allocation(int bloodId, int taken, int remaining) {
+            this.bloodId = bloodId;
+            this.taken = taken;
+            this.remaining = remaining;
+        }
+
+        public int getBloodId() { return bloodId; }
+        public int getTaken() { return taken; }
+        public int getRemaining() { return remaining; }
+
+        @Override
+        public String toString() { return "#" + bloodId + " x" + taken; }
+    }
+
+    private final Status status;
+    private final int requestId;
+    private final String bloodType;
+    private final int requested;
+    private final int available;
+    private final List<Allocation> allocations;
+
+    public FulfillmentResult(Status status, int requestId, String bloodType, int requested, int available, List<Allocation> allocations) {
+        this.status = status;
+        this.requestId = requestId;
+        this.bloodType = bloodType;
+        this.requested = requested;
+        this.available = available;
+        this.allocations = allocations == null ? Collections.emptyList() : Collections.unmodifiableList(allocations);
+    }
+
+    public Status getStatus() { return status; }
+    public boolean isFulfilled() { return status == Status.FULFILLED; }
+    public int getRequestId() { return requestId; }
+    public String getBloodType() { return bloodType; }
+    public int getRequested() { return requested; }
+
+    /** Stock of this blood type that was available when the request was checked. */
+    public int getAvailable() { return available; }
+
+    public List<Allocation> getAllocations() { return allocations; }
+
+    public int getTotalAllocated() {
+        int total = 0;
+        for (Allocation a : allocations) total += a.getTaken();
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "FulfillmentResult{" +
+                "status=" + status +
+                ", requestId=" + requestId +
+                ", bloodType='" + bloodType + '\'' +
+                ", requested=" + requested +
+                ", available=" + available +
+                ", allocations=" + allocations +
+                '}';
+    }
+}
@@ -0,0 +1,69 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** What a BulkImporter run did: rows imported, rows rejected (with the reason), and how fast. */
+public class ImportReport {
+
+    /** Only the first this many row errors are kept; the count covers all of them. */
+    public static final int MAX_ERRORS_KEPT = 1000;
+
+    /** A rejected CSV row. */
+    public static class RowError {
+        private final int line;
+        private final String message;
+
+        RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() { return line; }
+        public String getMessage() { return message; }
+
+        @Override public String toString() { return "Line " + line + ": " + message; }
+    }
+
+    private int rowsRead;
+    private int rowsImported;
+    private int errorCount;
+    private final List<RowError> errors = new ArrayList<>();
+    private long elapsedMillis;
+
+    void rowRead() { rowsRead++; }
+
+    void imported(int rows) { rowsImported += rows; }
+
+    void rejected(int line, String message) {
+        errorCount++;
+        if (errors.size() < MAX_ERRORS_KEPT) errors.add(new RowError(line, message));
+    }
+
+    void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+    public int getRowsRead() { return rowsRead; }
+    public int getRowsImported() { return rowsImported; }
+    public int getErrorCount() { return errorCount; }
+    public List<RowError> getErrors() { return Collections.unmodifiableList(errors); }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rowsImported : rowsImported * 1000.0 / elapsedMillis;
+    }
+
+    /** toString() plus the first few row errors, for a message dialog. */
+    public String summary(int maxErrors) {
+        StringBuilder sb = new StringBuilder(toString());
+        for (int i = 0; i < errors.size() && i < maxErrors; i++) sb.append('\n').append(errors.get(i));
+        if (errorCount > maxErrors) sb.append("\n... and ").append(errorCount - maxErrors).append(" more");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d row(s) imported, %d rejected, in %d ms (%.0f rows/s)",
+                rowsImported, rowsRead, errorCount, elapsedMillis, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,438 @@
+package dao;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Wraps a Statement handed out by the pool, to time its execute calls and count the rows
+ * it reads or changes (see JdbcMetrics), and emits a StatementEvent for each execute call.
+ * The bind parameters are remembered for the slow query log; for a batch that is the
+ * last row added. Everything else is passed straight to the driver's statement.
+ *
+ * A plain class rather than a Proxy, as every setter and execute call goes through it.
+ * CallableStatements are handed out as they are: the DAOs don't call stored procedures.
+ */
+final class InstrumentedStatement implements PreparedStatement {
+
+    /** One execute call on the driver's statement. */
+    private interface Execution<T> {
+        T run() throws SQLException;
+    }
+
+    private final Statement physical;
+    private final PreparedStatement prepared; // null for createStatement()
+    private final Connection connection;
+    private final JdbcMetrics metrics;
+    private final JdbcMetrics.Borrow borrow;
+    private final String sql;          // null for a plain Statement: its SQL comes with each execute
+    private TimingStats stats;         // of the last statement run
+    private final List<Object> params = new ArrayList<>();
+
+    private InstrumentedStatement(Statement physical, Connection connection, JdbcMetrics metrics,
+                                  JdbcMetrics.Borrow borrow, String sql) {
+        this.physical = physical;
+        this.prepared = physical instanceof PreparedStatement ? (PreparedStatement) physical : null;
+        this.connection = connection;
+        this.metrics = metrics;
+        this.borrow = borrow;
+        this.sql = sql;
+        if (sql != null) stats = metrics.statsFor(sql, borrow);
+    }
+
+    /** @param sql the SQL it was prepared with, or null for createStatement() */
+    static Statement wrap(Statement physical, Connection connection, JdbcMetrics metrics, JdbcMetrics.Borrow borrow, String sql) {
+        if (physical instanceof CallableStatement) return physical;
+        return new InstrumentedStatement(physical, connection, metrics, borrow, sql);
+    }
+
+    /** @param statementSql the SQL passed to execute, or null to run the prepared one */
+    private <T> T timed(String statementSql, Execution<T> execution) throws SQLException {
+        if (statementSql == null) statementSql = sql;
+        if (statementSql != null && (sql == null || !statementSql.equals(sql))) stats = metrics.statsFor(statementSql, borrow);
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = execution.run();
+            failed = false;
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            long rows = changedRows(result);
+            borrow.statements++;
+            borrow.rows += rows;
+            if (stats != null) metrics.executed(stats, statementSql, nanos, rows, failed, params, connection);
+            event.end();
+            if (event.shouldCommit()) {
+                event.label = stats != null ? stats.getLabel() : null;
+                event.rows = rows;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    private void remember(int index, Object value) {
+        while (params.size() < index) params.add(null);
+        params.set(index - 1, value);
+    }
+
+    private static long changedRows(Object result) {
+        if (result instanceof Integer || result instanceof Long) return Math.max(0, ((Number) result).longValue());
+        long n = 0;
+        if (result instanceof int[]) for (int c : (int[]) result) n += Math.max(0, c);
+        if (result instanceof long[]) for (long c : (long[]) result) n += Math.max(0, c);
+        return n;
+    }
+
+    // Rows read are counted as next() finds them, so streamed results count too
+    private ResultSet countRows(ResultSet rs) {
+        return rs == null || stats == null ? rs : new CountingResultSet(rs, stats, borrow);
+    }
+
+    @Override public ResultSet getResultSet() throws SQLException { return countRows(physical.getResultSet()); }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        params.clear();
+        prepared.clearParameters();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : physical.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || physical.isWrapperFor(iface);
+    }
+
+    @Override
+    public String toString() {
+        return "Instrumented[" + physical + "]";
+    }
+
+    // --- Execute calls, timed ---
+
+    @Override public int[] executeBatch() throws SQLException { return timed(null, physical::executeBatch); }
+    @Override public long[] executeLargeBatch() throws SQLException { return timed(null, physical::executeLargeBatch); }
+    @Override public long executeLargeUpdate() throws SQLException { return timed(null, prepared::executeLargeUpdate); }
+
+    @Override
+    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        return timed(sql, () -> physical.executeLargeUpdate(sql, columnIndexes));
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+        return timed(sql, () -> physical.executeLargeUpdate(sql, columnNames));
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        return timed(sql, () -> physical.executeLargeUpdate(sql, autoGeneratedKeys));
+    }
+
+    @Override public long executeLargeUpdate(String sql) throws SQLException { return timed(sql, () -> physical.executeLargeUpdate(sql)); }
+    @Override public ResultSet executeQuery() throws SQLException { return countRows(timed(null, prepared::executeQuery)); }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        return countRows(timed(sql, () -> physical.executeQuery(sql)));
+    }
+
+    @Override public int executeUpdate() throws SQLException { return timed(null, prepared::executeUpdate); }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        return timed(sql, () -> physical.executeUpdate(sql, columnIndexes));
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        return timed(sql, () -> physical.executeUpdate(sql, columnNames));
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        return timed(sql, () -> physical.executeUpdate(sql, autoGeneratedKeys));
+    }
+
+    @Override public int executeUpdate(String sql) throws SQLException { return timed(sql, () -> physical.executeUpdate(sql)); }
+    @Override public boolean execute() throws SQLException { return timed(null, prepared::execute); }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        return timed(sql, () -> physical.execute(sql, columnIndexes));
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        return timed(sql, () -> physical.execute(sql, columnNames));
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        return timed(sql, () -> physical.execute(sql, autoGeneratedKeys));
+    }
+
+    @Override public boolean execute(String sql) throws SQLException { return timed(sql, () -> physical.execute(sql)); }
+
+    // --- Bind parameters, remembered ---
+
+    @Override public void setArray(int index, Array x) throws SQLException { remember(index, x); prepared.setArray(index, x); }
+
+    @Override
+    public void setAsciiStream(int index, InputStream x, int length) throws SQLException {
+        remember(index, x);
+        prepared.setAsciiStream(index, x, length);
+    }
+
+    @Override
+    public void setAsciiStream(int index, InputStream x, long length) throws SQLException {
+        remember(index, x);
+        prepared.setAsciiStream(index, x, length);
+    }
+
+    @Override
+    public void setAsciiStream(int index, InputStream x) throws SQLException {
+        remember(index, x);
+        prepared.setAsciiStream(index, x);
+    }
+
+    @Override
+    public void setBigDecimal(int index, BigDecimal x) throws SQLException {
+        remember(index, x);
+        prepared.setBigDecimal(index, x);
+    }
+
+    @Override
+    public void setBinaryStream(int index, InputStream x, int length) throws SQLException {
+        remember(index, x);
+        prepared.setBinaryStream(index, x, length);
+    }
+
+    @Override
+    public void setBinaryStream(int index, InputStream x, long length) throws SQLException {
+        remember(index, x);
+        prepared.setBinaryStream(index, x, length);
+    }
+
+    @Override
+    public void setBinaryStream(int index, InputStream x) throws SQLException {
+        remember(index, x);
+        prepared.setBinaryStream(index, x);
+    }
+
+    @Override
+    public void setBlob(int index, InputStream x, long length) throws SQLException {
+        remember(index, x);
+        prepared.setBlob(index, x, length);
+    }
+
+    @Override public void setBlob(int index, InputStream x) throws SQLException { remember(index, x); prepared.setBlob(index, x); }
+    @Override public void setBlob(int index, Blob x) throws SQLException { remember(index, x); prepared.setBlob(index, x); }
+    @Override public void setBoolean(int index, boolean x) throws SQLException { remember(index, x); prepared.setBoolean(index, x); }
+    @Override public void setByte(int index, byte x) throws SQLException { remember(index, x); prepared.setByte(index, x); }
+    @Override public void setBytes(int index, byte[] x) throws SQLException { remember(index, x); prepared.setBytes(index, x); }
+
+    @Override
+    public void setCharacterStream(int index, Reader x, int length) throws SQLException {
+        remember(index, x);
+        prepared.setCharacterStream(index, x, length);
+    }
+
+    @Override
+    public void setCharacterStream(int index, Reader x, long length) throws SQLException {
+        remember(index, x);
+        prepared.setCharacterStream(index, x, length);
+    }
+
+    @Override
+    public void setCharacterStream(int index, Reader x) throws SQLException {
+        remember(index, x);
+        prepared.setCharacterStream(index, x);
+    }
+
+    @Override
+    public void setClob(int index, Reader x, long length) throws SQLException {
+        remember(index, x);
+        prepared.setClob(index, x, length);
+    }
+
+    @Override public void setClob(int index, Reader x) throws SQLException { remember(index, x); prepared.setClob(index, x); }
+    @Override public void setClob(int index, Clob x) throws SQLException { remember(index, x); prepared.setClob(index, x); }
+
+    @Override
+    public void setDate(int index, Date x, Calendar cal) throws SQLException {
+        remember(index, x);
+        prepared.setDate(index, x, cal);
+    }
+
+    @Override public void setDate(int index, Date x) throws SQLException { remember(index, x); prepared.setDate(index, x); }
+    @Override public void setDouble(int index, double x) throws SQLException { remember(index, x); prepared.setDouble(index, x); }
+    @Override public void setFloat(int index, float x) throws SQLException { remember(index, x); prepared.setFloat(index, x); }
+    @Override public void setInt(int index, int x) throws SQLException { remember(index, x); prepared.setInt(index, x); }
+    @Override public void setLong(int index, long x) throws SQLException { remember(index, x); prepared.setLong(index, x); }
+
+    @Override
+    public void setNCharacterStream(int index, Reader x, long length) throws SQLException {
+        remember(index, x);
+        prepared.setNCharacterStream(index, x, length);
+    }
+
+    @Override
+    public void setNCharacterStream(int index, Reader x) throws SQLException {
+        remember(index, x);
+        prepared.setNCharacterStream(index, x);
+    }
+
+    @Override
+    public void setNClob(int index, Reader x, long length) throws SQLException {
+        remember(index, x);
+        prepared.setNClob(index, x, length);
+    }
+
+    @Override public void setNClob(int index, Reader x) throws SQLException { remember(index, x); prepared.setNClob(index, x); }
+    @Override public void setNClob(int index, NClob x) throws SQLException { remember(index, x); prepared.setNClob(index, x); }
+    @Override public void setNString(int index, String x) throws SQLException { remember(index, x); prepared.setNString(index, x); }
+
+    @Override
+    public void setNull(int index, int x, String typeName) throws SQLException {
+        remember(index, null);
+        prepared.setNull(index, x, typeName);
+    }
+
+    @Override public void setNull(int index, int x) throws SQLException { remember(index, null); prepared.setNull(index, x); }
+
+    @Override
+    public void setObject(int index, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+        remember(index, x);
+        prepared.setObject(index, x, targetSqlType, scaleOrLength);
+    }
+
+    @Override
+    public void setObject(int index, Object x, int targetSqlType) throws SQLException {
+        remember(index, x);
+        prepared.setObject(index, x, targetSqlType);
+    }
+
+    @Override
+    public void setObject(int index, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+        remember(index, x);
+        prepared.setObject(index, x, targetSqlType, scaleOrLength);
+    }
+
+    @Override
+    public void setObject(int index, Object x, SQLType targetSqlType) throws SQLException {
+        remember(index, x);
+        prepared.setObject(index, x, targetSqlType);
+    }
+
+    @Override public void setObject(int index, Object x) throws SQLException { remember(index, x); prepared.setObject(index, x); }
+    @Override public void setRef(int index, Ref x) throws SQLException { remember(index, x); prepared.setRef(index, x); }
+    @Override public void setRowId(int index, RowId x) throws SQLException { remember(index, x); prepared.setRowId(index, x); }
+    @Override public void setSQLXML(int index, SQLXML x) throws SQLException { remember(index, x); prepared.setSQLXML(index, x); }
+    @Override public void setShort(int index, short x) throws SQLException { remember(index, x); prepared.setShort(index, x); }
+    @Override public void setString(int index, String x) throws SQLException { remember(index, x); prepared.setString(index, x); }
+
+    @Override
+    public void setTime(int index, Time x, Calendar cal) throws SQLException {
+        remember(index, x);
+        prepared.setTime(index, x, cal);
+    }
+
+    @Override public void setTime(int index, Time x) throws SQLException { remember(index, x); prepared.setTime(index, x); }
+
+    @Override
+    public void setTimestamp(int index, Timestamp x, Calendar cal) throws SQLException {
+        remember(index, x);
+        prepared.setTimestamp(index, x, cal);
+    }
+
+    @Override public void setTimestamp(int index, Timestamp x) throws SQLException { remember(index, x); prepared.setTimestamp(index, x); }
+    @Override public void setURL(int index, URL x) throws SQLException { remember(index, x); prepared.setURL(index, x); }
+
+    @Deprecated @Override
+    public void setUnicodeStream(int index, InputStream x, int length) throws SQLException {
+        remember(index, x);
+        prepared.setUnicodeStream(index, x, length);
+    }
+
+    // --- Everything else as is ---
+
+    @Override public void addBatch() throws SQLException { prepared.addBatch(); }
+    @Override public ResultSetMetaData getMetaData() throws SQLException { return prepared.getMetaData(); }
+    @Override public ParameterMetaData getParameterMetaData() throws SQLException { return prepared.getParameterMetaData(); }
+    @Override public void addBatch(String sql) throws SQLException { physical.addBatch(sql); }
+    @Override public void cancel() throws SQLException { physical.cancel(); }
+    @Override public void clearBatch() throws SQLException { physical.clearBatch(); }
+    @Override public void clearWarnings() throws SQLException { physical.clearWarnings(); }
+    @Override public void closeOnCompletion() throws SQLException { physical.closeOnCompletion(); }
+    @Override public void close() throws SQLException { physical.close(); }
+
+    @Override
+    public String enquoteIdentifier(String identifier, boolean alwaysQuote) throws SQLException {
+        return physical.enquoteIdentifier(identifier, alwaysQuote);
+    }
+
+    @Override public String enquoteLiteral(String val) throws SQLException { return physical.enquoteLiteral(val); }
+    @Override public String enquoteNCharLiteral(String val) throws SQLException { return physical.enquoteNCharLiteral(val); }
+    @Override public Connection getConnection() throws SQLException { return physical.getConnection(); }
+    @Override public int getFetchDirection() throws SQLException { return physical.getFetchDirection(); }
+    @Override public int getFetchSize() throws SQLException { return physical.getFetchSize(); }
+    @Override public ResultSet getGeneratedKeys() throws SQLException { return physical.getGeneratedKeys(); }
+    @Override public long getLargeMaxRows() throws SQLException { return physical.getLargeMaxRows(); }
+    @Override public long getLargeUpdateCount() throws SQLException { return physical.getLargeUpdateCount(); }
+    @Override public int getMaxFieldSize() throws SQLException { return physical.getMaxFieldSize(); }
+    @Override public int getMaxRows() throws SQLException { return physical.getMaxRows(); }
+    @Override public boolean getMoreResults() throws SQLException { return physical.getMoreResults(); }
+    @Override public boolean getMoreResults(int current) throws SQLException { return physical.getMoreResults(current); }
+    @Override public int getQueryTimeout() throws SQLException { return physical.getQueryTimeout(); }
+    @Override public int getResultSetConcurrency() throws SQLException { return physical.getResultSetConcurrency(); }
+    @Override public int getResultSetHoldability() throws SQLException { return physical.getResultSetHoldability(); }
+    @Override public int getResultSetType() throws SQLException { return physical.getResultSetType(); }
+    @Override public int getUpdateCount() throws SQLException { return physical.getUpdateCount(); }
+    @Override public SQLWarning getWarnings() throws SQLException { return physical.getWarnings(); }
+    @Override public boolean isCloseOnCompletion() throws SQLException { return physical.isCloseOnCompletion(); }
+    @Override public boolean isClosed() throws SQLException { return physical.isClosed(); }
+    @Override public boolean isPoolable() throws SQLException { return physical.isPoolable(); }
+    @Override public boolean isSimpleIdentifier(String identifier) throws SQLException { return physical.isSimpleIdentifier(identifier); }
+    @Override public void setCursorName(String name) throws SQLException { physical.setCursorName(name); }
+    @Override public void setEscapeProcessing(boolean enable) throws SQLException { physical.setEscapeProcessing(enable); }
+    @Override public void setFetchDirection(int direction) throws SQLException { physical.setFetchDirection(direction); }
+    @Override public void setFetchSize(int rows) throws SQLException { physical.setFetchSize(rows); }
+    @Override public void setLargeMaxRows(long max) throws SQLException { physical.setLargeMaxRows(max); }
+    @Override public void setMaxFieldSize(int max) throws SQLException { physical.setMaxFieldSize(max); }
+    @Override public void setMaxRows(int max) throws SQLException { physical.setMaxRows(max); }
+    @Override public void setPoolable(boolean poolable) throws SQLException { physical.setPoolable(poolable); }
+    @Override public void setQueryTimeout(int seconds) throws SQLException { physical.setQueryTimeout(seconds); }
+}
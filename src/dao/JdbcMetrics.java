@@ -0,0 +1,333 @@
+package dao;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What the database is doing, statement by statement: a latency histogram, row count and
+ * error count per query label, how long each caller keeps its pooled connection, and a log
+ * of slow statements with their bind parameters (and, if enabled, their EXPLAIN plan).
+ *
+ * The pool feeds this when db.instrument is on (the default): it wraps the statements it
+ * hands out in an InstrumentedStatement. A query label is the method that ran the
+ * statement plus what it does, e.g. "BloodUnitDAO.getAllBloodUnits: SELECT BloodUnits",
+ * so it stays the same between runs and for every variant of a filtered list query.
+ * A statement's time is its execute call; rows are counted as they are read.
+ *
+ * Everything is published over JMX (jconsole, VisualVM or any JMX agent):
+ *   bloodbank:type=ConnectionPool                pool size, waits, borrow latency
+ *   bloodbank:type=Jdbc                          slow query log and threshold, top queries, reset()
+ *   bloodbank:type=Query,name=<label>            one per query label
+ *   bloodbank:type=ConnectionHold,name=<caller>  how long each caller holds its connection
+ *
+ * The same measurements are emitted as Flight Recorder events (bloodbank.DaoCall per
+ * borrow, bloodbank.JdbcStatement per execute call), so they line up with GC pauses,
+ * thread dumps and the UI events in a recording.
+ *
+ * Settings (see DatabaseConfig): db.slow-query-ms (200; 0 = off) and db.slow-query.explain
+ * (false). Both can also be changed at runtime through the Jdbc MBean. Bind parameters of
+ * statements that touch a password column are not logged, nor are they EXPLAINed.
+ */
+public final class JdbcMetrics implements JdbcMetricsMXBean {
+
+    static final String DOMAIN = "bloodbank";
+    private static final int SLOW_LOG_SIZE = 100;
+    private static final int TOP_QUERIES = 20;
+    private static final int MAX_CACHED_LABELS = 10_000;
+    private static final long EXPLAIN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Pattern TABLE = Pattern.compile("\\b(?:FROM|INTO|UPDATE)\\s+([A-Za-z_][A-Za-z0-9_]*)", Pattern.CASE_INSENSITIVE);
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private static final JdbcMetrics INSTANCE = new JdbcMetrics();
+
+    private final Map<String, TimingStats> queries = new ConcurrentHashMap<>();
+    private final Map<String, TimingStats> holds = new ConcurrentHashMap<>();
+    private final Map<String, Label> labels = new ConcurrentHashMap<>(); // SQL -> label
+    private final Map<String, Long> lastExplain = new ConcurrentHashMap<>();
+    private final Deque<String> slowLog = new ArrayDeque<>(); // guarded by itself
+    private final LongAdder statements = new LongAdder();
+    private volatile long slowQueryMillis = 200;
+    private volatile boolean explain;
+    private boolean registered;
+
+    public static JdbcMetrics getInstance() { return INSTANCE; }
+
+    private JdbcMetrics() {}
+
+    /** Takes over the settings and registers the MBean; called when the pool is created. */
+    synchronized void configure(DatabaseConfig config) {
+        slowQueryMillis = config.getSlowQueryMillis();
+        explain = config.isSlowQueryExplain();
+        if (!registered) registered = register(this, "Jdbc", null);
+    }
+
+    // --- Called by the pool and InstrumentedStatement ---
+
+    /** A query label and the method it was first seen in. */
+    private static final class Label {
+        final String caller;
+        final String text;
+
+        Label(String caller, String text) {
+            this.caller = caller;
+            this.text = text;
+        }
+    }
+
+    /**
+     * The statistics of a statement, keyed by its label. Called when the statement is
+     * prepared, or run for a plain Statement. The stack is only walked for SQL not seen
+     * before; the borrow takes its caller from the label of its first statement.
+     */
+    TimingStats statsFor(String sql, Borrow borrow) {
+        Label label = labels.get(sql);
+        if (label == null) {
+            String caller = caller();
+            label = new Label(caller, caller + ": " + describe(sql));
+            // Statements built with literal values would never repeat; don't keep all of them
+            if (labels.size() < MAX_CACHED_LABELS) labels.put(sql, label);
+        }
+        if (borrow.caller == null) borrow.caller = label.caller;
+        return statsFor(queries, "Query", label.text, sql);
+    }
+
+    /** One borrow of a pooled connection, counted by its statements until it is returned. Used by one thread. */
+    static final class Borrow {
+        final long start = System.nanoTime();
+        final DaoCallEvent event = new DaoCallEvent();
+        String caller; // set by its first statement
+        int statements;
+        long rows;
+
+        Borrow() {
+            event.begin();
+        }
+    }
+
+    Borrow borrowed() {
+        return new Borrow();
+    }
+
+    void returned(Borrow borrow, boolean broken) {
+        // No statement to name it: close() is called from the same method, so look there
+        String caller = borrow.caller != null ? borrow.caller : caller();
+        statsFor(holds, "ConnectionHold", caller, null).record(System.nanoTime() - borrow.start, broken);
+        DaoCallEvent event = borrow.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.caller = caller;
+            event.statements = borrow.statements;
+            event.rows = borrow.rows;
+            event.broken = broken;
+            event.commit();
+        }
+    }
+
+    private TimingStats statsFor(Map<String, TimingStats> map, String type, String label, String sql) {
+        TimingStats stats = map.get(label);
+        if (stats != null) return stats;
+        TimingStats created = new TimingStats(label, sql);
+        stats = map.putIfAbsent(label, created);
+        if (stats != null) return stats;
+        register(created, type, label);
+        return created;
+    }
+
+    /**
+     * Records one execute call. Slow ones go to the slow query log with their parameters,
+     * and, once a minute per label at most, the plan of the query on the same connection.
+     */
+    void executed(TimingStats stats, String sql, long nanos, long rows, boolean failed, List<Object> params, Connection physical) {
+        statements.increment();
+        stats.record(nanos, failed);
+        if (rows > 0) stats.addRows(rows);
+        long threshold = slowQueryMillis;
+        if (threshold <= 0 || nanos < TimeUnit.MILLISECONDS.toNanos(threshold)) return;
+
+        stats.slow();
+        boolean secret = sql.toLowerCase(Locale.ROOT).contains("password");
+        StringBuilder entry = new StringBuilder()
+                .append(LocalTime.now().truncatedTo(ChronoUnit.MILLIS)).append(' ')
+                .append(String.format(Locale.ROOT, "%.1f ms", nanos / 1e6))
+                .append(failed ? " FAILED" : "")
+                .append(" [").append(stats.getLabel()).append("] ")
+                .append(sql.replaceAll("\\s+", " ").trim());
+        if (!params.isEmpty()) entry.append(" params=").append(secret ? "[not logged]" : params.toString());
+        if (explain && physical != null && !failed && !secret && shouldExplain(stats.getLabel(), sql)) {
+            entry.append(" plan=").append(explainPlan(physical, sql, params));
+        }
+        String line = entry.toString();
+        System.err.println("SLOW QUERY " + line);
+        synchronized (slowLog) {
+            slowLog.addFirst(line);
+            if (slowLog.size() > SLOW_LOG_SIZE) slowLog.removeLast();
+        }
+    }
+
+    private boolean shouldExplain(String label, String sql) {
+        if (!sql.trim().regionMatches(true, 0, "SELECT", 0, 6)) return false;
+        long now = System.nanoTime();
+        Long last = lastExplain.get(label);
+        if (last != null && now - last < EXPLAIN_INTERVAL_NANOS) return false;
+        lastExplain.put(label, now);
+        return true;
+    }
+
+    private static String explainPlan(Connection physical, String sql, List<Object> params) {
+        try (PreparedStatement ps = physical.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData md = rs.getMetaData();
+                while (rs.next()) {
+                    if (plan.length() > 0) plan.append(" / ");
+                    for (int c = 1; c <= md.getColumnCount(); c++) {
+                        if (c > 1) plan.append(", ");
+                        plan.append(md.getColumnLabel(c)).append('=').append(rs.getString(c));
+                    }
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            return "(EXPLAIN failed: " + e.getMessage() + ")";
+        }
+    }
+
+    // --- Labels ---
+
+    /** The first method on the stack outside the pool and the JDBC plumbing, e.g. "BloodRequestDAO.tryFulfill". */
+    String caller() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> !isPlumbing(f.getClassName()))
+                .findFirst()
+                .map(f -> simpleName(f.getClassName()) + "." + methodName(f.getMethodName()))
+                .orElse("unknown"));
+    }
+
+    private static boolean isPlumbing(String className) {
+        return className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("jdk.")
+                || className.startsWith("sun.") || className.startsWith("com.sun.")
+                || className.startsWith("dao.ConnectionPool") || className.startsWith("dao.InstrumentedStatement")
+                || className.startsWith("dao.ResultStreams") || className.equals("dao.JdbcMetrics")
+                || className.equals("dao.DatabaseConnection");
+    }
+
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int inner = name.indexOf('$');
+        return inner > 0 ? name.substring(0, inner) : name;
+    }
+
+    // lambda$scan$3 -> scan
+    private static String methodName(String name) {
+        if (!name.startsWith("lambda$")) return name;
+        int end = name.indexOf('$', 7);
+        return end > 7 ? name.substring(7, end) : name;
+    }
+
+    /** "SELECT BloodUnits", "UPDATE StockSummary", ... */
+    static String describe(String sql) {
+        String trimmed = sql.trim();
+        int space = 0;
+        while (space < trimmed.length() && !Character.isWhitespace(trimmed.charAt(space))) space++;
+        String verb = trimmed.substring(0, space).toUpperCase(Locale.ROOT);
+        Matcher m = TABLE.matcher(trimmed);
+        return m.find() ? verb + " " + m.group(1) : verb;
+    }
+
+    // --- JMX ---
+
+    static boolean register(Object mbean, String type, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = objectName(type, name);
+            if (server.isRegistered(on)) server.unregisterMBean(on);
+            server.registerMBean(mbean, on);
+            return true;
+        } catch (JMException | RuntimeException e) {
+            System.err.println("Could not register MBean " + type + " " + name + ": " + e);
+            return false;
+        }
+    }
+
+    static void unregister(String type, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = objectName(type, name);
+            if (server.isRegistered(on)) server.unregisterMBean(on);
+        } catch (JMException | RuntimeException e) {
+            System.err.println("Could not unregister MBean " + type + " " + name + ": " + e);
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type + (name != null ? ",name=" + ObjectName.quote(name) : ""));
+    }
+
+    // --- JdbcMetricsMXBean ---
+
+    @Override public long getStatementCount() { return statements.sum(); }
+    @Override public long getSlowQueryThresholdMillis() { return slowQueryMillis; }
+    @Override public void setSlowQueryThresholdMillis(long millis) { slowQueryMillis = Math.max(0, millis); }
+    @Override public boolean isExplainEnabled() { return explain; }
+    @Override public void setExplainEnabled(boolean enabled) { explain = enabled; }
+
+    @Override
+    public List<String> getSlowQueries() {
+        synchronized (slowLog) {
+            return new ArrayList<>(slowLog);
+        }
+    }
+
+    @Override
+    public List<String> getTopQueries() {
+        List<TimingStats> all = new ArrayList<>(queries.values());
+        all.sort(Comparator.comparingDouble(TimingStats::getTotalMillis).reversed());
+        List<String> top = new ArrayList<>();
+        for (TimingStats s : all.subList(0, Math.min(TOP_QUERIES, all.size()))) top.add(s.toString());
+        return top;
+    }
+
+    /** The statistics of every query label seen so far. */
+    public List<TimingStats> getQueryStats() {
+        return new ArrayList<>(queries.values());
+    }
+
+    /** How long each caller has held its connections. */
+    public List<TimingStats> getConnectionHoldStats() {
+        return new ArrayList<>(holds.values());
+    }
+
+    @Override
+    public void reset() {
+        for (String label : queries.keySet()) unregister("Query", label);
+        for (String caller : holds.keySet()) unregister("ConnectionHold", caller);
+        queries.clear();
+        holds.clear();
+        lastExplain.clear();
+        synchronized (slowLog) {
+            slowLog.clear();
+        }
+    }
+}
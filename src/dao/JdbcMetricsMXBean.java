@@ -0,0 +1,19 @@
+package dao;
+
+import java.util.List;
+
+/** JMX view of the JDBC instrumentation, registered as bloodbank:type=Jdbc. */
+public interface JdbcMetricsMXBean {
+    long getStatementCount();
+    long getSlowQueryThresholdMillis();
+    /** 0 turns the slow query log off. */
+    void setSlowQueryThresholdMillis(long millis);
+    boolean isExplainEnabled();
+    void setExplainEnabled(boolean enabled);
+    /** The most recent slow statements, newest first. */
+    List<String> getSlowQueries();
+    /** The query labels with the most total time, one line each. */
+    List<String> getTopQueries();
+    /** Forgets all statistics and the slow query log. */
+    void reset();
+}
@@ -0,0 +1,94 @@
+package dao;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Filter and sort for the DAO list queries (getBloodUnitsAfter, getDonorsAfter, ...).
+ *
+ * Immutable, so a page can build one on the EDT and hand it to a background query.
+ * A null field means "don't filter on it". What each field filters depends on the table:
+ *
+ *   field      BloodUnits          Donors              BloodRequests        Alerts
+ *   bloodType  blood_type          blood_type          blood_type           unit's blood_type
+ *   status     Usable/Expiring/    -                   Pending/Fulfilled    alert_type
+ *              Expired
+ *   from, to   expiry_date         date_registered     request_date         date_generated
+ *   text       blood or donor id   name/contact prefix request id          alert or unit id
+ *              (digits only)       or donor id
+ *
+ * sortBy is a column name; each DAO only accepts its own list of sortable columns
+ * (all NOT NULL and indexed or small), and falls back to its usual order otherwise.
+ * The row id is always the tie-break, which keeps keyset paging stable.
+ */
+public final class ListQuery {
+
+    /** No filter, each table's usual order. */
+    public static final ListQuery ALL = new ListQuery(null, null, null, null, null, null, false);
+
+    private final String bloodType;
+    private final String status;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String text;
+    private final String sortBy;
+    private final boolean descending;
+
+    private ListQuery(String bloodType, String status, LocalDate from, LocalDate to, String text, String sortBy, boolean descending) {
+        this.bloodType = blankToNull(bloodType);
+        this.status = blankToNull(status);
+        this.from = from;
+        this.to = to;
+        this.text = blankToNull(text);
+        this.sortBy = blankToNull(sortBy);
+        this.descending = descending;
+    }
+
+    public ListQuery withBloodType(String bloodType) { return new ListQuery(bloodType, status, from, to, text, sortBy, descending); }
+    public ListQuery withStatus(String status) { return new ListQuery(bloodType, status, from, to, text, sortBy, descending); }
+    /** Inclusive range; either end may be null. */
+    public ListQuery withDates(LocalDate from, LocalDate to) { return new ListQuery(bloodType, status, from, to, text, sortBy, descending); }
+    public ListQuery withText(String text) { return new ListQuery(bloodType, status, from, to, text, sortBy, descending); }
+    public ListQuery sortedBy(String column, boolean descending) { return new ListQuery(bloodType, status, from, to, text, column, descending); }
+
+    public String getBloodType() { return bloodType; }
+    public String getStatus() { return status; }
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+    public String getText() { return text; }
+    public String getSortBy() { return sortBy; }
+    public boolean isDescending() { return descending; }
+
+    /** The search text as an id, or null if it isn't a plain number. */
+    Integer textAsId() {
+        if (text == null || text.length() > 9) return null;
+        for (int i = 0; i < text.length(); i++) if (!Character.isDigit(text.charAt(i))) return null;
+        return Integer.valueOf(text);
+    }
+
+    /** from/to applied to a row's date the way the DAOs' WHERE does (inclusive). */
+    boolean inDateRange(LocalDate date) {
+        return (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    }
+
+    @Override public boolean equals(Object o) {
+        if (!(o instanceof ListQuery)) return false;
+        ListQuery q = (ListQuery) o;
+        return descending == q.descending && Objects.equals(bloodType, q.bloodType) && Objects.equals(status, q.status)
+                && Objects.equals(from, q.from) && Objects.equals(to, q.to) && Objects.equals(text, q.text)
+                && Objects.equals(sortBy, q.sortBy);
+    }
+
+    @Override public int hashCode() { return Objects.hash(bloodType, status, from, to, text, sortBy, descending); }
+
+    @Override public String toString() {
+        return "ListQuery{type=" + bloodType + ", status=" + status + ", from=" + from + ", to=" + to +
+                ", text=" + text + ", sort=" + sortBy + (descending ? " desc" : "") + "}";
+    }
+
+    private static String blankToNull(String s) {
+        if (s == null) return null;
+        s = s.trim();
+        return s.isEmpty() ? null : s;
+    }
+}
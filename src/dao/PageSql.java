@@ -0,0 +1,110 @@
+package dao;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Builds the WHERE / ORDER BY / LIMIT of a filtered, keyset-paged list query, and binds
+ * its parameters in the same order. Only conditions and column names from the DAOs go
+ * into the SQL text; every user value is a parameter.
+ */
+final class PageSql {
+
+    /** A sortable column: its SQL name and the same value read from a loaded row. */
+    static final class Sort<T> {
+        final String column;
+        final Function<T, ? extends Comparable<?>> value;
+
+        Sort(String column, Function<T, ? extends Comparable<?>> value) {
+            this.column = column;
+            this.value = value;
+        }
+
+        /** The order the query returns rows in, for the table model. */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Comparator<T> comparator(ToIntFunction<T> id, boolean descending) {
+            Comparator<T> c = Comparator.comparing((Function) value);
+            c = c.thenComparingInt(id);
+            return descending ? c.reversed() : c;
+        }
+    }
+
+    private final StringBuilder where = new StringBuilder();
+    private final List<Object> params = new ArrayList<>();
+    private final String column;
+    private final String idColumn;
+    private final boolean descending;
+
+    /** Rows ordered by column, then idColumn (the tie-break), both in the same direction. */
+    PageSql(String column, String idColumn, boolean descending) {
+        this.column = column;
+        this.idColumn = idColumn;
+        this.descending = descending;
+    }
+
+    /** Adds "AND condition"; values fill its ? marks in order. */
+    PageSql where(String condition, Object... values) {
+        where.append(where.length() == 0 ? " WHERE " : " AND ").append(condition);
+        Collections.addAll(params, values);
+        return this;
+    }
+
+    /**
+     * The keyset condition for the rows after (lastValue, lastId) in ORDER BY column, id.
+     * Written as "column >= ? AND (...)" so the column's index can still seek.
+     */
+    PageSql after(Object lastValue, int lastId) {
+        String op = descending ? "<" : ">";
+        if (column.equals(idColumn)) return where(idColumn + " " + op + " ?", lastId);
+        return where(column + " " + op + "= ? AND (" + column + " " + op + " ? OR " + idColumn + " " + op + " ?)",
+                lastValue, lastValue, lastId);
+    }
+
+    /** select + WHERE + ORDER BY column, id [+ LIMIT ?] (limit <= 0 = no limit). */
+    String sql(String select, int limit) {
+        String dir = descending ? " DESC" : " ASC";
+        String order = column.equals(idColumn) ? idColumn + dir : column + dir + ", " + idColumn + dir;
+        return select + where + " ORDER BY " + order + (limit > 0 ? " LIMIT ?" : "");
+    }
+
+    void bind(PreparedStatement ps, int limit) throws SQLException {
+        int i = 1;
+        for (Object p : params) {
+            if (p instanceof LocalDate) ps.setDate(i++, Date.valueOf((LocalDate) p));
+            else if (p instanceof Boolean) ps.setBoolean(i++, (Boolean) p);
+            else if (p instanceof Integer) ps.setInt(i++, (Integer) p);
+            else ps.setString(i++, (String) p);
+        }
+        if (limit > 0) ps.setInt(i, limit);
+    }
+
+    /** The requested sort column if the DAO allows it, else the DAO's default. */
+    static <T> Sort<T> pick(Map<String, Sort<T>> sorts, ListQuery q, String defaultColumn) {
+        Sort<T> s = q.getSortBy() != null ? sorts.get(q.getSortBy()) : null;
+        return s != null ? s : sorts.get(defaultColumn);
+    }
+
+    /** The query's direction if it picked one of the DAO's sorts, else the default sort's direction. */
+    static boolean descending(Map<String, ?> sorts, ListQuery q, boolean defaultDescending) {
+        return q.getSortBy() != null && sorts.containsKey(q.getSortBy()) ? q.isDescending() : defaultDescending;
+    }
+
+    /** The Java side of LIKE prefix(text): case-insensitive, like MySQL's default collation. */
+    static boolean startsWith(String value, String text) {
+        return value != null && value.regionMatches(true, 0, text, 0, text.length());
+    }
+
+    /** Escapes LIKE wildcards, for a "starts with" search. */
+    static String prefix(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,92 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming reads: rows are mapped one at a time as the Stream is consumed, so a
+ * read of any size uses constant memory (no List, and no buffered result set).
+ *
+ * The statement is forward-only / read-only with the configured fetch size
+ * (db.fetch-size; for MySQL that means Connector/J's row-by-row streaming mode).
+ * The Stream holds a pooled connection until it is closed, so always use it in
+ * try-with-resources. While a MySQL stream is open, its connection can't run
+ * other statements; that is fine here, since each stream has its own connection.
+ */
+final class ResultStreams {
+
+    /** Maps the current row. */
+    interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Makes the RowReader for a result set. Column positions are looked up here, once,
+     * instead of by name on every row.
+     */
+    interface ReaderFactory<T> {
+        RowReader<T> bind(ResultSet rs) throws SQLException;
+    }
+
+    private ResultStreams() {
+        // Static helpers only.
+    }
+
+    /** A forward-only, read-only statement with the streaming fetch size. */
+    static PreparedStatement prepareStreaming(Connection conn, String sql) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(DatabaseConnection.getConfig().getStreamFetchSize());
+        return ps;
+    }
+
+    /** Runs the query and streams its rows. The Stream must be closed. */
+    static <T> Stream<T> stream(PageSql query, String select, ReaderFactory<T> readers) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = prepareStreaming(conn, query.sql(select, 0));
+            query.bind(ps, 0);
+            rs = ps.executeQuery();
+            RowReader<T> reader = readers.bind(rs);
+            ResultSet rows = rs;
+            PreparedStatement statement = ps;
+            Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override public boolean tryAdvance(Consumer<? super T> action) {
+                    try {
+                        if (!rows.next()) return false;
+                        action.accept(reader.read(rows));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new DataAccessException(e);
+                    }
+                }
+            };
+            return StreamSupport.stream(spliterator, false).onClose(() -> close(rows, statement, conn));
+        } catch (SQLException | RuntimeException e) {
+            close(rs, ps, conn);
+            throw e;
+        }
+    }
+
+    // Result set, statement, then connection (back to the pool); the first failure is reported
+    private static void close(ResultSet rs, PreparedStatement ps, Connection conn) {
+        SQLException failure = null;
+        for (AutoCloseable c : new AutoCloseable[]{rs, ps, conn}) {
+            if (c == null) continue;
+            try {
+                c.close();
+            } catch (Exception e) {
+                if (failure == null) failure = e instanceof SQLException ? (SQLException) e : new SQLException(e);
+            }
+        }
+        if (failure != null) throw new DataAccessException(failure);
+    }
+}
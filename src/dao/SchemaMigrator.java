@@ -0,0 +1,272 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Brings the database schema up to date when the application starts.
+ *
+ * Each migration has a version number and runs once; applied versions are recorded
+ * in the schema_version table. blood_bank_setup.sql creates a fresh database, and
+ * these migrations upgrade databases created from an older copy of that script.
+ * They check the database metadata before changing anything, so they are also
+ * safe to run on a database that already has the change.
+ *
+ * Terminals starting at the same time take turns: on MySQL the migrations run under the
+ * named lock MIGRATION_LOCK (GET_LOCK, held by the session, so the implicit commit of each
+ * DDL statement doesn't release it); the embedded H2 database only lives in this process,
+ * so a Java lock is enough there. A version is recorded only after its step succeeded, so
+ * a step cut short by a crash runs again on the next start.
+ *
+ * To change the schema: add a new migration at the end of MIGRATIONS with the next
+ * version number. Never edit one that has already shipped.
+ */
+public class SchemaMigrator {
+
+    /** One numbered step. */
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    /** Named lock (GET_LOCK) the MySQL terminals take turns on. */
+    private static final String MIGRATION_LOCK = "bloodbank_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 120;
+
+    static {
+        MIGRATIONS.add(new Migration(1, "Alert dedup key, incremental scan state, stock counters", conn -> {
+            // The old scan could raise the same alert twice; keep the first, or the key can't be built
+            execute(conn, "DELETE FROM Alerts WHERE blood_id IS NOT NULL AND alert_id NOT IN (" +
+                    "SELECT keep FROM (SELECT MIN(alert_id) AS keep FROM Alerts WHERE blood_id IS NOT NULL " +
+                    "GROUP BY blood_id, alert_type) AS first_alerts)");
+            addIndexIfMissing(conn, "Alerts", "uq_alert_unit_type", true, "blood_id", "alert_type");
+            addColumnIfMissing(conn, "BloodUnits", "last_modified",
+                    "TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP");
+            execute(conn, "CREATE TABLE IF NOT EXISTS AlertScanState (scanner VARCHAR(30) PRIMARY KEY, " +
+                    "last_scan_date DATE NOT NULL, unit_watermark TIMESTAMP NOT NULL)");
+            execute(conn, "CREATE TABLE IF NOT EXISTS StockSummary (blood_type VARCHAR(10) PRIMARY KEY, " +
+                    "available INT NOT NULL DEFAULT 0, pending INT NOT NULL DEFAULT 0)");
+            // Filled in by migration 4
+        }));
+
+        MIGRATIONS.add(new Migration(2, "Indexes for the DAO hot queries", conn -> {
+            // FEFO allocation: WHERE blood_type = ? ORDER BY expiry_date, blood_id (PK is implicitly appended)
+            addIndexIfMissing(conn, "BloodUnits", "idx_units_type_expiry", false, "blood_type", "expiry_date");
+            // Alert scan windows and getAllBloodUnits() ORDER BY expiry_date
+            addIndexIfMissing(conn, "BloodUnits", "idx_units_expiry", false, "expiry_date");
+            // Incremental alert scan / expiry index sync: WHERE last_modified >= ?
+            addIndexIfMissing(conn, "BloodUnits", "idx_units_modified", false, "last_modified");
+            // DonorDAO.updateDonor: WHERE donor_id = ? (InnoDB usually already has one from the foreign key)
+            addIndexIfMissing(conn, "BloodUnits", "idx_units_donor", false, "donor_id");
+            // Pending totals (reconciler) and getAllRequests() ORDER BY request_date
+            addIndexIfMissing(conn, "BloodRequests", "idx_requests_type_fulfilled", false, "blood_type", "fulfilled");
+            addIndexIfMissing(conn, "BloodRequests", "idx_requests_date", false, "request_date");
+            // getAllAlerts() ORDER BY date_generated, countPendingAlerts() WHERE status = 'Pending'
+            addIndexIfMissing(conn, "Alerts", "idx_alerts_date", false, "date_generated");
+            addIndexIfMissing(conn, "Alerts", "idx_alerts_status", false, "status");
+        }));
+
+        MIGRATIONS.add(new Migration(3, "Indexes for the table filters", conn -> {
+            // Donor search box: name LIKE 'x%', and the blood type filter
+            addIndexIfMissing(conn, "Donors", "idx_donors_name", false, "name");
+            addIndexIfMissing(conn, "Donors", "idx_donors_type", false, "blood_type");
+            // Pending / Fulfilled filter, newest first
+            addIndexIfMissing(conn, "BloodRequests", "idx_requests_fulfilled_date", false, "fulfilled", "request_date");
+            // Expired / Near Expiry filter, newest first
+            addIndexIfMissing(conn, "Alerts", "idx_alerts_type_date", false, "alert_type", "date_generated");
+        }));
+
+        MIGRATIONS.add(new Migration(4, "Fill the stock counters", conn -> {
+            // Before the first request is checked against them: the periodic reconciler
+            // only starts later, and never in the command line tools
+            StockCounters.reconcile(conn);
+        }));
+    }
+
+    private SchemaMigrator() {
+        // Static helpers only.
+    }
+
+    /**
+     * Applies every migration that is not yet recorded in schema_version.
+     *
+     * @return how many migrations were applied
+     */
+    public static int migrate() throws SQLException {
+        int applied = 0;
+        synchronized (SchemaMigrator.class) {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                execute(conn, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INT PRIMARY KEY, description VARCHAR(200) NOT NULL, " +
+                        "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, execution_ms BIGINT NOT NULL DEFAULT 0)");
+
+                boolean named = lock(conn);
+                try {
+                    // Read under the lock: another terminal may have just finished
+                    Set<Integer> done = appliedVersions(conn);
+                    for (Migration m : MIGRATIONS) {
+                        if (done.contains(m.version)) continue;
+
+                        long start = System.nanoTime();
+                        try {
+                            m.step.apply(conn);
+                        } catch (SQLException e) {
+                            throw new SQLException("Schema migration " + m.version + " (" + m.description + ") failed: " + e.getMessage(), e);
+                        }
+                        long ms = (System.nanoTime() - start) / 1_000_000;
+                        record(conn, m, ms);
+                        System.out.println("Applied schema migration " + m.version + ": " + m.description + " (" + ms + " ms)");
+                        applied++;
+                    }
+                } finally {
+                    if (named) unlock(conn);
+                }
+            }
+        }
+        return applied;
+    }
+
+    /** The highest version recorded in schema_version, or 0 if none. */
+    public static int currentVersion() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int max = 0;
+            for (int v : appliedVersions(conn)) max = Math.max(max, v);
+            return max;
+        }
+    }
+
+    private static Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) versions.add(rs.getInt(1));
+        }
+        return versions;
+    }
+
+    private static void record(Connection conn, Migration m, long ms) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, execution_ms) VALUES (?, ?, ?)")) {
+            ps.setInt(1, m.version);
+            ps.setString(2, m.description);
+            ps.setLong(3, ms);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Waits for MIGRATION_LOCK on MySQL.
+     *
+     * @return false if the database has no named locks (the embedded H2 database)
+     */
+    private static boolean lock(Connection conn) throws SQLException {
+        if (!isMySql(conn)) return false;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, MIGRATION_LOCK);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getInt(1) == 1) return true;
+            }
+        }
+        throw new SQLException("Another terminal has been migrating the schema for over " + LOCK_TIMEOUT_SECONDS + " s; try again later.");
+    }
+
+    private static void unlock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, MIGRATION_LOCK);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            // Released anyway when the session ends
+            System.err.println("Could not release the schema migration lock: " + e.getMessage());
+        }
+    }
+
+    private static boolean isMySql(Connection conn) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName();
+        return product != null && (product.equalsIgnoreCase("MySQL") || product.equalsIgnoreCase("MariaDB"));
+    }
+
+    // --- Helpers used by the migrations ---
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static void addColumnIfMissing(Connection conn, String table, String column, String definition) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        for (String t : tableNameVariants(table)) {
+            try (ResultSet rs = md.getColumns(conn.getCatalog(), null, t, null)) {
+                while (rs.next()) if (rs.getString("COLUMN_NAME").equalsIgnoreCase(column)) return;
+            }
+        }
+        execute(conn, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+    }
+
+    /**
+     * Creates the index unless an index already starts with the same columns
+     * (whatever its name, e.g. the one InnoDB makes for a foreign key). A unique
+     * index is only taken as present if one is unique on exactly those columns.
+     */
+    private static void addIndexIfMissing(Connection conn, String table, String name, boolean unique, String... columns) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        Map<String, TreeMap<Short, String>> existing = new HashMap<>(); // index name -> (position -> column)
+        Set<String> nonUnique = new HashSet<>();
+        for (String t : tableNameVariants(table)) {
+            try (ResultSet rs = md.getIndexInfo(conn.getCatalog(), null, t, false, false)) {
+                while (rs.next()) {
+                    String idx = rs.getString("INDEX_NAME");
+                    String col = rs.getString("COLUMN_NAME");
+                    if (idx == null || col == null) continue;
+                    existing.computeIfAbsent(idx, k -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"), col);
+                    if (rs.getBoolean("NON_UNIQUE")) nonUnique.add(idx);
+                }
+            }
+        }
+        for (Map.Entry<String, TreeMap<Short, String>> e : existing.entrySet()) {
+            List<String> ordered = new ArrayList<>(e.getValue().values());
+            if (ordered.size() < columns.length) continue;
+            if (unique && (nonUnique.contains(e.getKey()) || ordered.size() != columns.length)) continue;
+            boolean prefix = true;
+            for (int i = 0; i < columns.length; i++) {
+                if (!ordered.get(i).equalsIgnoreCase(columns[i])) { prefix = false; break; }
+            }
+            if (prefix) return;
+        }
+        execute(conn, "CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + name + " ON " + table + " (" + String.join(", ", columns) + ")");
+    }
+
+    // MySQL on Linux keeps table names as written, other engines upper-case them
+    private static List<String> tableNameVariants(String table) {
+        List<String> names = new ArrayList<>();
+        names.add(table);
+        if (!table.equals(table.toUpperCase())) names.add(table.toUpperCase());
+        if (!table.equals(table.toLowerCase())) names.add(table.toLowerCase());
+        return names;
+    }
+}
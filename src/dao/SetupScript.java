@@ -0,0 +1,99 @@
+package dao;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs blood_bank_setup.sql against a database that can't run it itself (the embedded profile).
+ *
+ * The script is written for the mysql client, so a few things are dropped on the way:
+ * '--' comments, CREATE DATABASE / USE (the JDBC URL already names the database), and
+ * everything from the first markdown code fence (```) on, since the file has setup notes
+ * pasted after the SQL.
+ */
+public final class SetupScript {
+
+    private SetupScript() {
+        // Static helpers only.
+    }
+
+    /**
+     * Runs the script found at the given file path, or on the classpath under that name.
+     *
+     * @return how many statements were executed
+     */
+    public static int run(Connection conn, String location) throws SQLException {
+        List<String> statements;
+        try (Reader reader = open(location)) {
+            statements = parse(reader);
+        } catch (IOException e) {
+            throw new SQLException("Could not read setup script " + location + ": " + e.getMessage(), e);
+        }
+        try (Statement st = conn.createStatement()) {
+            for (String sql : statements) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Setup script failed at: " + sql + " (" + e.getMessage() + ")", e.getSQLState(), e);
+                }
+            }
+        }
+        return statements.size();
+    }
+
+    private static Reader open(String location) throws IOException {
+        Path path = Paths.get(location);
+        if (Files.isRegularFile(path)) return Files.newBufferedReader(path, StandardCharsets.UTF_8);
+
+        // IntelliJ copies the script next to the classes, so try the classpath too
+        String resource = location.startsWith("src/") ? location.substring(4) : location;
+        InputStream in = SetupScript.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) throw new IOException("not found as a file or on the classpath");
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /** Splits the script into executable statements (see the class comment for what is skipped). */
+    static List<String> parse(Reader reader) throws IOException {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("```")) break; // end of the SQL part
+            int comment = line.indexOf("--");
+            if (comment >= 0) line = line.substring(0, comment);
+            if (line.trim().isEmpty()) continue;
+
+            current.append(line).append('\n');
+            if (line.trim().endsWith(";")) {
+                add(statements, current);
+                current.setLength(0);
+            }
+        }
+        add(statements, current);
+        return statements;
+    }
+
+    private static void add(List<String> statements, StringBuilder buffer) {
+        String sql = buffer.toString().trim();
+        if (sql.endsWith(";")) sql = sql.substring(0, sql.length() - 1).trim();
+        if (sql.isEmpty()) return;
+        String upper = sql.toUpperCase(Locale.ROOT);
+        if (upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ")) return;
+        statements.add(sql);
+    }
+}
@@ -0,0 +1,26 @@
+package dao;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One execute call of an instrumented statement (see InstrumentedStatement). */
+@Name("bloodbank.JdbcStatement")
+@Label("JDBC Statement")
+@Category({"Blood Bank", "Database"})
+@Description("The execute call of one SQL statement, by query label")
+@StackTrace(false)
+final class StatementEvent extends jdk.jfr.Event {
+
+    @Label("Query")
+    String label;
+
+    @Label("Rows Changed")
+    @Description("Update count; rows read by a query are counted in its DAO Call event")
+    long rows;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,123 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintained totals per blood type, stored in the StockSummary table:
+ * 'available' = SUM(BloodUnits.quantity), 'pending' = SUM(quantity) of unfulfilled BloodRequests.
+ *
+ * Every DAO method that changes those tables calls adjust() in the SAME transaction,
+ * so a stock check is a primary-key lookup instead of a SUM() over the whole table.
+ * reconcile() recomputes the real sums and repairs any drift (e.g. rows edited by hand).
+ */
+public class StockCounters {
+
+    private static final String ADJUST_SQL =
+            "INSERT INTO StockSummary (blood_type, available, pending) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE available = available + VALUES(available), pending = pending + VALUES(pending)";
+
+    private StockCounters() {
+        // Static helpers only.
+    }
+
+    /** Adds the deltas to a blood type's counters. Must run inside the caller's transaction. */
+    static void adjust(Connection conn, String bloodType, int availableDelta, int pendingDelta) throws SQLException {
+        if (availableDelta == 0 && pendingDelta == 0) return;
+        try (PreparedStatement ps = conn.prepareStatement(ADJUST_SQL)) {
+            ps.setString(1, bloodType);
+            ps.setInt(2, availableDelta);
+            ps.setInt(3, pendingDelta);
+            ps.executeUpdate();
+        }
+    }
+
+    static int getAvailable(String bloodType) throws SQLException {
+        return read("SELECT available FROM StockSummary WHERE blood_type = ?", bloodType);
+    }
+
+    static int getPending(String bloodType) throws SQLException {
+        return read("SELECT pending FROM StockSummary WHERE blood_type = ?", bloodType);
+    }
+
+    /** Every blood type's counters in one query: type -> {available, pending}. */
+    static Map<String, int[]> getAll() throws SQLException {
+        Map<String, int[]> counters = new TreeMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT blood_type, available, pending FROM StockSummary")) {
+            while (rs.next()) counters.put(rs.getString(1), new int[]{rs.getInt(2), rs.getInt(3)});
+        }
+        return counters;
+    }
+
+    private static int read(String sql, String bloodType) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, bloodType);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Recomputes the totals from BloodUnits and BloodRequests and fixes any counter that drifted.
+     *
+     * The summary rows are locked first, so writers wait until we are done, and the sums are
+     * read after that, so they include everything committed before the lock.
+     *
+     * @return how many blood types had drifted and were repaired
+     */
+    public static int reconcile() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return reconcile(conn);
+        }
+    }
+
+    /** reconcile() on the caller's connection, e.g. the schema migration's; in its own transaction. */
+    static int reconcile(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement()) {
+            Map<String, int[]> counters = new HashMap<>(); // type -> {available, pending}
+            try (ResultSet rs = st.executeQuery("SELECT blood_type, available, pending FROM StockSummary FOR UPDATE")) {
+                while (rs.next()) counters.put(rs.getString(1), new int[]{rs.getInt(2), rs.getInt(3)});
+            }
+
+            Map<String, int[]> actual = new HashMap<>();
+            for (String type : counters.keySet()) actual.put(type, new int[2]);
+            try (ResultSet rs = st.executeQuery("SELECT blood_type, SUM(quantity) FROM BloodUnits GROUP BY blood_type")) {
+                while (rs.next()) actual.computeIfAbsent(rs.getString(1), t -> new int[2])[0] = rs.getInt(2);
+            }
+            try (ResultSet rs = st.executeQuery("SELECT blood_type, SUM(quantity) FROM BloodRequests WHERE fulfilled = 0 GROUP BY blood_type")) {
+                while (rs.next()) actual.computeIfAbsent(rs.getString(1), t -> new int[2])[1] = rs.getInt(2);
+            }
+
+            List<String> repaired = new ArrayList<>();
+            for (Map.Entry<String, int[]> e : actual.entrySet()) {
+                int[] have = counters.getOrDefault(e.getKey(), new int[2]);
+                int[] want = e.getValue();
+                if (have[0] != want[0] || have[1] != want[1]) {
+                    adjust(conn, e.getKey(), want[0] - have[0], want[1] - have[1]);
+                    repaired.add(e.getKey());
+                }
+            }
+            conn.commit();
+            ChangeBus.getInstance().stockChanged(repaired);
+            return repaired.size();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
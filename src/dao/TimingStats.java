@@ -0,0 +1,45 @@
+package dao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Latency, errors and rows of one query label or connection holder. Updated from any thread without locking. */
+public final class TimingStats implements TimingStatsMXBean {
+
+    private final String label;
+    private final String sql;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    TimingStats(String label, String sql) {
+        this.label = label;
+        this.sql = sql;
+    }
+
+    void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) errors.increment();
+    }
+
+    void addRows(long n) { rows.add(n); }
+    void slow() { slow.increment(); }
+
+    @Override public String getLabel() { return label; }
+    @Override public String getSql() { return sql; }
+    @Override public long getCount() { return latency.getCount(); }
+    @Override public long getErrorCount() { return errors.sum(); }
+    @Override public long getRowCount() { return rows.sum(); }
+    @Override public long getSlowCount() { return slow.sum(); }
+    @Override public double getTotalMillis() { return latency.getMeanMillis() * latency.getCount(); }
+    @Override public double getMeanMillis() { return latency.getMeanMillis(); }
+    @Override public double getP50Millis() { return latency.percentileMillis(50); }
+    @Override public double getP99Millis() { return latency.percentileMillis(99); }
+    @Override public double getP999Millis() { return latency.percentileMillis(99.9); }
+    @Override public double getMaxMillis() { return latency.getMaxMillis(); }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s, rows=%d, errors=%d, slow=%d", label, latency, getRowCount(), getErrorCount(), getSlowCount());
+    }
+}
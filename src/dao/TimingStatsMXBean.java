@@ -0,0 +1,19 @@
+package dao;
+
+/** JMX view of one query label or connection holder (see JdbcMetrics). Times are in milliseconds. */
+public interface TimingStatsMXBean {
+    String getLabel();
+    /** The SQL as first seen under this label; null for connection holders. */
+    String getSql();
+    long getCount();
+    long getErrorCount();
+    /** Rows read or changed (statements); 0 for connection holders. */
+    long getRowCount();
+    long getSlowCount();
+    double getTotalMillis();
+    double getMeanMillis();
+    double getP50Millis();
+    double getP99Millis();
+    double getP999Millis();
+    double getMaxMillis();
+}
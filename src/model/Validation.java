@@ -0,0 +1,32 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Input rules for donors and blood units, shared by the entry forms and the CSV import
+ * so both accept exactly the same data. Each check returns the message to show, or
+ * null if the input is fine.
+ */
+public final class Validation {
+
+    public static final List<String> BLOOD_TYPES = List.of("A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-");
+
+    private Validation() {}
+
+    public static boolean isBloodType(String type) {
+        return BLOOD_TYPES.contains(type);
+    }
+
+    public static String donorError(String name, String contact, String bloodType) {
+        if (name.isEmpty() || contact.isEmpty()) return "Fields cannot be empty.";
+        if (!isBloodType(bloodType)) return "Select a Blood Type.";
+        if (!contact.matches("\\d{10}")) return "Contact must be 10 digits.";
+        return null;
+    }
+
+    public static String bloodUnitError(LocalDate donationDate, LocalDate expiryDate) {
+        if (expiryDate.isBefore(donationDate)) return "Expiry cannot be before Donation.";
+        return null;
+    }
+}
@@ -0,0 +1,303 @@
+package perf;
+
+import dao.AlertDAO;
+import dao.BloodRequestDAO;
+import dao.BloodUnitDAO;
+import dao.BulkImporter;
+import dao.DatabaseConfig;
+import dao.DatabaseConnection;
+import dao.DonorDAO;
+import dao.ImportReport;
+import dao.LatencyHistogram;
+import dao.ListQuery;
+import dao.SchemaMigrator;
+import dao.UserDAO;
+import model.Donor;
+import model.User;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Throughput and latency of the DAO hot paths on seeded datasets, written as JSON so
+ * two commits can be compared. Uses the embedded H2 profile unless -Ddb.profile says
+ * otherwise:
+ *
+ *   java -Xmx2g -cp out:lib/h2.jar perf.DaoBenchmark [units,units,...] [--out file.json]
+ *   java -cp out perf.DaoBenchmark --compare before.json after.json
+ *
+ * The datasets (default 10,000, 100,000 and 1,000,000 blood units, plus one donor per
+ * ten units) are built up one after the other in the same database, smallest first.
+ * Each benchmark gets -Dbench.warmup (2) warm-up iterations and -Dbench.iterations (5)
+ * measured ones of -Dbench.iteration-ms (1000) each, calling the method back to back; the score is operations
+ * per second, with a 99.9% confidence interval over the iterations, as JMH reports it.
+ * The result file follows JMH's JSON layout (benchmark, mode, params, primaryMetric).
+ *
+ * --compare exits with 1 if any benchmark's score dropped by more than
+ * -Dbench.threshold percent (default 10) and by more than the two error bars.
+ *
+ * deductStock consumes stock; as many units as it was called times are re-imported
+ * afterwards, so the next dataset doesn't start out smaller than intended.
+ */
+public class DaoBenchmark {
+
+    private static final String[] TYPES = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+    private static final int WARMUP = Integer.getInteger("bench.warmup", 2);
+    private static final int ITERATIONS = Math.max(2, Integer.getInteger("bench.iterations", 5));
+    private static final long ITERATION_MS = Long.getLong("bench.iteration-ms", 1_000);
+    private static final double THRESHOLD_PERCENT = Double.parseDouble(System.getProperty("bench.threshold", "10"));
+
+    // Student's t at 99.9% for 1..10 degrees of freedom; above that the value for 10 is used (errs wide)
+    private static final double[] T_999 = {636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587};
+
+    private static final String USER = "bench_user";
+    private static final String PASSWORD = "bench_pass";
+    private static final String ROLE = "Nurse";
+
+    private interface Operation {
+        Object run() throws Exception;
+    }
+
+    /** Results are folded in here so the JIT can't drop a call whose result is unused. */
+    private static volatile int sink;
+    private static String lastLine = ""; // the last printed result row
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && args[0].equals("--compare")) {
+            System.exit(compare(Paths.get(args[1]), Paths.get(args[2])) ? 0 : 1);
+        }
+        if (System.getProperty("db.profile") == null && System.getenv("BLOODBANK_DB_PROFILE") == null) {
+            System.setProperty("db.profile", DatabaseConfig.PROFILE_H2);
+        }
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        Path out = Paths.get("dao-benchmark.json");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else {
+                String[] parts = args[i].replace("_", "").split(",");
+                sizes = new int[parts.length];
+                for (int p = 0; p < parts.length; p++) sizes[p] = Integer.parseInt(parts[p].trim());
+            }
+        }
+
+        System.out.println("--- DAO benchmark: " + WARMUP + " warm-up + " + ITERATIONS + " x " + ITERATION_MS + " ms per benchmark ---");
+        System.out.println("Database: " + DatabaseConnection.getConfig());
+        SchemaMigrator.migrate();
+        new UserDAO().registerUser(new User(0, USER, PASSWORD, ROLE));
+
+        List<String> results = new ArrayList<>();
+        int seeded = 0;
+        for (int units : sizes) {
+            if (units > seeded) {
+                seed(units - seeded);
+                seeded = units;
+            }
+            System.out.println();
+            System.out.printf("%-24s %8s %14s %10s %10s %10s%n", "units = " + units, "ops", "ops/s", "p50 ms", "p99 ms", "max ms");
+            runAll(units, results);
+        }
+        DatabaseConnection.shutdown();
+
+        writeJson(out, results);
+        System.out.println();
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+
+    private static void runAll(int units, List<String> results) throws Exception {
+        BloodUnitDAO unitDAO = new BloodUnitDAO();
+        BloodRequestDAO reqDAO = new BloodRequestDAO();
+        AlertDAO alertDAO = new AlertDAO();
+        DonorDAO donorDAO = new DonorDAO();
+        UserDAO userDAO = new UserDAO();
+        Random rnd = new Random(42);
+
+        int[] donorIds;
+        try (Stream<Donor> donors = donorDAO.streamDonors(ListQuery.ALL)) {
+            donorIds = donors.mapToInt(Donor::getDonorId).toArray();
+        }
+
+        results.add(run("getAllBloodUnits", units, () -> unitDAO.getAllBloodUnits().size()));
+        results.add(run("getTotalStockForType", units, () -> reqDAO.getTotalStockForType(TYPES[rnd.nextInt(TYPES.length)])));
+        results.add(run("checkForNewAlerts", units, alertDAO::checkForNewAlerts));
+        results.add(run("updateDonor", units, () -> {
+            Donor d = donorDAO.getDonorById(donorIds[rnd.nextInt(donorIds.length)]);
+            d.setName("Donor " + rnd.nextInt(1_000_000));
+            return donorDAO.updateDonor(d);
+        }));
+
+        // login() prints its debug trace on every call; it is measured, but not shown
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        String login;
+        try {
+            login = run("login", units, () -> userDAO.login(USER, PASSWORD, ROLE));
+        } finally {
+            System.setOut(console);
+        }
+        System.out.print(lastLine);
+        results.add(login);
+
+        int[] deducted = new int[1];
+        results.add(run("deductStock", units, () -> {
+            deducted[0]++;
+            return unitDAO.deductStock(TYPES[rnd.nextInt(TYPES.length)], 1, false);
+        }));
+        // Each call uses up one bag at most: put back one per call
+        seedUnits(deducted[0]);
+    }
+
+    /** Warm-up, then the measured iterations; returns the result as one line of JMH-style JSON. */
+    private static String run(String name, int units, Operation op) throws Exception {
+        for (int i = 0; i < WARMUP; i++) iterate(op, null);
+        LatencyHistogram latency = new LatencyHistogram();
+        double[] opsPerSecond = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) opsPerSecond[i] = iterate(op, latency);
+
+        double mean = 0;
+        for (double v : opsPerSecond) mean += v;
+        mean /= ITERATIONS;
+        double variance = 0;
+        for (double v : opsPerSecond) variance += (v - mean) * (v - mean);
+        double stdev = Math.sqrt(variance / (ITERATIONS - 1));
+        double error = T_999[Math.min(ITERATIONS - 1, T_999.length) - 1] * stdev / Math.sqrt(ITERATIONS);
+
+        lastLine = String.format(Locale.ROOT, "%-24s %8d %14.1f %10.3f %10.3f %10.3f%n", name, latency.getCount(), mean,
+                latency.percentileMillis(50), latency.percentileMillis(99), latency.getMaxMillis());
+        System.out.print(lastLine);
+
+        StringBuilder raw = new StringBuilder();
+        for (double v : opsPerSecond) raw.append(raw.length() == 0 ? "" : ",").append(number(v));
+        return "{\"benchmark\":\"perf.DaoBenchmark." + name + "\",\"mode\":\"thrpt\",\"threads\":1"
+                + ",\"warmupIterations\":" + WARMUP + ",\"measurementIterations\":" + ITERATIONS
+                + ",\"measurementTime\":\"" + ITERATION_MS + " ms\",\"params\":{\"units\":\"" + units + "\"}"
+                + ",\"primaryMetric\":{\"score\":" + number(mean) + ",\"scoreError\":" + number(error)
+                + ",\"scoreUnit\":\"ops/s\",\"rawData\":[[" + raw + "]]}"
+                + ",\"secondaryMetrics\":{"
+                + "\"p50\":{\"score\":" + number(latency.percentileMillis(50)) + ",\"scoreUnit\":\"ms/op\"},"
+                + "\"p99\":{\"score\":" + number(latency.percentileMillis(99)) + ",\"scoreUnit\":\"ms/op\"},"
+                + "\"max\":{\"score\":" + number(latency.getMaxMillis()) + ",\"scoreUnit\":\"ms/op\"}}}";
+    }
+
+    /** Calls op back to back for ITERATION_MS (at least once) and returns the operations per second. */
+    private static double iterate(Operation op, LatencyHistogram latency) throws Exception {
+        long start = System.nanoTime();
+        long end = start + ITERATION_MS * 1_000_000;
+        long ops = 0;
+        long now;
+        int folded = 0;
+        do {
+            long t0 = System.nanoTime();
+            Object result = op.run();
+            now = System.nanoTime();
+            if (latency != null) latency.record(now - t0);
+            folded += result == null ? 0 : result.hashCode();
+            ops++;
+        } while (now < end);
+        sink += folded;
+        return ops / ((now - start) / 1e9);
+    }
+
+    private static void seed(int units) throws IOException, SQLException {
+        long start = System.nanoTime();
+        ImportReport donors = new BulkImporter().importDonors(ImportBenchmark.donorCsv(Math.max(1, units / 10)));
+        seedUnits(units);
+        System.out.printf(Locale.ROOT, "%nSeeded %d units and %d donors in %.1f s%n", units, donors.getRowsImported(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void seedUnits(int units) throws IOException, SQLException {
+        if (units <= 0) return;
+        ImportReport report = new BulkImporter().importBloodUnits(ImportBenchmark.unitCsv(units));
+        if (report.getErrorCount() > 0) throw new IllegalStateException("Seeding failed: " + report.summary(3));
+    }
+
+    private static void writeJson(Path out, List<String> results) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("\"commit\":\"").append(escape(commit())).append("\",\n");
+        json.append("\"date\":\"").append(Instant.now()).append("\",\n");
+        json.append("\"jvm\":\"").append(escape(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"))).append("\",\n");
+        json.append("\"database\":\"").append(escape(String.valueOf(DatabaseConnection.getConfig()))).append("\",\n");
+        json.append("\"results\":[\n");
+        // One result per line: --compare reads them back line by line
+        for (int i = 0; i < results.size(); i++) json.append(results.get(i)).append(i + 1 < results.size() ? ",\n" : "\n");
+        json.append("]\n}\n");
+        Files.write(out, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // -Dbench.commit, else what git says, else "unknown"
+    private static String commit() {
+        String commit = System.getProperty("bench.commit");
+        if (commit != null) return commit;
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String head = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return git.waitFor() == 0 && !head.isEmpty() ? head : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    // --- Comparing two result files ---
+
+    private static final Pattern RESULT = Pattern.compile(
+            "\"benchmark\":\"([^\"]+)\".*?\"units\":\"(\\d+)\".*?\"score\":([-0-9.Ee]+),\"scoreError\":([-0-9.Ee]+)");
+
+    private static boolean compare(Path before, Path after) throws IOException {
+        Map<String, double[]> base = readScores(before);
+        Map<String, double[]> next = readScores(after);
+        int regressions = 0;
+        System.out.printf("%-40s %14s %14s %9s%n", "benchmark (units)", "before ops/s", "after ops/s", "change");
+        for (Map.Entry<String, double[]> e : next.entrySet()) {
+            double[] b = base.get(e.getKey());
+            if (b == null) continue;
+            double[] a = e.getValue();
+            double change = (a[0] - b[0]) / b[0] * 100;
+            boolean regressed = change < -THRESHOLD_PERCENT && b[0] - a[0] > a[1] + b[1];
+            if (regressed) regressions++;
+            System.out.printf(Locale.ROOT, "%-40s %14.1f %14.1f %+8.1f%%%s%n", e.getKey(), b[0], a[0], change,
+                    regressed ? "  REGRESSION" : "");
+        }
+        System.out.println(regressions == 0 ? "--- no regressions ---" : "--- " + regressions + " regression(s) ---");
+        return regressions == 0;
+    }
+
+    // "name (units)" -> {score, error}
+    private static Map<String, double[]> readScores(Path file) throws IOException {
+        Map<String, double[]> scores = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Matcher m = RESULT.matcher(line);
+            if (!m.find()) continue;
+            String name = m.group(1).substring(m.group(1).lastIndexOf('.') + 1) + " (" + m.group(2) + ")";
+            scores.put(name, new double[]{Double.parseDouble(m.group(3)), Double.parseDouble(m.group(4))});
+        }
+        return scores;
+    }
+
+    private static String number(double v) {
+        return Double.isFinite(v) ? String.format(Locale.ROOT, "%.3f", v) : "0";
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,379 @@
+package perf;
+
+import dao.AlertDAO;
+import dao.DatabaseConfig;
+import dao.DatabaseConnection;
+import dao.SchemaMigrator;
+import dao.StockCounters;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fills a database with realistic synthetic data at scale, for the other perf tools to run
+ * against: donors, their blood units, hospital requests and the expiry alerts those units
+ * would have raised. Uses the embedded H2 profile unless -Ddb.profile says otherwise:
+ *
+ *   java -cp out:lib/h2.jar perf.DatasetGenerator [--donors 100000] [--units-per-donor 3]
+ *        [--requests 0] [--years 0] [--as-of 2025-01-31] [--seed 42] [--threads 4] [--batch 1000]
+ *
+ * Blood types follow the usual population frequencies (O+ and A+ most common), a unit has
+ * its donor's type, one bag and the 35-day shelf life of a donation recorded on the donor
+ * page. --requests 0 means one request per four units.
+ *
+ * --years 0 builds the current stock: every unit was donated in the last 35 days, so none
+ * has expired yet. --years N spreads donors, donations and requests over N years of
+ * history. Like a working blood bank, it no longer holds most of the units that have
+ * expired: they were issued before their expiry date, or discarded within 30 days of it.
+ * Those units are not written (BloodUnitDAO deletes a bag once it is issued), only the
+ * WASTED_PERCENT of the last 30 days' expired units that still wait to be discarded.
+ * Either way, each unit gets the alerts the expiry scan would have raised by the --as-of
+ * date (Near Expiry, then Expired), and requests older than two days are mostly
+ * fulfilled. Alerts older than 30 days are marked Resolved, so the pending alert count
+ * stays what a working blood bank would see.
+ *
+ * Rows are written as multi-row INSERTs of --batch rows, one transaction per batch, by
+ * --threads writers, each on its own pooled connection. The generator numbers the rows
+ * itself, after the highest id already in each table, instead of leaving it to
+ * AUTO_INCREMENT: H2 in MySQL mode (the h2 profile) gives concurrent INSERTs duplicate
+ * AUTO_INCREMENT ids. The AUTO_INCREMENT counters are moved past the new rows at the end.
+ * Every batch draws from its own random stream derived from --seed, so the same seed and
+ * --as-of give the same rows and ids whatever the thread count. The stock counters are
+ * reconciled at the end.
+ *
+ * !! Against MySQL, use a scratch database that nothing else writes to while it runs: it
+ * only ever adds rows, with ids it picked at the start. !!
+ */
+public class DatasetGenerator {
+
+    // Blood type frequencies, in percent
+    private static final String[] TYPES = {"O+", "A+", "B+", "O-", "A-", "AB+", "B-", "AB-"};
+    private static final int[] TYPE_WEIGHTS = {38, 34, 9, 7, 6, 3, 2, 1};
+
+    // Bags per hospital request
+    private static final int[] REQUEST_QUANTITIES = {1, 2, 3, 4, 6};
+    private static final int[] QUANTITY_WEIGHTS = {40, 30, 15, 10, 5};
+
+    private static final String[] FIRST_NAMES = {
+            "Amara", "Kwame", "Ngozi", "Tendai", "Lerato", "Sipho", "Fatima", "Yusuf", "Zanele", "Kofi",
+            "Achieng", "Baraka", "Chipo", "Dumisani", "Esi", "Farai", "Grace", "Hassan", "Imani", "Jabari",
+            "Kagiso", "Lindiwe", "Musa", "Nia", "Oluwaseun", "Precious", "Rudo", "Sello", "Thandiwe", "Zuri"};
+    private static final String[] LAST_NAMES = {
+            "Mensah", "Okafor", "Moyo", "Dlamini", "Nkosi", "Banda", "Mwangi", "Ochieng", "Adeyemi", "Diallo",
+            "Kamara", "Ndlovu", "Phiri", "Sithole", "Traore", "Boateng", "Chikwanha", "Kariuki", "Mutua", "Zulu"};
+
+    private static final int SHELF_LIFE_DAYS = 35;
+    private static final int RESOLVED_AFTER_DAYS = 30;
+    private static final int FULFILLED_AFTER_DAYS = 2;
+    // Of the units that expired in the last RESOLVED_AFTER_DAYS, the share never issued and not yet discarded
+    private static final int WASTED_PERCENT = 10;
+
+    // Random stream per table, mixed with the batch number
+    private static final int DONORS = 1, UNITS = 2, REQUESTS = 3;
+
+    private static int donorCount = 100_000;
+    private static double unitsPerDonor = 3;
+    private static int requestCount = 0;
+    private static int years = 0;
+    private static LocalDate asOf = LocalDate.now();
+    private static long seed = 42;
+    private static int threads = 4;
+    private static int batchSize = 1_000;
+
+    private static final LongAdder alertsWritten = new LongAdder();
+
+    // The highest id in each table before this run; the rows it writes are numbered from there
+    private static long donorIdBase, unitIdBase, alertIdBase, requestIdBase;
+
+    /** Writes one batch, given its own random stream, and returns how many rows it wrote. */
+    private interface BatchWriter {
+        int write(Connection conn, SplittableRandom rnd, long first, int rows) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("db.profile") == null && System.getenv("BLOODBANK_DB_PROFILE") == null) {
+            System.setProperty("db.profile", DatabaseConfig.PROFILE_H2);
+        }
+        parseArgs(args);
+        long unitCount = Math.round(donorCount * unitsPerDonor);
+        long requests = requestCount > 0 ? requestCount : unitCount / 4;
+        LocalDate from = years > 0 ? asOf.minusYears(years) : asOf.minusDays(SHELF_LIFE_DAYS - 1);
+
+        System.out.println("--- Dataset generator: " + donorCount + " donors, " + unitCount + " units, " + requests
+                + " requests, " + (years > 0 ? years + " years of history" : "current stock") + " up to " + asOf
+                + ", seed " + seed + ", " + threads + " writers x " + batchSize + " rows ---");
+        System.out.println("Database: " + DatabaseConnection.getConfig());
+        SchemaMigrator.migrate();
+
+        long start = System.nanoTime();
+        donorIdBase = maxId("Donors", "donor_id");
+        unitIdBase = maxId("BloodUnits", "blood_id");
+        alertIdBase = maxId("Alerts", "alert_id");
+        requestIdBase = maxId("BloodRequests", "request_id");
+        // Donors register before they give; at least a year back, so current stock has regulars too
+        LocalDate registeredFrom = years > 0 ? from : asOf.minusYears(1);
+        phase("donors", donorCount, DONORS, (conn, rnd, first, rows) -> insertDonors(conn, rnd, first, rows, registeredFrom));
+
+        Donors donors = loadDonors(donorIdBase);
+        if (donors.size() != donorCount) throw new IllegalStateException("Expected " + donorCount + " new donors, found " + donors.size());
+        phase("blood units", unitCount, UNITS, (conn, rnd, first, rows) -> insertUnits(conn, rnd, first, rows, donors, from));
+        System.out.println(String.format("%-12s %10d rows", "alerts", alertsWritten.sum()));
+        phase("requests", requests, REQUESTS, (conn, rnd, first, rows) -> insertRequests(conn, rnd, first, rows, from));
+
+        for (String[] table : new String[][] {{"Donors", "donor_id"}, {"BloodUnits", "blood_id"}, {"Alerts", "alert_id"},
+                {"BloodRequests", "request_id"}}) {
+            moveAutoIncrementPastMax(table[0], table[1]);
+        }
+        int repaired = StockCounters.reconcile();
+        System.out.printf("Done in %.1f s; stock counters reconciled (%d blood types updated)%n",
+                (System.nanoTime() - start) / 1e9, repaired);
+        DatabaseConnection.shutdown();
+    }
+
+    private static void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1].replace("_", "");
+            switch (args[i]) {
+                case "--donors": donorCount = Integer.parseInt(value); break;
+                case "--units-per-donor": unitsPerDonor = Double.parseDouble(value); break;
+                case "--requests": requestCount = Integer.parseInt(value); break;
+                case "--years": years = Integer.parseInt(value); break;
+                case "--as-of": asOf = LocalDate.parse(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--batch": batchSize = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (donorCount < 1 || donorCount > 100_000_000) throw new IllegalArgumentException("--donors must be 1 to 100000000");
+        if (threads < 1 || batchSize < 1 || years < 0 || unitsPerDonor < 0) throw new IllegalArgumentException("Negative or zero option");
+        // Each writer holds a connection for its whole batch
+        threads = Math.min(threads, DatabaseConnection.getConfig().getPoolMaxSize());
+    }
+
+    // --- Writers ---
+
+    // Splits the rows into batches and writes them on the thread pool
+    private static void phase(String name, long rows, int stream, BatchWriter writer) throws Exception {
+        long start = System.nanoTime();
+        long batches = (rows + batchSize - 1) / batchSize;
+        LongAdder written = new LongAdder();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (long b = 0; b < batches; b++) {
+                long batch = b;
+                long first = b * batchSize;
+                int n = (int) Math.min(batchSize, rows - first);
+                results.add(pool.submit(() -> {
+                    try (Connection conn = DatabaseConnection.getConnection()) {
+                        conn.setAutoCommit(false);
+                        try {
+                            written.add(writer.write(conn, random(stream, batch), first, n));
+                            conn.commit();
+                        } catch (SQLException e) {
+                            conn.rollback();
+                            throw e;
+                        } finally {
+                            conn.setAutoCommit(true);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : results) f.get();   // the first failure stops the run
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-12s %10d rows %8.1f s %12.0f rows/s%n", name, written.sum(), seconds, written.sum() / seconds);
+    }
+
+    private static int insertDonors(Connection conn, SplittableRandom rnd, long first, int rows, LocalDate from) throws SQLException {
+        String sql = multiRowInsert("Donors (donor_id, name, contact, blood_type, date_registered)", 5, rows);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int p = 0;
+            for (int i = 0; i < rows; i++) {
+                ps.setLong(++p, donorIdBase + 1 + first + i);
+                ps.setString(++p, FIRST_NAMES[rnd.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[rnd.nextInt(LAST_NAMES.length)]);
+                ps.setString(++p, String.format("07%08d", first + i));
+                ps.setString(++p, pick(rnd, TYPES, TYPE_WEIGHTS));
+                ps.setDate(++p, Date.valueOf(between(rnd, from, asOf)));
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    // The units, then the alerts the expiry scan would have raised for them, in one transaction.
+    // Unit n of the run gets blood_id unitIdBase + 1 + n, and alert ids alertIdBase + 1 + 2n (Near Expiry)
+    // and alertIdBase + 2 + 2n (Expired). Units no longer held leave gaps, as issued and discarded ones do.
+    private static int insertUnits(Connection conn, SplittableRandom rnd, long first, int rows, Donors donors, LocalDate from)
+            throws SQLException {
+        List<Object[]> units = new ArrayList<>(rows);
+        List<Object[]> alerts = new ArrayList<>();
+        LocalDate nearLimit = asOf.plusDays(AlertDAO.NEAR_EXPIRY_DAYS);
+        LocalDate discardedBefore = asOf.minusDays(RESOLVED_AFTER_DAYS);
+        for (int i = 0; i < rows; i++) {
+            int donor = rnd.nextInt(donors.size());
+            LocalDate earliest = donors.registered[donor].isAfter(from) ? donors.registered[donor] : from;
+            LocalDate donated = between(rnd, earliest, asOf);
+            LocalDate expiry = donated.plusDays(SHELF_LIFE_DAYS);
+            // Expired: issued in time, or already discarded, unless it is recent waste
+            if (expiry.isBefore(asOf) && (expiry.isBefore(discardedBefore) || rnd.nextInt(100) >= WASTED_PERCENT)) continue;
+            long n = first + i;
+            long id = unitIdBase + 1 + n;
+            units.add(new Object[]{id, donors.types[donor], 1, Date.valueOf(donated), Date.valueOf(expiry), donors.ids[donor]});
+
+            // Same rules as AlertDAO.checkForNewAlerts(), as if it had run every day: Near Expiry from
+            // the first day with expiry < today + NEAR_EXPIRY_DAYS, Expired the day after expiry
+            if (!expiry.isBefore(nearLimit)) continue;
+            LocalDate warned = expiry.minusDays(AlertDAO.NEAR_EXPIRY_DAYS - 1);
+            alerts.add(alert(alertIdBase + 1 + 2 * n, id, "Near Expiry", warned.isAfter(donated) ? warned : donated));
+            if (expiry.isBefore(asOf)) alerts.add(alert(alertIdBase + 2 + 2 * n, id, "Expired", expiry.plusDays(1)));
+        }
+        insertAll(conn, "BloodUnits (blood_id, blood_type, quantity, donation_date, expiry_date, donor_id)", 6, units);
+        insertAll(conn, "Alerts (alert_id, blood_id, alert_type, date_generated, status)", 5, alerts);
+        alertsWritten.add(alerts.size());
+        return units.size();
+    }
+
+    // Multi-row INSERTs of at most --batch rows
+    private static void insertAll(Connection conn, String tableAndColumns, int columns, List<Object[]> rows) throws SQLException {
+        for (int done = 0; done < rows.size(); done += batchSize) {
+            List<Object[]> chunk = rows.subList(done, Math.min(done + batchSize, rows.size()));
+            try (PreparedStatement ps = conn.prepareStatement(multiRowInsert(tableAndColumns, columns, chunk.size()))) {
+                int p = 0;
+                for (Object[] row : chunk) for (Object value : row) ps.setObject(++p, value);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static Object[] alert(long alertId, long bloodId, String type, LocalDate generated) {
+        String status = generated.isBefore(asOf.minusDays(RESOLVED_AFTER_DAYS)) ? "Resolved" : "Pending";
+        return new Object[]{alertId, bloodId, type, Date.valueOf(generated), status};
+    }
+
+    private static int insertRequests(Connection conn, SplittableRandom rnd, long first, int rows, LocalDate from) throws SQLException {
+        LocalDate settled = asOf.minusDays(FULFILLED_AFTER_DAYS);
+        String sql = multiRowInsert("BloodRequests (request_id, blood_type, quantity, request_date, fulfilled)", 5, rows);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int p = 0;
+            for (int i = 0; i < rows; i++) {
+                ps.setLong(++p, requestIdBase + 1 + first + i);
+                LocalDate requested = between(rnd, from, asOf);
+                ps.setString(++p, pick(rnd, TYPES, TYPE_WEIGHTS));
+                ps.setInt(++p, REQUEST_QUANTITIES[pickIndex(rnd, QUANTITY_WEIGHTS)]);
+                ps.setDate(++p, Date.valueOf(requested));
+                // Old requests were nearly all filled; the last couple of days are still coming in
+                ps.setBoolean(++p, rnd.nextInt(100) < (requested.isBefore(settled) ? 97 : 40));
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    // --- Helpers ---
+
+    /** The donors this run added, in the order they were generated in (donor_id order). */
+    private static final class Donors {
+        final int[] ids;
+        final String[] types;
+        final LocalDate[] registered;
+
+        Donors(int n) {
+            ids = new int[n];
+            types = new String[n];
+            registered = new LocalDate[n];
+        }
+
+        int size() { return ids.length; }
+    }
+
+    private static Donors loadDonors(long afterId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement count = conn.prepareStatement("SELECT COUNT(*) FROM Donors WHERE donor_id > ?");
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT donor_id, blood_type, date_registered FROM Donors WHERE donor_id > ? ORDER BY donor_id")) {
+            int n;
+            count.setLong(1, afterId);
+            try (ResultSet rs = count.executeQuery()) {
+                rs.next();
+                n = rs.getInt(1);
+            }
+            Donors donors = new Donors(n);
+            ps.setLong(1, afterId);
+            try (ResultSet rs = ps.executeQuery()) {
+                for (int i = 0; i < n && rs.next(); i++) {
+                    donors.ids[i] = rs.getInt(1);
+                    donors.types[i] = rs.getString(2).intern();
+                    donors.registered[i] = rs.getDate(3).toLocalDate();
+                }
+            }
+            return donors;
+        }
+    }
+
+    private static long maxId(String table, String idColumn) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(" + idColumn + "), 0) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // So the application's own INSERTs continue after the generated ids (MySQL does this by itself; H2 may not)
+    private static void moveAutoIncrementPastMax(String table, String idColumn) throws SQLException {
+        long next = maxId(table, idColumn) + 1;
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("ALTER TABLE " + table + " AUTO_INCREMENT = " + next);
+        }
+    }
+
+    private static String multiRowInsert(String tableAndColumns, int columns, int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableAndColumns).append(" VALUES ");
+        String tuple = "(" + "?, ".repeat(columns - 1) + "?)";
+        for (int i = 0; i < rows; i++) sql.append(i == 0 ? "" : ", ").append(tuple);
+        return sql.toString();
+    }
+
+    // SplitMix64 of (seed, stream, batch), so every batch has its own reproducible stream
+    private static SplittableRandom random(int stream, long batch) {
+        long z = seed + 0x9E3779B97F4A7C15L * (((long) stream << 40) + batch + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    private static LocalDate between(SplittableRandom rnd, LocalDate from, LocalDate to) {
+        return from.plusDays(rnd.nextLong(to.toEpochDay() - from.toEpochDay() + 1));
+    }
+
+    private static String pick(SplittableRandom rnd, String[] values, int[] weights) {
+        return values[pickIndex(rnd, weights)];
+    }
+
+    private static int pickIndex(SplittableRandom rnd, int[] weights) {
+        int total = 0;
+        for (int w : weights) total += w;
+        int r = rnd.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return weights.length - 1;
+    }
+}
@@ -0,0 +1,110 @@
+package perf;
+
+import dao.AlertDAO;
+import dao.DatabaseConnection;
+import dao.ExpiryIndex;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Compares the in-memory ExpiryIndex with scanning every unit.
+ *
+ * Usage: java perf.ExpiryIndexBenchmark [units] [--sql]
+ *   units  how many synthetic units to put in the index (default 1,000,000)
+ *   --sql  also time the equivalent BloodUnits queries against the configured database
+ *          (run it on a database that already holds a similar number of units)
+ */
+public class ExpiryIndexBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int units = 1_000_000;
+        boolean sql = false;
+        for (String a : args) {
+            if ("--sql".equals(a)) sql = true;
+            else units = Integer.parseInt(a.replace("_", ""));
+        }
+
+        LocalDate today = LocalDate.now();
+        long todayDay = today.toEpochDay();
+        int nearDays = AlertDAO.NEAR_EXPIRY_DAYS;
+
+        // Expiry dates spread over a 35-day shelf life, plus some already expired
+        Random rnd = new Random(42);
+        int[] ids = new int[units];
+        long[] expiryDays = new long[units];
+        int[] quantities = new int[units];
+        for (int i = 0; i < units; i++) {
+            ids[i] = i + 1;
+            expiryDays[i] = todayDay - 10 + rnd.nextInt(46);
+            quantities[i] = 1 + rnd.nextInt(3);
+        }
+
+        System.out.println("--- Expiry Index Benchmark: " + units + " units ---");
+
+        long t0 = System.nanoTime();
+        ExpiryIndex index = ExpiryIndex.standalone();
+        for (int i = 0; i < units; i++) index.put(ids[i], quantities[i], LocalDate.ofEpochDay(expiryDays[i]));
+        System.out.printf("Index build:                      %10.1f ms%n", (System.nanoTime() - t0) / 1e6);
+
+        // --- Index path: only the touched day buckets are read ---
+        report("Index: expiring in next " + nearDays + " days", () -> index.unitsExpiringWithin(nearDays).size());
+        report("Index: crossing Near Expiry today", () -> index.unitsCrossingNearExpiry(today).size());
+        report("Index: crossing Expired today", () -> index.unitsCrossingExpired(today).size());
+
+        // --- Scan path: what any query without the index has to do, in memory (no network, no disk) ---
+        report("Scan:  expiring in next " + nearDays + " days", () -> {
+            int n = 0;
+            for (long d : expiryDays) if (d >= todayDay && d < todayDay + nearDays) n++;
+            return n;
+        });
+        report("Scan:  crossing Near Expiry today", () -> {
+            int n = 0;
+            for (long d : expiryDays) if (d == todayDay + nearDays - 1) n++;
+            return n;
+        });
+
+        // --- SQL path: the same questions asked of MySQL ---
+        if (sql) {
+            String q = "SELECT blood_id FROM BloodUnits WHERE expiry_date >= ? AND expiry_date < ?";
+            report("SQL:   expiring in next " + nearDays + " days", () -> countRows(q, today, today.plusDays(nearDays)));
+            LocalDate crossing = today.plusDays(nearDays - 1);
+            report("SQL:   crossing Near Expiry today", () -> countRows(q, crossing, crossing.plusDays(1)));
+            System.out.println("Pool: " + DatabaseConnection.getPool());
+            DatabaseConnection.shutdown();
+        }
+        System.out.println("--- Benchmark Finished ---");
+    }
+
+    private static int countRows(String sql, LocalDate from, LocalDate to) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, Date.valueOf(from));
+            ps.setDate(2, Date.valueOf(to));
+            int n = 0;
+            try (ResultSet rs = ps.executeQuery()) { while (rs.next()) n++; }
+            return n;
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL benchmark failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void report(String label, IntSupplier task) {
+        int result = 0;
+        for (int i = 0; i < WARMUP; i++) result = task.getAsInt();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) result = task.getAsInt();
+        double avgMillis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+        System.out.printf("%-34s %10.3f ms  (%d units)%n", label + ":", avgMillis, result);
+    }
+}
@@ -0,0 +1,160 @@
+package perf;
+
+import dao.BloodRequestDAO;
+import dao.BloodUnitDAO;
+import dao.DatabaseConnection;
+import dao.FulfillmentResult;
+import model.BloodRequest;
+import model.BloodUnit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fires many concurrent BloodRequestDAO.fulfillRequest() calls at the same blood type,
+ * with more demand than stock, and checks that stock was never oversold. Stock is
+ * counted from the units themselves; the StockSummary counter must agree with it.
+ *
+ * !! Run this against a scratch database: it adds units and requests of the chosen
+ * blood type and consumes that type's stock. !!
+ *
+ * Usage: java perf.FulfillmentStressTest [threads] [requests] [units] [bloodType]
+ * Exit code 0 = no violations, 1 = oversell, inconsistency, or a fulfillment that errored or never finished.
+ */
+public class FulfillmentStressTest {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int requestCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int unitCount = args.length > 2 ? Integer.parseInt(args[2]) : 150;
+        String type = args.length > 3 ? args[3] : "AB-";
+
+        BloodUnitDAO unitDAO = new BloodUnitDAO();
+        BloodRequestDAO reqDAO = new BloodRequestDAO();
+        Random rnd = new Random(7);
+
+        System.out.println("--- Fulfillment Stress Test: " + threads + " threads, " + requestCount
+                + " requests, " + unitCount + " units of " + type + " ---");
+
+        // 1. Seed stock (mixed bag sizes so both the UPDATE and DELETE paths run)
+        int stockBefore = unitStock(type);
+        for (int i = 0; i < unitCount; i++) {
+            LocalDate donated = LocalDate.now().minusDays(rnd.nextInt(20));
+            unitDAO.saveBloodUnit(new BloodUnit(type, 1 + rnd.nextInt(3), donated, donated.plusDays(35), 0));
+        }
+        int stockSeeded = unitStock(type);
+        int counterSeeded = reqDAO.getTotalStockForType(type);
+
+        // 2. Seed more demand than stock
+        List<BloodRequest> requests = new ArrayList<>();
+        int demand = 0;
+        for (int i = 0; i < requestCount; i++) {
+            BloodRequest r = new BloodRequest(type, 1 + rnd.nextInt(3), LocalDate.now(), false);
+            reqDAO.saveRequest(r);
+            requests.add(r);
+            demand += r.getQuantity();
+        }
+        System.out.println("Stock before: " + stockBefore + ", after seeding: " + stockSeeded + ", total demand: " + demand);
+
+        // 3. Fulfill everything at once
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        ConcurrentLinkedQueue<FulfillmentResult> results = new ConcurrentLinkedQueue<>();
+        AtomicInteger errors = new AtomicInteger();
+        for (BloodRequest r : requests) {
+            pool.execute(() -> {
+                try {
+                    go.await();
+                    results.add(reqDAO.fulfillRequest(r.getRequestId()));
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                    System.err.println("Request " + r.getRequestId() + " failed: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        pool.shutdown();
+        boolean finished = pool.awaitTermination(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // 4. Verify
+        int fulfilled = 0, shortOfStock = 0, issued = 0;
+        List<String> violations = new ArrayList<>();
+        for (FulfillmentResult res : results) {
+            if (res.isFulfilled()) {
+                fulfilled++;
+                issued += res.getTotalAllocated();
+                if (res.getTotalAllocated() != res.getRequested())
+                    violations.add("Request " + res.getRequestId() + " got " + res.getTotalAllocated() + " of " + res.getRequested());
+            } else if (res.getStatus() == FulfillmentResult.Status.INSUFFICIENT_STOCK) {
+                shortOfStock++;
+            } else {
+                violations.add("Request " + res.getRequestId() + " unexpectedly " + res.getStatus());
+            }
+        }
+        int stockAfter = unitStock(type);
+        int counterAfter = reqDAO.getTotalStockForType(type);
+        int negativeUnits = countUnits(type, "quantity < 0");
+
+        if (issued > stockSeeded) violations.add("OVERSOLD: issued " + issued + " but only " + stockSeeded + " existed");
+        if (stockSeeded - issued != stockAfter) violations.add("Stock mismatch: expected " + (stockSeeded - issued) + " left, found " + stockAfter);
+        if (negativeUnits > 0) violations.add(negativeUnits + " unit(s) with negative quantity");
+        if (counterSeeded != stockSeeded) violations.add("Stock counter after seeding: " + counterSeeded + ", units hold " + stockSeeded);
+        if (counterAfter != stockAfter) violations.add("Stock counter at the end: " + counterAfter + ", units hold " + stockAfter);
+        // A failed or unfinished fulfillment is not checked above, so it must not pass silently
+        if (errors.get() > 0) violations.add(errors.get() + " fulfillment(s) failed with an error");
+        if (results.size() != requestCount) {
+            violations.add("Only " + results.size() + " of " + requestCount + " fulfillments returned a result"
+                    + (finished ? "" : " (timed out)"));
+        }
+
+        System.out.printf("Finished in %.2f s (%.0f fulfillments/s)%n", seconds, results.size() / seconds);
+        System.out.println("Fulfilled: " + fulfilled + ", insufficient stock: " + shortOfStock + ", errors: " + errors.get());
+        System.out.println("Issued: " + issued + ", stock left: " + stockAfter + " (counter: " + counterAfter + ")");
+        System.out.println("Pool: " + DatabaseConnection.getPool());
+
+        // 5. Clean up the requests we created (remaining units are left as ordinary stock)
+        for (BloodRequest r : requests) reqDAO.deleteRequest(r.getRequestId());
+        DatabaseConnection.shutdown();
+
+        if (violations.isEmpty()) {
+            System.out.println("--- PASSED: no oversell ---");
+        } else {
+            violations.forEach(v -> System.out.println("VIOLATION: " + v));
+            System.out.println("--- FAILED ---");
+            System.exit(1);
+        }
+    }
+
+    // The stock the units really hold, not the StockSummary counter getTotalStockForType() reads
+    private static int unitStock(String type) throws SQLException {
+        return queryInt("SELECT COALESCE(SUM(quantity), 0) FROM BloodUnits WHERE blood_type = ?", type);
+    }
+
+    private static int countUnits(String type, String condition) throws SQLException {
+        return queryInt("SELECT COUNT(*) FROM BloodUnits WHERE blood_type = ? AND " + condition, type);
+    }
+
+    private static int queryInt(String sql, String type) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, type);
+            try (ResultSet rs = ps.executeQuery()) { return rs.next() ? rs.getInt(1) : 0; }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package perf;
+
+import dao.BulkImporter;
+import dao.CsvReader;
+import dao.DatabaseConfig;
+import dao.DatabaseConnection;
+import dao.ImportReport;
+import dao.SchemaMigrator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the bulk CSV import: first the parser alone, then the full import of blood
+ * units and donors into the database. The CSV is generated on the fly, so no file is
+ * needed and memory use stays flat whatever the row count. Uses the embedded H2
+ * profile unless -Ddb.profile says otherwise:
+ *
+ *   java -cp out:lib/h2.jar perf.ImportBenchmark [rows]
+ *   java -cp out perf.ImportBenchmark 100000 parse   (parser only, no database)
+ *
+ * -Dimport.batch.size changes the rows per INSERT / transaction (default 500).
+ */
+public class ImportBenchmark {
+
+    private static final String[] TYPES = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("db.profile") == null && System.getenv("BLOODBANK_DB_PROFILE") == null) {
+            System.setProperty("db.profile", DatabaseConfig.PROFILE_H2);
+        }
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        boolean parseOnly = args.length > 1 && args[1].equals("parse");
+
+        System.out.println("--- Import benchmark: " + rows + " rows, batch size " + BulkImporter.BATCH_SIZE + " ---");
+
+        long start = System.nanoTime();
+        long fields = 0;
+        try (CsvReader csv = new CsvReader(unitCsv(rows))) {
+            List<String> record;
+            while ((record = csv.next()) != null) fields += record.size();
+        }
+        report("parse only", rows, start);
+        if (fields == 0) throw new IllegalStateException("nothing parsed");
+        if (parseOnly) return;
+
+        System.out.println("Database: " + DatabaseConnection.getConfig());
+        SchemaMigrator.migrate();
+        BulkImporter importer = new BulkImporter();
+        ImportReport donors = importer.importDonors(donorCsv(rows));
+        System.out.println("donors:      " + donors);
+        ImportReport units = importer.importBloodUnits(unitCsv(rows));
+        System.out.println("blood units: " + units);
+        DatabaseConnection.shutdown();
+        if (donors.getErrorCount() > 0 || units.getErrorCount() > 0) {
+            System.out.println("First errors: " + donors.summary(3) + " / " + units.summary(3));
+            System.exit(1);
+        }
+    }
+
+    private static void report(String name, int rows, long startNanos) {
+        double ms = (System.nanoTime() - startNanos) / 1e6;
+        System.out.printf("%-12s %10.1f ms  %12.0f rows/s%n", name, ms, rows / (ms / 1000));
+    }
+
+    static Reader unitCsv(int rows) {
+        Random rnd = new Random(7);
+        LocalDate today = LocalDate.now();
+        return new GeneratedCsv("blood_type,quantity,donation_date,expiry_date,donor_id\n", rows, i -> {
+            LocalDate donated = today.minusDays(rnd.nextInt(30));
+            // no donor_id: the generated donors' ids aren't known here
+            return TYPES[rnd.nextInt(TYPES.length)] + "," + (1 + rnd.nextInt(3)) + "," + donated + "," + donated.plusDays(42) + ",\n";
+        });
+    }
+
+    static Reader donorCsv(int rows) {
+        Random rnd = new Random(11);
+        return new GeneratedCsv("name,contact,blood_type,date_registered\n", rows, i ->
+                "\"Donor " + i + ", Drive\"," + (7_000_000_000L + i) + "," + TYPES[rnd.nextInt(TYPES.length)] + ",\n");
+    }
+
+    /** A Reader that produces the CSV line by line instead of holding it in memory. */
+    private static final class GeneratedCsv extends Reader {
+        interface Line { String make(int i); }
+
+        private final int rows;
+        private final Line line;
+        private String current;
+        private int offset;
+        private int next;
+
+        GeneratedCsv(String header, int rows, Line line) {
+            this.rows = rows;
+            this.line = line;
+            this.current = header;
+        }
+
+        @Override public int read(char[] cbuf, int off, int len) throws IOException {
+            if (current == null) return -1;
+            int n = 0;
+            while (n < len && current != null) {
+                int take = Math.min(len - n, current.length() - offset);
+                current.getChars(offset, offset + take, cbuf, off + n);
+                n += take;
+                offset += take;
+                if (offset == current.length()) {
+                    current = next < rows ? line.make(next++) : null;
+                    offset = 0;
+                }
+            }
+            return n;
+        }
+
+        @Override public void close() {}
+    }
+}
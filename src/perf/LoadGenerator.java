@@ -0,0 +1,385 @@
+package perf;
+
+import dao.AlertDAO;
+import dao.BloodRequestDAO;
+import dao.BloodUnitDAO;
+import dao.BulkImporter;
+import dao.DatabaseConfig;
+import dao.DatabaseConnection;
+import dao.DonorDAO;
+import dao.FulfillmentResult;
+import dao.ImportReport;
+import dao.LatencyHistogram;
+import dao.SchemaMigrator;
+import model.BloodRequest;
+import model.BloodUnit;
+import model.Donor;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulates intake desks and hospitals working against one database at the same time,
+ * to find how many of them it can serve before fulfillment latency degrades. Uses the
+ * embedded H2 profile unless -Ddb.profile says otherwise:
+ *
+ *   java -cp out:lib/h2.jar perf.LoadGenerator [--desks 8] [--hospitals 32] [--rate 0]
+ *        [--duration 30] [--warmup 5] [--seed-units 5000]
+ *        [--mix register=5,donate=45,request=25,fulfill=20,scan=5]
+ *
+ * Every client is a virtual thread. Desks register donors and record donations;
+ * hospitals submit requests, fulfill their own earlier requests and run alert scans.
+ * Each client picks its next operation by the --mix weights of its kind. Blood types
+ * follow the usual population frequencies (O+ and A+ most common), so the busy types
+ * see real lock contention.
+ *
+ * --rate is per client, in operations per second; 0 = closed loop (the next call as
+ * soon as the last one returns). With a rate, latency is measured from when the call
+ * was due rather than when it started, so a stalled database shows up as latency
+ * instead of as fewer calls.
+ *
+ * Afterwards the stock is checked: counters against SUM(BloodUnits), no negative bags,
+ * every fulfilled request got exactly its quantity, and the stock at the end equals the
+ * stock at the start + donated - issued. Exit code 1 on any violation.
+ *
+ * !! Against MySQL, use a scratch database: it adds donors, units and requests. !!
+ */
+public class LoadGenerator {
+
+    private enum Op {
+        REGISTER(true), DONATE(true), REQUEST(false), FULFILL(false), SCAN(false);
+
+        final boolean desk;
+
+        Op(boolean desk) { this.desk = desk; }
+    }
+
+    // Blood type frequencies, in percent
+    private static final String[] TYPES = {"O+", "A+", "B+", "O-", "A-", "AB+", "B-", "AB-"};
+    private static final int[] TYPE_WEIGHTS = {38, 34, 9, 7, 6, 3, 2, 1};
+
+    private static final long PROGRESS_SECONDS = 5;
+    private static final int MAX_DONORS_KEPT = 1_000;
+
+    private static int desks = 8;
+    private static int hospitals = 32;
+    private static double rate = 0;
+    private static int durationSeconds = 30;
+    private static int warmupSeconds = 5;
+    private static int seedUnits = 5_000;
+    private static final Map<Op, Integer> mix = new EnumMap<>(Op.class);
+
+    private static final BloodUnitDAO unitDAO = new BloodUnitDAO();
+    private static final BloodRequestDAO reqDAO = new BloodRequestDAO();
+    private static final DonorDAO donorDAO = new DonorDAO();
+    private static final AlertDAO alertDAO = new AlertDAO();
+
+    // Measured (after the warm-up) per operation
+    private static final Map<Op, LatencyHistogram> latency = new EnumMap<>(Op.class);
+    private static final Map<Op, LongAdder> errors = new EnumMap<>(Op.class);
+    private static final AtomicReference<LatencyHistogram> fulfillInterval = new AtomicReference<>(new LatencyHistogram());
+    private static final LongAdder intervalOps = new LongAdder();
+    private static volatile boolean measuring;
+
+    // Counted over the whole run, warm-up included: the stock check needs every change
+    private static final LongAdder donated = new LongAdder();
+    private static final LongAdder issued = new LongAdder();
+    private static final LongAdder fulfilled = new LongAdder();
+    private static final LongAdder shortOfStock = new LongAdder();
+    private static final LongAdder deadlockFailures = new LongAdder();
+    private static final List<String> violations = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("db.profile") == null && System.getenv("BLOODBANK_DB_PROFILE") == null) {
+            System.setProperty("db.profile", DatabaseConfig.PROFILE_H2);
+        }
+        mix.put(Op.REGISTER, 5);
+        mix.put(Op.DONATE, 45);
+        mix.put(Op.REQUEST, 25);
+        mix.put(Op.FULFILL, 20);
+        mix.put(Op.SCAN, 5);
+        parseArgs(args);
+        for (Op op : Op.values()) {
+            latency.put(op, new LatencyHistogram());
+            errors.put(op, new LongAdder());
+        }
+
+        System.out.println("--- Load generator: " + desks + " desks, " + hospitals + " hospitals, "
+                + (rate > 0 ? rate + " ops/s per client" : "closed loop") + ", " + warmupSeconds + " s warm-up + "
+                + durationSeconds + " s, mix " + mix + " ---");
+        System.out.println("Database: " + DatabaseConnection.getConfig());
+        SchemaMigrator.migrate();
+        if (seedUnits > 0) {
+            ImportReport seeded = new BulkImporter().importBloodUnits(ImportBenchmark.unitCsv(seedUnits));
+            System.out.println("Seeded " + seeded.getRowsImported() + " units");
+        }
+        Map<String, int[]> before = stockByType();
+        long deadlocksBefore = BloodRequestDAO.getDeadlockRetryCount();
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < desks + hospitals; i++) {
+                boolean desk = i < desks;
+                long seed = 1_000 + i;
+                clients.execute(() -> runClient(desk, end, new Random(seed)));
+            }
+            progress(measureFrom, end);
+        }
+
+        printReport(BloodRequestDAO.getDeadlockRetryCount() - deadlocksBefore);
+        checkStock(before);
+        System.out.println("Pool: " + DatabaseConnection.getPool());
+        DatabaseConnection.shutdown();
+
+        if (violations.isEmpty()) {
+            System.out.println("--- PASSED: no oversell, counters consistent ---");
+        } else {
+            violations.forEach(v -> System.out.println("VIOLATION: " + v));
+            System.out.println("--- FAILED ---");
+            System.exit(1);
+        }
+    }
+
+    private static void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--desks": desks = Integer.parseInt(value); break;
+                case "--hospitals": hospitals = Integer.parseInt(value); break;
+                case "--rate": rate = Double.parseDouble(value); break;
+                case "--duration": durationSeconds = Integer.parseInt(value); break;
+                case "--warmup": warmupSeconds = Integer.parseInt(value); break;
+                case "--seed-units": seedUnits = Integer.parseInt(value.replace("_", "")); break;
+                case "--mix":
+                    for (String part : value.split(",")) {
+                        String[] kv = part.split("=");
+                        mix.put(Op.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+                    }
+                    break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (desks > 0 && weightOf(true) == 0) throw new IllegalArgumentException("--mix gives desks nothing to do");
+        if (hospitals > 0 && weightOf(false) == 0) throw new IllegalArgumentException("--mix gives hospitals nothing to do");
+    }
+
+    private static int weightOf(boolean desk) {
+        int total = 0;
+        for (Map.Entry<Op, Integer> e : mix.entrySet()) if (e.getKey().desk == desk) total += e.getValue();
+        return total;
+    }
+
+    // --- One desk or hospital ---
+
+    private static void runClient(boolean desk, long end, Random rnd) {
+        Deque<BloodRequest> myRequests = new ArrayDeque<>();
+        List<Donor> myDonors = new ArrayList<>();
+        long interval = rate > 0 ? (long) (1e9 / rate) : 0;
+        // Spread the clients' first calls over one interval, so they don't all fire at once
+        long due = System.nanoTime() + (interval > 0 ? (long) (rnd.nextDouble() * interval) : 0);
+        int totalWeight = weightOf(desk);
+
+        while (true) {
+            if (interval > 0) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            } else {
+                due = System.nanoTime();
+            }
+            if (due >= end) return;
+
+            Op op = pick(desk, totalWeight, rnd);
+            if (op == Op.FULFILL && myRequests.isEmpty()) op = Op.REQUEST;
+            try {
+                execute(op, rnd, myRequests, myDonors);
+            } catch (SQLException e) {
+                if ("40001".equals(e.getSQLState())) deadlockFailures.increment();
+                if (measuring) errors.get(op).increment();
+            } catch (RuntimeException e) {
+                // e.g. a DataAccessException; the client carries on, like a clerk retrying later
+                if (measuring) errors.get(op).increment();
+            }
+            long done = System.nanoTime();
+            if (measuring) {
+                latency.get(op).record(done - due);
+                if (op == Op.FULFILL) fulfillInterval.get().record(done - due);
+                intervalOps.increment();
+            }
+            due += interval;
+        }
+    }
+
+    private static Op pick(boolean desk, int totalWeight, Random rnd) {
+        int r = rnd.nextInt(totalWeight);
+        for (Op op : Op.values()) {
+            if (op.desk != desk) continue;
+            r -= mix.getOrDefault(op, 0);
+            if (r < 0) return op;
+        }
+        throw new IllegalStateException("no operation picked");
+    }
+
+    private static void execute(Op op, Random rnd, Deque<BloodRequest> myRequests, List<Donor> myDonors) throws SQLException {
+        LocalDate today = LocalDate.now();
+        switch (op) {
+            case REGISTER: {
+                Donor d = new Donor("Load donor " + rnd.nextInt(1_000_000), String.valueOf(7_000_000_000L + rnd.nextInt(1_000_000_000)),
+                        randomType(rnd), today);
+                donorDAO.saveDonor(d);
+                if (myDonors.size() < MAX_DONORS_KEPT) myDonors.add(d);
+                break;
+            }
+            case DONATE: {
+                Donor d = myDonors.isEmpty() ? null : myDonors.get(rnd.nextInt(myDonors.size()));
+                BloodUnit unit = new BloodUnit(d != null ? d.getBloodType() : randomType(rnd), 1, today, today.plusDays(35),
+                        d != null ? d.getDonorId() : 0);
+                if (unitDAO.saveBloodUnit(unit)) donated.increment();
+                break;
+            }
+            case REQUEST: {
+                BloodRequest r = new BloodRequest(randomType(rnd), 1 + rnd.nextInt(3), today, false);
+                reqDAO.saveRequest(r);
+                myRequests.addLast(r);
+                break;
+            }
+            case FULFILL: {
+                BloodRequest r = myRequests.pollFirst();
+                FulfillmentResult result = reqDAO.fulfillRequest(r.getRequestId());
+                switch (result.getStatus()) {
+                    case FULFILLED:
+                        fulfilled.increment();
+                        issued.add(result.getTotalAllocated());
+                        if (result.getTotalAllocated() != r.getQuantity()) {
+                            violation("Request " + r.getRequestId() + " got " + result.getTotalAllocated() + " of " + r.getQuantity());
+                        }
+                        break;
+                    case INSUFFICIENT_STOCK:
+                        shortOfStock.increment(); // left pending, like a clerk would
+                        break;
+                    default:
+                        // Only this client touches its own requests
+                        violation("Request " + r.getRequestId() + " unexpectedly " + result.getStatus());
+                }
+                break;
+            }
+            case SCAN:
+                alertDAO.checkForNewAlerts();
+                break;
+        }
+    }
+
+    private static String randomType(Random rnd) {
+        int r = rnd.nextInt(100);
+        for (int i = 0; i < TYPES.length; i++) {
+            r -= TYPE_WEIGHTS[i];
+            if (r < 0) return TYPES[i];
+        }
+        return TYPES[0];
+    }
+
+    private static void violation(String message) {
+        synchronized (violations) {
+            violations.add(message);
+        }
+    }
+
+    // --- Reporting ---
+
+    // One line every PROGRESS_SECONDS of the measured part, so degradation shows as it happens
+    private static void progress(long measureFrom, long end) throws InterruptedException, SQLException {
+        sleepUntil(measureFrom);
+        measuring = true;
+        long next = measureFrom;
+        while ((next += TimeUnit.SECONDS.toNanos(PROGRESS_SECONDS)) <= end) {
+            sleepUntil(next);
+            LatencyHistogram fulfill = fulfillInterval.getAndSet(new LatencyHistogram());
+            System.out.printf("t=%3d s  %8.0f ops/s  fulfill p50 %7.2f ms  p99 %7.2f ms  pool waits %d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(next - measureFrom), intervalOps.sumThenReset() / (double) PROGRESS_SECONDS,
+                    fulfill.percentileMillis(50), fulfill.percentileMillis(99), DatabaseConnection.getPool().getWaitCount());
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long wait = nanoTime - System.nanoTime();
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    private static void printReport(long deadlockRetries) {
+        System.out.println();
+        System.out.printf("%-9s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "op", "calls", "errors", "ops/s", "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        LatencyHistogram all = new LatencyHistogram();
+        long allErrors = 0;
+        for (Op op : Op.values()) {
+            LatencyHistogram h = latency.get(op);
+            all.add(h);
+            allErrors += errors.get(op).sum();
+            if (h.getCount() > 0) printRow(op.name().toLowerCase(), h, errors.get(op).sum());
+        }
+        printRow("total", all, allErrors);
+        System.out.println();
+        System.out.println("Fulfilled: " + fulfilled.sum() + ", insufficient stock: " + shortOfStock.sum()
+                + ", donated: " + donated.sum() + " bags, issued: " + issued.sum() + " bags");
+        System.out.println("Deadlocks retried: " + deadlockRetries + ", failed after retries: " + deadlockFailures.sum());
+    }
+
+    private static void printRow(String name, LatencyHistogram h, long errorCount) {
+        System.out.printf("%-9s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, h.getCount(), errorCount,
+                h.getCount() / (double) durationSeconds, h.getMeanMillis(), h.percentileMillis(50),
+                h.percentileMillis(99), h.percentileMillis(99.9), h.getMaxMillis());
+    }
+
+    // --- Stock checks ---
+
+    private static void checkStock(Map<String, int[]> before) throws SQLException {
+        Map<String, int[]> after = stockByType();
+        Map<String, int[]> counters = reqDAO.getStockSummary();
+        long totalBefore = 0, totalAfter = 0;
+        for (int[] v : before.values()) totalBefore += v[0];
+        for (Map.Entry<String, int[]> e : after.entrySet()) {
+            totalAfter += e.getValue()[0];
+            int[] counter = counters.get(e.getKey());
+            int available = counter == null ? 0 : counter[0];
+            if (available != e.getValue()[0]) {
+                violation("Counter for " + e.getKey() + " says " + available + ", units add up to " + e.getValue()[0]);
+            }
+            if (e.getValue()[1] > 0) violation(e.getValue()[1] + " " + e.getKey() + " unit(s) with negative quantity");
+        }
+        long expected = totalBefore + donated.sum() - issued.sum();
+        if (totalAfter != expected) {
+            violation("Stock is " + totalAfter + ", expected " + totalBefore + " + " + donated.sum() + " - " + issued.sum() + " = " + expected);
+        }
+        System.out.println("Stock: " + totalBefore + " bags before, " + totalAfter + " after");
+    }
+
+    // type -> {SUM(quantity), bags with a negative quantity}
+    private static Map<String, int[]> stockByType() throws SQLException {
+        Map<String, int[]> stock = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT blood_type, SUM(quantity), SUM(CASE WHEN quantity < 0 THEN 1 ELSE 0 END) "
+                     + "FROM BloodUnits GROUP BY blood_type")) {
+            while (rs.next()) stock.put(rs.getString(1), new int[]{rs.getInt(2), rs.getInt(3)});
+        }
+        return stock;
+    }
+}
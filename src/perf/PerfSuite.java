@@ -0,0 +1,113 @@
+package perf;
+
+import dao.AlertDAO;
+import dao.BloodRequestDAO;
+import dao.BloodUnitDAO;
+import dao.DatabaseConfig;
+import dao.DatabaseConnection;
+import dao.ListQuery;
+import dao.SchemaMigrator;
+import dao.StockCounters;
+import model.BloodRequest;
+import model.BloodUnit;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Times the main DAO workloads end to end. Uses the embedded H2 profile unless
+ * -Ddb.profile (or BLOODBANK_DB_PROFILE) says otherwise, so it runs fully in-process:
+ *
+ *   java -cp out:lib/h2.jar perf.PerfSuite [units] [requests]
+ *
+ * Exit code 1 if any workload fails, or the stock counters don't add up afterwards.
+ */
+public class PerfSuite {
+
+    private static final String[] TYPES = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+
+    private interface Workload {
+        void run() throws Exception;
+    }
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("db.profile") == null && System.getenv("BLOODBANK_DB_PROFILE") == null) {
+            System.setProperty("db.profile", DatabaseConfig.PROFILE_H2);
+        }
+        int unitCount = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int requestCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+        System.out.println("--- Perf Suite: " + unitCount + " units, " + requestCount + " requests ---");
+        System.out.println("Database: " + DatabaseConnection.getConfig());
+
+        BloodUnitDAO unitDAO = new BloodUnitDAO();
+        BloodRequestDAO reqDAO = new BloodRequestDAO();
+        AlertDAO alertDAO = new AlertDAO();
+        Random rnd = new Random(42);
+        List<BloodRequest> requests = new ArrayList<>();
+
+        time("migrate schema", 1, SchemaMigrator::migrate);
+        time("save units", unitCount, () -> {
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i < unitCount; i++) {
+                LocalDate donated = today.minusDays(rnd.nextInt(45));
+                unitDAO.saveBloodUnit(new BloodUnit(TYPES[rnd.nextInt(TYPES.length)], 1 + rnd.nextInt(3),
+                        donated, donated.plusDays(42), 0));
+            }
+        });
+        time("save requests", requestCount, () -> {
+            for (int i = 0; i < requestCount; i++) {
+                BloodRequest r = new BloodRequest(TYPES[rnd.nextInt(TYPES.length)], 1 + rnd.nextInt(4), LocalDate.now(), false);
+                reqDAO.saveRequest(r);
+                requests.add(r);
+            }
+        });
+        time("list units", 1, unitDAO::getAllBloodUnits);
+        time("stream units", 1, () -> {
+            // Same rows as "list units", but never more than one in memory
+            long rows;
+            try (Stream<BloodUnit> units = unitDAO.streamBloodUnits(ListQuery.ALL)) {
+                rows = units.mapToLong(BloodUnit::getQuantity).filter(q -> q > 0).count();
+            }
+            if (rows < unitCount) throw new IllegalStateException("streamed " + rows + " of " + unitCount + " units");
+        });
+        time("list requests", 1, reqDAO::getAllRequests);
+        time("stock check", TYPES.length, () -> {
+            for (String t : TYPES) reqDAO.getTotalStockForType(t);
+        });
+        time("fulfill requests", requestCount, () -> {
+            for (BloodRequest r : requests) reqDAO.fulfillRequest(r.getRequestId());
+        });
+        time("full alert scan", 1, alertDAO::rescanAllUnits);
+        time("incremental alert scan", 1, alertDAO::checkForNewAlerts);
+        time("list alerts", 1, alertDAO::getAllAlerts);
+        time("reconcile counters", 1, () -> {
+            int repaired = StockCounters.reconcile();
+            if (repaired > 0) throw new IllegalStateException(repaired + " blood type counter(s) had drifted");
+        });
+
+        System.out.println("Pool: " + DatabaseConnection.getPool());
+        DatabaseConnection.shutdown();
+
+        System.out.println(failures == 0 ? "--- PASSED ---" : "--- FAILED: " + failures + " workload(s) ---");
+        if (failures > 0) System.exit(1);
+    }
+
+    private static void time(String name, int operations, Workload workload) {
+        long start = System.nanoTime();
+        try {
+            workload.run();
+        } catch (Exception e) {
+            failures++;
+            System.out.printf("%-24s FAILED: %s%n", name, e.getMessage());
+            return;
+        }
+        double ms = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-24s %10.1f ms  %10.3f ms/op%n", name, ms, ms / Math.max(1, operations));
+    }
+}
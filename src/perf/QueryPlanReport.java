@@ -0,0 +1,208 @@
+package perf;
+
+import dao.DatabaseConnection;
+import dao.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Before/after report for the schema migrations: prints EXPLAIN and the median run
+ * time of each hot DAO query, applies the pending migrations, then prints both again.
+ *
+ * Run it against a copy of a database that has NOT been migrated yet, otherwise "before"
+ * already has the indexes. --unmigrate takes an already migrated copy back first: it drops
+ * the idx_* indexes and forgets the index migrations, so they are applied again. Never use
+ * it on a live database. For meaningful timings, fill the database first (several thousand
+ * units at least, e.g. with DatasetGenerator).
+ *
+ * Usage: java perf.QueryPlanReport [--unmigrate] [runs per query]
+ */
+public class QueryPlanReport {
+
+    /** A DAO query with representative parameters. */
+    private static final class HotQuery {
+        final String name;
+        final String sql;
+        final Object[] params;
+
+        HotQuery(String name, String sql, Object... params) {
+            this.name = name;
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    /** The first migration that adds idx_* indexes; --unmigrate forgets it and every later one. */
+    private static final int FIRST_INDEX_MIGRATION = 2;
+
+    public static void main(String[] args) throws Exception {
+        boolean unmigrate = args.length > 0 && args[0].equals("--unmigrate");
+        int runs = args.length > (unmigrate ? 1 : 0) ? Integer.parseInt(args[unmigrate ? 1 : 0]) : 25;
+        List<HotQuery> queries = hotQueries();
+
+        if (unmigrate) unmigrate();
+
+        System.out.println("=== BEFORE (schema version " + versionOrNone() + ") ===");
+        report(queries, runs);
+
+        int applied = SchemaMigrator.migrate();
+        System.out.println();
+        System.out.println("Applied " + applied + " migration(s).");
+        if (applied == 0) System.out.println("(Nothing to apply: BEFORE and AFTER use the same schema.)");
+
+        System.out.println();
+        System.out.println("=== AFTER (schema version " + SchemaMigrator.currentVersion() + ") ===");
+        report(queries, runs);
+
+        DatabaseConnection.shutdown();
+    }
+
+    private static List<HotQuery> hotQueries() {
+        LocalDate today = LocalDate.now();
+        List<HotQuery> q = new ArrayList<>();
+        q.add(new HotQuery("FEFO allocation (BloodUnitDAO.planFefo)",
+                "SELECT blood_id, quantity FROM BloodUnits WHERE blood_type = ? AND quantity > 0 ORDER BY expiry_date ASC, blood_id ASC",
+                "O+"));
+        q.add(new HotQuery("Near-expiry window (AlertDAO scan)",
+                "SELECT b.blood_id FROM BloodUnits b WHERE b.expiry_date >= ? AND b.expiry_date < ? " +
+                "AND NOT EXISTS (SELECT 1 FROM Alerts a WHERE a.blood_id = b.blood_id AND a.alert_type = 'Near Expiry')",
+                Date.valueOf(today), Date.valueOf(today.plusDays(8))));
+        q.add(new HotQuery("Changed units (AlertDAO / ExpiryIndex sync)",
+                "SELECT blood_id, quantity, expiry_date FROM BloodUnits WHERE last_modified >= ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(5))));
+        q.add(new HotQuery("Units of a donor (DonorDAO.updateDonor)",
+                "SELECT blood_type, quantity FROM BloodUnits WHERE donor_id = ?",
+                1));
+        q.add(new HotQuery("Unit list (BloodUnitDAO.getAllBloodUnits)",
+                "SELECT * FROM BloodUnits ORDER BY expiry_date ASC"));
+        q.add(new HotQuery("Pending per type (StockCounters.reconcile)",
+                "SELECT blood_type, SUM(quantity) FROM BloodRequests WHERE fulfilled = 0 GROUP BY blood_type"));
+        q.add(new HotQuery("Request list (BloodRequestDAO.getAllRequests)",
+                "SELECT * FROM BloodRequests ORDER BY request_date DESC"));
+        q.add(new HotQuery("Alert list (AlertDAO.getAllAlerts)",
+                "SELECT a.alert_id, a.blood_id, b.blood_type, a.alert_type, a.date_generated, a.status " +
+                "FROM Alerts a JOIN BloodUnits b ON a.blood_id = b.blood_id ORDER BY a.date_generated DESC"));
+        q.add(new HotQuery("Alert badge (AlertDAO.countPendingAlerts)",
+                "SELECT COUNT(*) FROM Alerts WHERE status = 'Pending'"));
+        q.add(new HotQuery("Stock page filtered by type (BloodUnitDAO.getBloodUnitsAfter)",
+                "SELECT * FROM BloodUnits WHERE blood_type = ? AND expiry_date >= ? ORDER BY expiry_date ASC, blood_id ASC LIMIT 200",
+                "O+", Date.valueOf(today)));
+        q.add(new HotQuery("Donor search box (DonorDAO.getDonorsAfter)",
+                "SELECT * FROM Donors WHERE (name LIKE ? OR contact LIKE ?) ORDER BY donor_id ASC LIMIT 200",
+                "Jo%", "Jo%"));
+        q.add(new HotQuery("Pending requests page (BloodRequestDAO.getRequestsAfter)",
+                "SELECT * FROM BloodRequests WHERE fulfilled = ? ORDER BY request_date DESC, request_id DESC LIMIT 200",
+                false));
+        return q;
+    }
+
+    private static void report(List<HotQuery> queries, int runs) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (HotQuery q : queries) {
+                System.out.println();
+                try {
+                    System.out.printf("-- %s: median %.3f ms over %d runs%n", q.name, medianMillis(conn, q, runs), runs);
+                    explain(conn, q);
+                } catch (SQLException e) {
+                    // e.g. last_modified doesn't exist before migration 1
+                    System.out.println("-- " + q.name + ": skipped (" + e.getMessage() + ")");
+                }
+            }
+        }
+    }
+
+    private static void explain(Connection conn, HotQuery q) throws SQLException {
+        try (PreparedStatement ps = prepare(conn, "EXPLAIN " + q.sql, q.params);
+             ResultSet rs = ps.executeQuery()) {
+            ResultSetMetaData md = rs.getMetaData();
+            StringBuilder header = new StringBuilder("   ");
+            for (int c = 1; c <= md.getColumnCount(); c++) header.append(md.getColumnLabel(c)).append(" | ");
+            System.out.println(header);
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder("   ");
+                // H2 returns the whole plan as one multi-line cell
+                for (int c = 1; c <= md.getColumnCount(); c++) {
+                    row.append(String.valueOf(rs.getString(c)).replace("\n", "\n   ")).append(" | ");
+                }
+                System.out.println(row);
+            }
+        }
+    }
+
+    private static double medianMillis(Connection conn, HotQuery q, int runs) throws SQLException {
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            try (PreparedStatement ps = prepare(conn, q.sql, q.params);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // Read every row, like the DAO does
+                }
+            }
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[runs / 2] / 1e6;
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql, Object[] params) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql);
+        for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+        return ps;
+    }
+
+    // Drops the idx_* indexes and the schema_version rows of the migrations that add them
+    private static void unmigrate() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            DatabaseMetaData md = conn.getMetaData();
+            List<String[]> indexes = new ArrayList<>();
+            for (String table : new String[]{"BloodUnits", "BloodRequests", "Alerts", "Donors"}) {
+                for (String name : new String[]{table, table.toLowerCase(Locale.ROOT), table.toUpperCase(Locale.ROOT)}) {
+                    try (ResultSet rs = md.getIndexInfo(conn.getCatalog(), null, name, false, false)) {
+                        while (rs.next()) {
+                            String index = rs.getString("INDEX_NAME");
+                            if (index == null || !index.toLowerCase(Locale.ROOT).startsWith("idx_")) continue;
+                            String[] entry = {rs.getString("TABLE_NAME"), index};
+                            if (indexes.stream().noneMatch(e -> e[1].equals(index))) indexes.add(entry);
+                        }
+                    }
+                }
+            }
+            try (Statement st = conn.createStatement()) {
+                for (String[] index : indexes) {
+                    try {
+                        st.execute("ALTER TABLE " + index[0] + " DROP INDEX " + index[1]);
+                        System.out.println("Dropped index " + index[1] + " on " + index[0]);
+                    } catch (SQLException e) {
+                        // e.g. MySQL keeps idx_units_donor for the foreign key
+                        System.out.println("Kept index " + index[1] + " on " + index[0] + " (" + e.getMessage() + ")");
+                    }
+                }
+                st.executeUpdate("DELETE FROM schema_version WHERE version >= " + FIRST_INDEX_MIGRATION);
+            }
+        }
+        System.out.println();
+    }
+
+    private static String versionOrNone() {
+        try {
+            return String.valueOf(SchemaMigrator.currentVersion());
+        } catch (SQLException e) {
+            return "none"; // schema_version doesn't exist yet
+        }
+    }
+}
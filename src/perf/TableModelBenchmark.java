@@ -0,0 +1,71 @@
+package perf;
+
+import model.BloodUnit;
+import view.ListTableModel;
+
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares refreshing the stock table the old way (DefaultTableModel: setRowCount(0) +
+ * addRow per unit) with ListTableModel.setRows(), both attached to a JTable so the
+ * table's own event handling is included. Reports time and bytes allocated per refresh.
+ * Runs headless, no database needed.
+ *
+ * Usage: java perf.TableModelBenchmark [rows] [rounds]
+ */
+public class TableModelBenchmark {
+
+    private static final String[] COLUMNS = {"Blood ID", "Blood Type", "Quantity", "Donation Date", "Expiry Date", "Donor ID"};
+    private static final String[] TYPES = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        Random rnd = new Random(1);
+        LocalDate today = LocalDate.now();
+        List<BloodUnit> units = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            LocalDate donated = today.minusDays(rnd.nextInt(42));
+            units.add(new BloodUnit(i + 1, TYPES[rnd.nextInt(TYPES.length)], 1 + rnd.nextInt(3), donated, donated.plusDays(42), rnd.nextInt(5000)));
+        }
+
+        System.out.println("--- Table refresh: " + rows + " rows, " + rounds + " rounds ---");
+
+        DefaultTableModel oldModel = new DefaultTableModel(COLUMNS, 0);
+        JTable oldTable = new JTable(oldModel);
+        measure("DefaultTableModel addRow", rounds, () -> {
+            oldModel.setRowCount(0);
+            for (BloodUnit u : units) oldModel.addRow(new Object[]{u.getBloodId(), u.getBloodType(), u.getQuantity(), u.getDonationDate(), u.getExpiryDate(), u.getDonorId()});
+        });
+
+        ListTableModel<BloodUnit> newModel = new ListTableModel<>(COLUMNS, BloodUnit::getBloodId,
+                List.of(BloodUnit::getBloodId, BloodUnit::getBloodType, BloodUnit::getQuantity, BloodUnit::getDonationDate,
+                        BloodUnit::getExpiryDate, BloodUnit::getDonorId));
+        JTable newTable = new JTable(newModel);
+        measure("ListTableModel setRows", rounds, () -> newModel.setRows(new ArrayList<>(units)));
+
+        // Keep the tables reachable until the end
+        System.out.println("(rows shown: " + oldTable.getRowCount() + " / " + newTable.getRowCount() + ")");
+    }
+
+    private static void measure(String name, int rounds, Runnable refresh) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        for (int i = 0; i < 3; i++) refresh.run(); // warm-up
+
+        long bytes = threads.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) refresh.run();
+        double ms = (System.nanoTime() - start) / 1e6 / rounds;
+        double mb = (threads.getThreadAllocatedBytes(tid) - bytes) / 1e6 / rounds;
+        System.out.printf("%-26s %9.3f ms  %9.2f MB allocated per refresh%n", name, ms, mb);
+    }
+}
@@ -3,21 +3,22 @@ package view;
 import model.Alert;
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
 import java.io.File;
-import java.util.List;
 import javax.imageio.ImageIO;
+import java.util.List;
 
 public class AlertsPage extends JFrame {
 
     private final Color PRIMARY_RED = new Color(190, 20, 20);
     private final Color DARK_GREY = new Color(50, 50, 50);
     private final Color LIGHT_BG = new Color(245, 248, 250);
-    private JButton refreshButton, deleteButton, backButton;
+    private JButton refreshButton, deleteButton, exportButton, backButton;
     private JTable alertsTable;
-    private DefaultTableModel tableModel;
+    private BusyIndicator busyIndicator;
+    private FilterBar filterBar;
+    private ListTableModel<Alert> tableModel;
 
     public AlertsPage() {
         setTitle("System Alerts");
@@ -51,7 +52,8 @@ public class AlertsPage extends JFrame {
         title.setForeground(Color.WHITE);
         header.add(title, BorderLayout.CENTER);
 
-        JPanel spacer = new JPanel(); spacer.setOpaque(false); spacer.setPreferredSize(new Dimension(135,10));
+        JPanel spacer = new JPanel(new GridBagLayout()); spacer.setOpaque(false); spacer.setPreferredSize(new Dimension(135, 10));
+        busyIndicator = new BusyIndicator(); spacer.add(busyIndicator); // visible while data loads in the background
         header.add(spacer, BorderLayout.EAST);
 
         add(header, BorderLayout.NORTH);
@@ -67,6 +69,10 @@ public class AlertsPage extends JFrame {
         sidebar.add(Box.createRigidArea(new Dimension(0, 15)));
         deleteButton = createBigButton("DISMISS ALERT", DARK_GREY);
         sidebar.add(deleteButton);
+        sidebar.add(Box.createRigidArea(new Dimension(0, 15)));
+        exportButton = createBigButton("EXPORT", new Color(90, 90, 120));
+        exportButton.setToolTipText("Exports the alerts the filter shows (.csv, .json, optionally .gz)");
+        sidebar.add(exportButton);
         add(sidebar, BorderLayout.WEST);
 
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -76,9 +82,9 @@ public class AlertsPage extends JFrame {
         heroImagePanel.setPreferredSize(new Dimension(100, 200));
         mainPanel.add(heroImagePanel, BorderLayout.NORTH);
 
-        tableModel = new DefaultTableModel(new String[]{"ID", "Blood Unit", "Blood Type", "Alert Type", "Date", "Status"}, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
+        tableModel = new ListTableModel<>(new String[]{"ID", "Blood Unit", "Blood Type", "Alert Type", "Date", "Status"}, Alert::getAlertId,
+                List.of(Alert::getAlertId, Alert::getBloodId, Alert::getBloodTypeDetails, Alert::getAlertType, Alert::getDateGenerated,
+                        Alert::getStatus));
         alertsTable = new JTable(tableModel);
         alertsTable.setRowHeight(30);
         alertsTable.getTableHeader().setBackground(DARK_GREY);
@@ -87,7 +93,7 @@ public class AlertsPage extends JFrame {
         alertsTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
             @Override public Component getTableCellRendererComponent(JTable t, Object v, boolean isSel, boolean hasFoc, int r, int c) {
                 Component comp = super.getTableCellRendererComponent(t, v, isSel, hasFoc, r, c);
-                String type = (String) t.getModel().getValueAt(r, 3);
+                String type = tableModel.getRow(r).getAlertType();
                 if (!isSel) {
                     if ("Expired".equals(type)) comp.setBackground(new Color(255, 200, 200));
                     else if ("Near Expiry".equals(type)) comp.setBackground(new Color(255, 255, 200));
@@ -97,16 +103,32 @@ public class AlertsPage extends JFrame {
             }
         });
 
-        mainPanel.add(new JScrollPane(alertsTable), BorderLayout.CENTER);
+        // Filtered and sorted by the database (AlertDAO.getAlertsAfter)
+        filterBar = new FilterBar(new String[]{"Expired", "Near Expiry"}, "Date", "Alert ID or blood unit ID")
+                .addSort("Newest first", "date_generated", true)
+                .addSort("Oldest first", "date_generated", false)
+                .addSort("Alert type", "alert_type", false)
+                .addSort("Blood unit", "blood_id", false);
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.add(filterBar, BorderLayout.NORTH);
+        tablePanel.add(new JScrollPane(alertsTable), BorderLayout.CENTER);
+        tableModel.prefetchOnScroll(alertsTable);
+        mainPanel.add(tablePanel, BorderLayout.CENTER);
         add(mainPanel, BorderLayout.CENTER);
     }
 
     public JButton getRefreshButton() { return refreshButton; }
     public JButton getDeleteButton() { return deleteButton; }
     public JButton getBackButton() { return backButton; }
+    public JButton getExportButton() { return exportButton; }
+    /** Asks where to export the rows the filter shows; null if the user cancels. */
+    public java.io.File chooseExportFile() { return ExportChooser.choose(this, "alerts"); }
     public JTable getAlertsTable() { return alertsTable; }
     public void showMessage(String m) { JOptionPane.showMessageDialog(this, m); }
-    public void refreshTable(List<Alert> list) { tableModel.setRowCount(0); for(Alert a:list) tableModel.addRow(new Object[]{a.getAlertId(), a.getBloodId(), a.getBloodTypeDetails(), a.getAlertType(), a.getDateGenerated(), a.getStatus()}); }
+    public BusyIndicator getBusyIndicator() { return busyIndicator; }
+    public FilterBar getFilterBar() { return filterBar; }
+    public ListTableModel<Alert> getTableModel() { return tableModel; }
+    public void removeRow(int alertId) { tableModel.removeRow(alertId); }
 
     private JButton createBigButton(String t, Color bg) { JButton b=new JButton(t); b.setFont(new Font("SansSerif",Font.BOLD,12)); b.setBackground(bg); b.setForeground(Color.WHITE); b.setMaximumSize(new Dimension(Integer.MAX_VALUE,45)); b.setAlignmentX(Component.CENTER_ALIGNMENT); return b; }
 
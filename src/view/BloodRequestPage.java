@@ -3,12 +3,11 @@ package view;
 import model.BloodRequest;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.File;
-import java.util.List;
 import javax.imageio.ImageIO;
 import java.util.Date;
+import java.util.List;
 
 public class BloodRequestPage extends JFrame {
 
@@ -21,9 +20,11 @@ public class BloodRequestPage extends JFrame {
     private JComboBox<String> bloodTypeComboBox;
     private JTextField quantityField;
     private JSpinner requestDateSpinner;
-    private JButton submitButton, fulfillButton, deleteButton, backButton;
+    private JButton submitButton, fulfillButton, deleteButton, exportButton, backButton;
     private JTable requestTable;
-    private DefaultTableModel tableModel;
+    private BusyIndicator busyIndicator;
+    private FilterBar filterBar;
+    private ListTableModel<BloodRequest> tableModel;
 
     public BloodRequestPage() {
         setTitle("Hospital Blood Requests");
@@ -57,7 +58,8 @@ public class BloodRequestPage extends JFrame {
         titleLabel.setForeground(Color.WHITE);
         headerPanel.add(titleLabel, BorderLayout.CENTER);
 
-        JPanel spacer = new JPanel(); spacer.setOpaque(false); spacer.setPreferredSize(new Dimension(135,10));
+        JPanel spacer = new JPanel(new GridBagLayout()); spacer.setOpaque(false); spacer.setPreferredSize(new Dimension(135, 10));
+        busyIndicator = new BusyIndicator(); spacer.add(busyIndicator); // visible while data loads in the background
         headerPanel.add(spacer, BorderLayout.EAST);
         add(headerPanel, BorderLayout.NORTH);
 
@@ -94,6 +96,10 @@ public class BloodRequestPage extends JFrame {
         sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
         deleteButton = createBigButton("DELETE REQUEST", DARK_GREY);
         sidebarPanel.add(deleteButton);
+        sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        exportButton = createBigButton("EXPORT", new Color(90, 90, 120));
+        exportButton.setToolTipText("Exports the requests the filter shows (.csv, .json, optionally .gz)");
+        sidebarPanel.add(exportButton);
         add(sidebarPanel, BorderLayout.WEST);
 
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -103,14 +109,24 @@ public class BloodRequestPage extends JFrame {
         heroImagePanel.setPreferredSize(new Dimension(100, 250));
         mainPanel.add(heroImagePanel, BorderLayout.NORTH);
 
-        tableModel = new DefaultTableModel(new String[]{"Req ID", "Blood Type", "Quantity", "Date Needed", "Status"}, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
+        tableModel = new ListTableModel<>(new String[]{"Req ID", "Blood Type", "Quantity", "Date Needed", "Status"}, BloodRequest::getRequestId,
+                List.of(BloodRequest::getRequestId, BloodRequest::getBloodType, BloodRequest::getQuantity, BloodRequest::getRequestDate,
+                        r -> r.isFulfilled() ? "Fulfilled" : "Pending"));
         requestTable = new JTable(tableModel);
         requestTable.setRowHeight(30);
         requestTable.getTableHeader().setBackground(DARK_GREY);
         requestTable.getTableHeader().setForeground(Color.WHITE);
-        mainPanel.add(new JScrollPane(requestTable), BorderLayout.CENTER);
+        // Filtered and sorted by the database (BloodRequestDAO.getRequestsAfter)
+        filterBar = new FilterBar(new String[]{"Pending", "Fulfilled"}, "Date", "Request ID")
+                .addSort("Newest first", "request_date", true)
+                .addSort("Oldest first", "request_date", false)
+                .addSort("Blood type", "blood_type", false)
+                .addSort("Largest quantity", "quantity", true);
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.add(filterBar, BorderLayout.NORTH);
+        tablePanel.add(new JScrollPane(requestTable), BorderLayout.CENTER);
+        tableModel.prefetchOnScroll(requestTable);
+        mainPanel.add(tablePanel, BorderLayout.CENTER);
         add(mainPanel, BorderLayout.CENTER);
     }
 
@@ -123,11 +139,18 @@ public class BloodRequestPage extends JFrame {
     public JButton getFulfillButton() { return fulfillButton; }
     public JButton getDeleteButton() { return deleteButton; }
     public JButton getBackButton() { return backButton; }
+    public JButton getExportButton() { return exportButton; }
+    /** Asks where to export the rows the filter shows; null if the user cancels. */
+    public java.io.File chooseExportFile() { return ExportChooser.choose(this, "blood_requests"); }
     public JTable getRequestTable() { return requestTable; }
 
     public void showMessage(String m) { JOptionPane.showMessageDialog(this, m); }
+    public BusyIndicator getBusyIndicator() { return busyIndicator; }
+    public FilterBar getFilterBar() { return filterBar; }
     public void clearForm() { quantityField.setText(""); requestDateSpinner.setValue(new Date()); }
-    public void refreshTable(List<BloodRequest> list) { tableModel.setRowCount(0); for(BloodRequest r:list) tableModel.addRow(new Object[]{r.getRequestId(), r.getBloodType(), r.getQuantity(), r.getRequestDate(), r.isFulfilled()?"Fulfilled":"Pending"}); }
+    public ListTableModel<BloodRequest> getTableModel() { return tableModel; }
+    public void upsertRow(BloodRequest r) { tableModel.upsertRow(r); }
+    public void removeRow(int requestId) { tableModel.removeRow(requestId); }
 
     private JLabel createLabel(String t) { JLabel l=new JLabel(t); l.setFont(new Font("SansSerif",Font.BOLD,12)); l.setForeground(Color.GRAY); l.setAlignmentX(Component.LEFT_ALIGNMENT); return l; }
     private JTextField createTextField() { JTextField t=new JTextField(); t.setFont(INPUT_FONT); t.setBorder(BorderFactory.createEmptyBorder(5,5,5,5)); return t; }
@@ -3,12 +3,15 @@ package view;
 import model.BloodUnit;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import javax.imageio.ImageIO;
 
 public class BloodStockPage extends JFrame {
@@ -23,9 +26,13 @@ public class BloodStockPage extends JFrame {
     private JTextField quantityField;
     private JSpinner donationDateSpinner, expiryDateSpinner;
     private JTextField donorIdField;
-    private JButton saveButton, updateButton, deleteButton, backButton;
+    private JButton saveButton, updateButton, deleteButton, importButton, exportButton, backButton;
     private JTable stockTable;
-    private DefaultTableModel tableModel;
+    private BusyIndicator busyIndicator;
+    private FilterBar filterBar;
+    private ListTableModel<BloodUnit> tableModel;
+    private JLabel expirySummaryLabel;
+    private Set<Integer> expiringIds = Collections.emptySet();
 
     public BloodStockPage() {
         setTitle("Blood Stock Inventory");
@@ -61,7 +68,8 @@ public class BloodStockPage extends JFrame {
         titleLabel.setForeground(Color.WHITE);
         headerPanel.add(titleLabel, BorderLayout.CENTER);
 
-        JPanel spacer = new JPanel(); spacer.setOpaque(false); spacer.setPreferredSize(new Dimension(135,10));
+        JPanel spacer = new JPanel(new GridBagLayout()); spacer.setOpaque(false); spacer.setPreferredSize(new Dimension(135, 10));
+        busyIndicator = new BusyIndicator(); spacer.add(busyIndicator); // visible while data loads in the background
         headerPanel.add(spacer, BorderLayout.EAST);
         add(headerPanel, BorderLayout.NORTH);
 
@@ -112,6 +120,14 @@ public class BloodStockPage extends JFrame {
         sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
         deleteButton = createBigButton("DELETE", DARK_GREY);
         sidebarPanel.add(deleteButton);
+        sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        importButton = createBigButton("IMPORT CSV", new Color(70, 110, 160));
+        importButton.setToolTipText("Columns: blood_type, quantity, donation_date, expiry_date, donor_id");
+        sidebarPanel.add(importButton);
+        sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        exportButton = createBigButton("EXPORT", new Color(90, 90, 120));
+        exportButton.setToolTipText("Exports the units the filter shows (.csv, .json, optionally .gz)");
+        sidebarPanel.add(exportButton);
         add(sidebarPanel, BorderLayout.WEST);
 
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -122,14 +138,46 @@ public class BloodStockPage extends JFrame {
         mainPanel.add(heroImagePanel, BorderLayout.NORTH);
 
         String[] columnNames = {"Blood ID", "Blood Type", "Quantity", "Donation Date", "Expiry Date", "Donor ID"};
-        tableModel = new DefaultTableModel(columnNames, 0) { @Override public boolean isCellEditable(int r, int c) { return false; } };
+        tableModel = new ListTableModel<>(columnNames, BloodUnit::getBloodId, List.of(BloodUnit::getBloodId, BloodUnit::getBloodType,
+                BloodUnit::getQuantity, BloodUnit::getDonationDate, BloodUnit::getExpiryDate, BloodUnit::getDonorId));
         stockTable = new JTable(tableModel);
         stockTable.setRowHeight(30);
         stockTable.getTableHeader().setBackground(DARK_GREY);
         stockTable.getTableHeader().setForeground(Color.WHITE);
+
+        // Units about to expire are highlighted (IDs come from the in-memory expiry index)
+        stockTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+            @Override public Component getTableCellRendererComponent(JTable t, Object v, boolean isSel, boolean hasFoc, int r, int c) {
+                Component comp = super.getTableCellRendererComponent(t, v, isSel, hasFoc, r, c);
+                if (!isSel) comp.setBackground(expiringIds.contains(tableModel.getRow(r).getBloodId()) ? new Color(255, 255, 200) : Color.WHITE);
+                return comp;
+            }
+        });
+
+        expirySummaryLabel = new JLabel(" ");
+        expirySummaryLabel.setFont(new Font("SansSerif", Font.BOLD, 12));
+        expirySummaryLabel.setForeground(new Color(150, 100, 0));
+        expirySummaryLabel.setBorder(new EmptyBorder(6, 10, 6, 10));
+
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setBackground(LIGHT_BG);
+        // Filtered and sorted by the database (BloodUnitDAO.getBloodUnitsAfter)
+        filterBar = new FilterBar(new String[]{"Usable", "Expiring", "Expired"}, "Expiry", "Blood ID or donor ID")
+                .addSort("Expiry (soonest)", "expiry_date", false)
+                .addSort("Expiry (latest)", "expiry_date", true)
+                .addSort("Donation date", "donation_date", true)
+                .addSort("Blood type", "blood_type", false)
+                .addSort("Largest quantity", "quantity", true);
+        JPanel filterAndSummary = new JPanel(new BorderLayout());
+        filterAndSummary.setOpaque(false);
+        filterAndSummary.add(filterBar, BorderLayout.NORTH);
+        filterAndSummary.add(expirySummaryLabel, BorderLayout.SOUTH);
+        tablePanel.add(filterAndSummary, BorderLayout.NORTH);
         JScrollPane scrollPane = new JScrollPane(stockTable);
+        tableModel.prefetchOnScroll(stockTable);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
-        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(tablePanel, BorderLayout.CENTER);
         add(mainPanel, BorderLayout.CENTER);
     }
 
@@ -149,8 +197,29 @@ public class BloodStockPage extends JFrame {
     public JButton getBackButton() { return backButton; }
     public JTable getStockTable() { return stockTable; }
     public void showMessage(String m) { JOptionPane.showMessageDialog(this, m); }
+    public BusyIndicator getBusyIndicator() { return busyIndicator; }
+    public FilterBar getFilterBar() { return filterBar; }
+    public JButton getImportButton() { return importButton; }
+    public JButton getExportButton() { return exportButton; }
+    /** Asks where to export the rows the filter shows; null if the user cancels. */
+    public java.io.File chooseExportFile() { return ExportChooser.choose(this, "blood_units"); }
+    /** Asks for the CSV file to import; null if the user cancels. */
+    public java.io.File chooseCsvFile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import CSV");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV files", "csv"));
+        return chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+    }
     public void clearForm() { bloodTypeComboBox.setSelectedIndex(0); quantityField.setText(""); donationDateSpinner.setValue(new java.util.Date()); expiryDateSpinner.setValue(new java.util.Date()); donorIdField.setText(""); }
-    public void refreshTable(List<BloodUnit> units) { tableModel.setRowCount(0); for (BloodUnit u : units) tableModel.addRow(new Object[]{u.getBloodId(), u.getBloodType(), u.getQuantity(), u.getDonationDate(), u.getExpiryDate(), u.getDonorId()}); }
+    public void setExpiringUnits(List<Integer> ids, int bags, int days) {
+        expiringIds = new HashSet<>(ids);
+        expirySummaryLabel.setText(ids.isEmpty() ? "No units expire in the next " + days + " days."
+                : ids.size() + " unit(s), " + bags + " bag(s), expire in the next " + days + " days (highlighted).");
+        stockTable.repaint();
+    }
+    public ListTableModel<BloodUnit> getTableModel() { return tableModel; }
+    public void upsertRow(BloodUnit u) { tableModel.upsertRow(u); }
+    public void removeRow(int bloodId) { tableModel.removeRow(bloodId); }
 
     private JLabel createLabel(String t) { JLabel l=new JLabel(t); l.setFont(new Font("SansSerif",Font.BOLD,12)); l.setForeground(Color.GRAY); l.setAlignmentX(Component.LEFT_ALIGNMENT); return l; }
     private JTextField createTextField() { JTextField t=new JTextField(); t.setFont(INPUT_FONT); t.setBorder(BorderFactory.createEmptyBorder(5,5,5,5)); return t; }
@@ -0,0 +1,35 @@
+package view;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Small "Loading..." bar shown in a page's header while database work runs in the background.
+ * The page stays usable; the bar only tells the user that fresh data is on its way.
+ * Counts nested tasks, so it hides only when the last one finishes. EDT only.
+ */
+public class BusyIndicator extends JProgressBar {
+
+    private int running;
+
+    public BusyIndicator() {
+        setIndeterminate(true);
+        setStringPainted(true);
+        setString("Loading...");
+        setFont(new Font("SansSerif", Font.BOLD, 11));
+        setPreferredSize(new Dimension(110, 18));
+        setVisible(false);
+    }
+
+    public void taskStarted() {
+        running++;
+        setVisible(true);
+    }
+
+    public void taskFinished() {
+        if (running > 0) running--;
+        if (running == 0) setVisible(false);
+    }
+
+    public boolean isBusy() { return running > 0; }
+}
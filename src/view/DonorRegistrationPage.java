@@ -4,13 +4,12 @@ import model.Donor;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
 import javax.imageio.ImageIO;
+import java.util.List;
 
 public class DonorRegistrationPage extends JFrame {
 
@@ -25,9 +24,11 @@ public class DonorRegistrationPage extends JFrame {
     private JTextField contactField;
     private JComboBox<String> bloodTypeComboBox;
     private JSpinner dateSpinner;
-    private JButton saveButton, updateButton, deleteButton, donateButton, backButton;
+    private JButton saveButton, updateButton, deleteButton, donateButton, importButton, exportButton, backButton;
     private JTable donorTable;
-    private DefaultTableModel tableModel;
+    private BusyIndicator busyIndicator;
+    private FilterBar filterBar;
+    private ListTableModel<Donor> tableModel;
 
     public DonorRegistrationPage() {
         setTitle("Donor Registration & Management");
@@ -69,7 +70,8 @@ public class DonorRegistrationPage extends JFrame {
         headerPanel.add(titleLabel, BorderLayout.CENTER);
 
         // Spacer for balance
-        JPanel spacer = new JPanel(); spacer.setOpaque(false); spacer.setPreferredSize(new Dimension(120, 10));
+        JPanel spacer = new JPanel(new GridBagLayout()); spacer.setOpaque(false); spacer.setPreferredSize(new Dimension(120, 10));
+        busyIndicator = new BusyIndicator(); spacer.add(busyIndicator); // visible while data loads in the background
         headerPanel.add(spacer, BorderLayout.EAST);
 
         add(headerPanel, BorderLayout.NORTH);
@@ -117,6 +119,14 @@ public class DonorRegistrationPage extends JFrame {
         sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
         deleteButton = createBigButton("DELETE SELECTED", DARK_GREY);
         sidebarPanel.add(deleteButton);
+        sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        importButton = createBigButton("IMPORT CSV", new Color(70, 110, 160));
+        importButton.setToolTipText("Columns: name, contact, blood_type, date_registered");
+        sidebarPanel.add(importButton);
+        sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        exportButton = createBigButton("EXPORT", new Color(90, 90, 120));
+        exportButton.setToolTipText("Exports the donors the filter shows (.csv, .json, optionally .gz)");
+        sidebarPanel.add(exportButton);
         add(sidebarPanel, BorderLayout.WEST);
 
         // MAIN
@@ -133,16 +143,27 @@ public class DonorRegistrationPage extends JFrame {
         tableTitle.setFont(new Font("SansSerif", Font.BOLD, 18));
         tableTitle.setForeground(Color.DARK_GRAY);
         tableTitle.setBorder(new EmptyBorder(0, 0, 15, 0));
-        tablePanel.add(tableTitle, BorderLayout.NORTH);
-
-        tableModel = new DefaultTableModel(new String[]{"ID", "Name", "Contact", "Blood Type", "Date"}, 0) {
-            @Override public boolean isCellEditable(int row, int col) { return false; }
-        };
+        // Filtered and sorted by the database (DonorDAO.getDonorsAfter)
+        filterBar = new FilterBar(null, "Registered", "Name or contact (starts with), or donor ID")
+                .addSort("Donor ID", "donor_id", false)
+                .addSort("Newest first", "donor_id", true)
+                .addSort("Name", "name", false)
+                .addSort("Blood type", "blood_type", false)
+                .addSort("Registration date", "date_registered", false);
+        JPanel titleAndFilter = new JPanel(new BorderLayout());
+        titleAndFilter.setOpaque(false);
+        titleAndFilter.add(tableTitle, BorderLayout.NORTH);
+        titleAndFilter.add(filterBar, BorderLayout.SOUTH);
+        tablePanel.add(titleAndFilter, BorderLayout.NORTH);
+
+        tableModel = new ListTableModel<>(new String[]{"ID", "Name", "Contact", "Blood Type", "Date"}, Donor::getDonorId,
+                List.of(Donor::getDonorId, Donor::getName, Donor::getContact, Donor::getBloodType, Donor::getDateRegistered));
         donorTable = new JTable(tableModel);
         donorTable.setRowHeight(30);
         donorTable.getTableHeader().setBackground(DARK_GREY);
         donorTable.getTableHeader().setForeground(Color.WHITE);
         JScrollPane scrollPane = new JScrollPane(donorTable);
+        tableModel.prefetchOnScroll(donorTable);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
         tablePanel.add(scrollPane, BorderLayout.CENTER);
         mainPanel.add(tablePanel, BorderLayout.CENTER);
@@ -165,8 +186,23 @@ public class DonorRegistrationPage extends JFrame {
     public JButton getBackButton() { return backButton; }
     public JTable getDonorTable() { return donorTable; }
     public void showMessage(String m) { JOptionPane.showMessageDialog(this, m); }
+    public BusyIndicator getBusyIndicator() { return busyIndicator; }
+    public FilterBar getFilterBar() { return filterBar; }
+    public JButton getImportButton() { return importButton; }
+    public JButton getExportButton() { return exportButton; }
+    /** Asks where to export the rows the filter shows; null if the user cancels. */
+    public java.io.File chooseExportFile() { return ExportChooser.choose(this, "donors"); }
+    /** Asks for the CSV file to import; null if the user cancels. */
+    public java.io.File chooseCsvFile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import CSV");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV files", "csv"));
+        return chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+    }
     public void clearForm() { nameField.setText(""); contactField.setText(""); bloodTypeComboBox.setSelectedIndex(0); dateSpinner.setValue(new java.util.Date()); }
-    public void refreshTable(List<Donor> donors) { tableModel.setRowCount(0); for (Donor d : donors) tableModel.addRow(new Object[]{d.getDonorId(), d.getName(), d.getContact(), d.getBloodType(), d.getDateRegistered()}); }
+    public ListTableModel<Donor> getTableModel() { return tableModel; }
+    public void upsertRow(Donor d) { tableModel.upsertRow(d); }
+    public void removeRow(int donorId) { tableModel.removeRow(donorId); }
 
     private JLabel createLabel(String t) { JLabel l=new JLabel(t); l.setFont(new Font("SansSerif",Font.BOLD,12)); l.setForeground(Color.GRAY); l.setAlignmentX(Component.LEFT_ALIGNMENT); return l; }
     private JTextField createTextField() { JTextField t=new JTextField(); t.setFont(INPUT_FONT); t.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5)); return t; }
@@ -0,0 +1,59 @@
+package view;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileFilter;
+import java.awt.*;
+import java.io.File;
+import java.time.LocalDate;
+
+/**
+ * Save dialog for the EXPORT buttons. The format follows the file name (.csv, .json,
+ * .csv.gz, .json.gz; see dao.Exporter); a name without one of those gets the chosen
+ * filter's extension.
+ */
+final class ExportChooser {
+
+    private static final String[][] TYPES = {
+            {"CSV (.csv)", ".csv"}, {"CSV, gzipped (.csv.gz)", ".csv.gz"},
+            {"JSON (.json)", ".json"}, {"JSON, gzipped (.json.gz)", ".json.gz"}};
+
+    private ExportChooser() {
+        // Static helper only.
+    }
+
+    /** Asks where to export; null if the user cancels. */
+    static File choose(Component parent, String baseName) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export");
+        chooser.setAcceptAllFileFilterUsed(false);
+        for (String[] type : TYPES) chooser.addChoosableFileFilter(filter(type[0], type[1]));
+        chooser.setFileFilter(chooser.getChoosableFileFilters()[0]);
+        chooser.setSelectedFile(new File(baseName + "_" + LocalDate.now() + ".csv"));
+        while (chooser.showSaveDialog(parent) == JFileChooser.APPROVE_OPTION) {
+            File file = chooser.getSelectedFile();
+            if (extension(file.getName()) == null) {
+                String ext = TYPES[0][1];
+                for (String[] type : TYPES) if (type[0].equals(chooser.getFileFilter().getDescription())) ext = type[1];
+                file = new File(file.getParentFile(), file.getName() + ext);
+            }
+            if (!file.exists() || JOptionPane.showConfirmDialog(parent, file.getName() + " exists. Replace it?",
+                    "Export", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private static String extension(String name) {
+        String lower = name.toLowerCase();
+        for (String[] type : TYPES) if (lower.endsWith(type[1])) return type[1];
+        return null;
+    }
+
+    private static FileFilter filter(String description, String ext) {
+        return new FileFilter() {
+            @Override public boolean accept(File f) { return f.isDirectory() || f.getName().toLowerCase().endsWith(ext); }
+            @Override public String getDescription() { return description; }
+        };
+    }
+}
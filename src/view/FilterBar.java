@@ -0,0 +1,136 @@
+package view;
+
+import dao.ListQuery;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filter row shown above a page's table: blood type, an optional status, a date range,
+ * a search box and the sort order. The filtering is done by the database; this bar only
+ * builds the ListQuery.
+ *
+ * Typing is debounced: the change listener runs once the user has stopped typing for
+ * DEBOUNCE_MS, not on every key. Picking from a combo box applies at once. A date that
+ * doesn't parse is shown in red and left out until it is fixed.
+ */
+public class FilterBar extends JPanel {
+
+    private static final int DEBOUNCE_MS = 300;
+    private static final Color BAD_INPUT = new Color(190, 20, 20);
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 12);
+
+    private final JComboBox<String> typeBox =
+            new JComboBox<>(new String[]{"All types", "A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"});
+    private final JComboBox<String> statusBox;
+    private final JTextField fromField = new JTextField(8);
+    private final JTextField toField = new JTextField(8);
+    private final JTextField searchField = new JTextField(12);
+    private final JComboBox<String> sortBox = new JComboBox<>();
+    private final List<String> sortColumns = new ArrayList<>();
+    private final List<Boolean> sortDescending = new ArrayList<>();
+    private final Timer debounce;
+    private Runnable onChange = () -> {};
+
+    /**
+     * @param statuses   the status choices after "All" (null = no status filter)
+     * @param dateLabel  what the date range filters, e.g. "Expiry"
+     * @param searchHint tooltip of the search box, e.g. "Blood ID or donor ID"
+     */
+    public FilterBar(String[] statuses, String dateLabel, String searchHint) {
+        super(new FlowLayout(FlowLayout.LEFT, 8, 6));
+        setBackground(Color.WHITE);
+        setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, new Color(220, 220, 220)));
+
+        debounce = new Timer(DEBOUNCE_MS, e -> onChange.run());
+        debounce.setRepeats(false);
+
+        add(label("Type")); add(typeBox);
+        if (statuses != null) {
+            String[] items = new String[statuses.length + 1];
+            items[0] = "All";
+            System.arraycopy(statuses, 0, items, 1, statuses.length);
+            statusBox = new JComboBox<>(items);
+            add(label("Status")); add(statusBox);
+        } else {
+            statusBox = null;
+        }
+        add(label(dateLabel + " from")); add(fromField);
+        add(label("to")); add(toField);
+        fromField.setToolTipText("yyyy-MM-dd");
+        toField.setToolTipText("yyyy-MM-dd");
+        add(label("Search")); add(searchField);
+        searchField.setToolTipText(searchHint);
+        add(label("Sort")); add(sortBox);
+
+        for (JComponent c : new JComponent[]{typeBox, statusBox, fromField, toField, searchField, sortBox}) {
+            if (c != null) c.setFont(FONT);
+        }
+        typeBox.addActionListener(e -> changedNow());
+        if (statusBox != null) statusBox.addActionListener(e -> changedNow());
+        sortBox.addActionListener(e -> changedNow());
+        for (JTextField f : new JTextField[]{fromField, toField, searchField}) {
+            f.getDocument().addDocumentListener(new DocumentListener() {
+                @Override public void insertUpdate(DocumentEvent e) { typed(); }
+                @Override public void removeUpdate(DocumentEvent e) { typed(); }
+                @Override public void changedUpdate(DocumentEvent e) { typed(); }
+            });
+        }
+    }
+
+    /** Adds a sort choice; the first one added is selected. */
+    public FilterBar addSort(String label, String column, boolean descending) {
+        sortColumns.add(column);
+        sortDescending.add(descending);
+        sortBox.addItem(label);
+        return this;
+    }
+
+    /** Called on the EDT when the filter may have changed. */
+    public void setOnChange(Runnable onChange) { this.onChange = onChange; }
+
+    /** The filter as it is shown now. */
+    public ListQuery getQuery() {
+        ListQuery q = ListQuery.ALL
+                .withBloodType(typeBox.getSelectedIndex() > 0 ? (String) typeBox.getSelectedItem() : null)
+                .withDates(date(fromField), date(toField))
+                .withText(searchField.getText());
+        if (statusBox != null && statusBox.getSelectedIndex() > 0) q = q.withStatus((String) statusBox.getSelectedItem());
+        int s = sortBox.getSelectedIndex();
+        if (s >= 0) q = q.sortedBy(sortColumns.get(s), sortDescending.get(s));
+        return q;
+    }
+
+    private void typed() { debounce.restart(); }
+
+    private void changedNow() {
+        debounce.stop();
+        onChange.run();
+    }
+
+    // Empty or unparsable = no limit; unparsable is flagged in red
+    private static LocalDate date(JTextField f) {
+        String text = f.getText().trim();
+        f.setForeground(Color.BLACK);
+        if (text.isEmpty()) return null;
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            f.setForeground(BAD_INPUT);
+            return null;
+        }
+    }
+
+    private static JLabel label(String text) {
+        JLabel l = new JLabel(text);
+        l.setFont(new Font("SansSerif", Font.BOLD, 12));
+        l.setForeground(new Color(80, 80, 80));
+        return l;
+    }
+}
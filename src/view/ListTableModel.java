@@ -0,0 +1,296 @@
+package view;
+
+import javax.swing.JTable;
+import javax.swing.JViewport;
+import javax.swing.table.AbstractTableModel;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-only table model that shows a list of model objects (BloodUnit, Donor, ...) directly.
+ *
+ * Replaces DefaultTableModel + setRowCount(0) + addRow(...): no Vector or boxed values
+ * per row, and one change event per refresh instead of one per row. Cell values are
+ * only produced for the rows JTable actually paints.
+ *
+ * Rows are identified by their database id, so a single saved, updated or deleted
+ * entity can be applied with row-level events (upsertRow / removeRow). JTable keeps
+ * the selection and scroll position across those, unlike a full reload. A saved row that
+ * no longer matches the table's filter (setFilter) is taken out instead.
+ *
+ * Paging: the table can hold just the first page(s) of a long list. When the table is
+ * scrolled to a row close to the end of what is loaded (see prefetchOnScroll), the "more
+ * rows" loader is called (once) to fetch the next page in the background, which then
+ * arrives through appendRows(). Painting never triggers a load.
+ */
+public class ListTableModel<T> extends AbstractTableModel {
+
+    /** A sync that changes more rows than this fraction is shown as one full refresh instead. */
+    private static final double MAX_SYNC_CHANGE_FRACTION = 0.25;
+
+    /** The next page is requested when a row this close to the end is scrolled into view. */
+    private static final int PREFETCH_ROWS = 50;
+
+    private final String[] columnNames;
+    private final ToIntFunction<T> idOf;
+    private final List<Function<T, ?>> columns;
+    private Comparator<T> order;
+    private Predicate<T> filter = row -> true;
+    private List<T> rows = new ArrayList<>();
+
+    // id -> row index, valid for rows [0, indexedRows). A change at row i only cuts the valid
+    // range back to i; indexOf() extends it again when it has to look further.
+    private final Map<Integer, Integer> positions = new HashMap<>();
+    private int indexedRows;
+
+    // Paging state, EDT only
+    private Runnable moreRowsLoader;
+    private boolean hasMore;
+    private boolean loadingMore;
+    private int generation; // bumped whenever the rows are replaced, or a sync moves the end of the loaded range
+
+    /**
+     * @param columnNames the header of each column
+     * @param idOf        the row's database id, e.g. BloodUnit::getBloodId
+     * @param columns     one getter per column, e.g. List.of(BloodUnit::getBloodId, BloodUnit::getBloodType)
+     */
+    public ListTableModel(String[] columnNames, ToIntFunction<T> idOf, List<Function<T, ?>> columns) {
+        if (columnNames.length != columns.size()) throw new IllegalArgumentException("One getter per column name");
+        this.columnNames = columnNames;
+        this.idOf = idOf;
+        this.columns = List.copyOf(columns);
+    }
+
+    /**
+     * The order the DAO returns the rows in. New and changed rows are put at their place
+     * in that order; without one they are added at the end.
+     */
+    public void setOrder(Comparator<T> order) { this.order = order; }
+
+    /** The rows the list query returns. A saved row outside it is removed, or not added. */
+    public void setFilter(Predicate<T> filter) { this.filter = filter; }
+
+    /**
+     * Shows a new list. The list is used as it is (not copied), so the caller must not
+     * change it afterwards; the DAOs return a fresh list on every call.
+     */
+    public void setRows(List<T> rows) {
+        setRows(rows, false);
+    }
+
+    /** Shows the first page of a longer list; hasMore = there are rows after it. */
+    public void setRows(List<T> rows, boolean hasMore) {
+        this.rows = rows != null ? rows : new ArrayList<>();
+        positions.clear();
+        indexedRows = 0;
+        this.hasMore = hasMore;
+        this.loadingMore = false;
+        generation++;
+        fireTableDataChanged();
+    }
+
+    /** Called (on the EDT) when the next page is needed; it should end in appendRows() or moreRowsFailed(). */
+    public void setMoreRowsLoader(Runnable loader) { this.moreRowsLoader = loader; }
+
+    /**
+     * Follows the scrolling of 'table', which must already be in a JScrollPane, and asks for
+     * the next page when the last row in view is within PREFETCH_ROWS of the end. The viewport
+     * also reports a resize and new rows, so a page that doesn't fill it asks for the next.
+     */
+    public void prefetchOnScroll(JTable table) {
+        JViewport viewport = (JViewport) table.getParent();
+        viewport.addChangeListener(e -> {
+            Rectangle shown = viewport.getViewRect();
+            int last = table.rowAtPoint(new Point(shown.x, shown.y + shown.height - 1));
+            if (last >= 0) last = table.convertRowIndexToModel(last);
+            rowsShownUpTo(last < 0 ? rows.size() - 1 : last); // below the last row: all of them are shown
+        });
+    }
+
+    private void rowsShownUpTo(int lastRow) {
+        if (hasMore && !loadingMore && moreRowsLoader != null && lastRow >= rows.size() - PREFETCH_ROWS) {
+            loadingMore = true;
+            moreRowsLoader.run();
+        }
+    }
+
+    /** Changes each time the rows are replaced or their end moves, so a page requested before that can be recognised as stale. */
+    public int getGeneration() { return generation; }
+
+    public boolean hasMore() { return hasMore; }
+
+    /** The last loaded row (the keyset cursor for the next page), or null if the table is empty. */
+    public T getLastRow() { return rows.isEmpty() ? null : rows.get(rows.size() - 1); }
+
+    /** Adds the next page below the loaded rows. Ignored if the rows were replaced since it was requested. */
+    public void appendRows(List<T> page, boolean hasMore, int requestedGeneration) {
+        loadingMore = false;
+        if (requestedGeneration != generation) return; // stale; the next scroll asks again from the new last row
+        this.hasMore = hasMore;
+        if (page.isEmpty()) return;
+        int first = rows.size();
+        rows.addAll(page);
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    /** The page could not be loaded. Stop asking until the next refresh or sync. */
+    public void moreRowsFailed() {
+        loadingMore = false;
+        hasMore = false;
+    }
+
+    /** Adds the row, or replaces the row with the same id; removes it if it no longer matches the filter. */
+    public void upsertRow(T row) {
+        if (!filter.test(row)) {
+            removeRow(idOf.applyAsInt(row));
+            return;
+        }
+        put(row);
+    }
+
+    // upsertRow() for a row the database just returned for the list query, so no filter check
+    private void put(T row) {
+        int old = indexOf(idOf.applyAsInt(row));
+        if (old >= 0) {
+            if (order == null || fitsAt(row, old)) {
+                rows.set(old, row);
+                fireTableRowsUpdated(old, old);
+                return;
+            }
+            removeAt(old);
+        }
+        int at = insertionPoint(row);
+        if (hasMore && at == rows.size()) return; // belongs to a page that isn't loaded yet
+        rows.add(at, row);
+        indexedRows = Math.min(indexedRows, at);
+        fireTableRowsInserted(at, at);
+    }
+
+    /** Removes the row with this id, if it is shown. */
+    public void removeRow(int id) {
+        int i = indexOf(id);
+        if (i >= 0) removeAt(i);
+    }
+
+    private void removeAt(int i) {
+        positions.remove(idOf.applyAsInt(rows.remove(i)));
+        indexedRows = Math.min(indexedRows, i);
+        fireTableRowsDeleted(i, i);
+    }
+
+    /**
+     * Brings the table in line with a fresh copy of the data (e.g. other terminals' edits),
+     * firing events only for the rows that actually changed.
+     */
+    public void syncRows(List<T> fresh) {
+        syncRows(fresh, false);
+    }
+
+    /** syncRows() for a paged table: 'fresh' is the loaded range read again, hasMore as for setRows. */
+    public void syncRows(List<T> fresh, boolean hasMore) {
+        boolean hadMore = this.hasMore;
+        Integer lastBefore = lastId();
+        applySync(fresh, hasMore);
+        // A page in flight was asked for after lastBefore. It still fits unless the loaded range
+        // now ends elsewhere (setRows() has bumped the generation itself when it replaced the rows).
+        if (hadMore != hasMore || !Objects.equals(lastBefore, lastId())) generation++;
+    }
+
+    private void applySync(List<T> fresh, boolean hasMore) {
+        this.hasMore = hasMore;
+        Map<Integer, T> byId = new HashMap<>(fresh.size() * 2);
+        for (T r : fresh) byId.put(idOf.applyAsInt(r), r);
+
+        // Count the changes first; if most of the table changed, one full refresh is cheaper
+        int changes = 0;
+        Set<Integer> shown = new HashSet<>(rows.size() * 2);
+        for (T r : rows) {
+            int id = idOf.applyAsInt(r);
+            shown.add(id);
+            T now = byId.get(id);
+            if (now == null || !sameValues(r, now)) changes++;
+        }
+        changes += fresh.size() - (rows.size() - countMissing(byId));
+        if (changes == 0) return;
+        if (changes > Math.max(1, rows.size() * MAX_SYNC_CHANGE_FRACTION)) {
+            setRows(fresh, hasMore);
+            return;
+        }
+
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (!byId.containsKey(idOf.applyAsInt(rows.get(i)))) removeAt(i);
+        }
+        for (T now : fresh) {
+            int id = idOf.applyAsInt(now);
+            if (!shown.contains(id)) { put(now); continue; }
+            int i = indexOf(id);
+            if (!sameValues(rows.get(i), now)) put(now);
+        }
+    }
+
+    /** The object shown in a row (model index). */
+    public T getRow(int row) { return rows.get(row); }
+
+    /** The row showing this id, or -1. */
+    public int indexOf(int id) {
+        Integer at = positions.get(id);
+        if (at != null && at < indexedRows && idOf.applyAsInt(rows.get(at)) == id) return at;
+        while (indexedRows < rows.size()) {
+            int i = indexedRows++;
+            int rowId = idOf.applyAsInt(rows.get(i));
+            positions.put(rowId, i);
+            if (rowId == id) return i;
+        }
+        return -1;
+    }
+
+    @Override public int getRowCount() { return rows.size(); }
+    @Override public int getColumnCount() { return columns.size(); }
+    @Override public String getColumnName(int column) { return columnNames[column]; }
+    @Override public Object getValueAt(int row, int column) { return columns.get(column).apply(rows.get(row)); }
+    @Override public boolean isCellEditable(int row, int column) { return false; }
+
+    private Integer lastId() {
+        return rows.isEmpty() ? null : idOf.applyAsInt(rows.get(rows.size() - 1));
+    }
+
+    private int countMissing(Map<Integer, T> byId) {
+        int missing = 0;
+        for (T r : rows) if (!byId.containsKey(idOf.applyAsInt(r))) missing++;
+        return missing;
+    }
+
+    // Same value in every column = nothing visible changed
+    private boolean sameValues(T a, T b) {
+        for (Function<T, ?> c : columns) if (!Objects.equals(c.apply(a), c.apply(b))) return false;
+        return true;
+    }
+
+    private boolean fitsAt(T row, int i) {
+        return (i == 0 || order.compare(rows.get(i - 1), row) <= 0)
+                && (i == rows.size() - 1 || order.compare(row, rows.get(i + 1)) <= 0);
+    }
+
+    // After the last row that sorts before or equal to 'row' (binary search)
+    private int insertionPoint(T row) {
+        if (order == null) return rows.size();
+        int lo = 0, hi = rows.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (order.compare(rows.get(mid), row) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -1,9 +1,13 @@
 package view;
 
 import controller.AlertController;
+import controller.AlertScheduler;
+import controller.BackgroundTasks;
 import controller.BloodRequestController;
 import controller.BloodUnitController;
+import controller.Diagnostics;
 import controller.DonorController;
+import controller.StockReconciler;
 import dao.AlertDAO;
 import dao.BloodRequestDAO;
 import dao.BloodUnitDAO;
@@ -29,6 +33,11 @@ public class MainDashboard extends JFrame {
 
     private final User currentUser;
 
+    // Red counter on the "Expiry Alerts" card, kept current by the background alert scan
+    private JLabel alertBadge;
+    private final AlertScheduler.AlertListener badgeUpdater =
+            (result, pending) -> SwingUtilities.invokeLater(() -> setAlertBadge(pending));
+
     public MainDashboard() {
         this(new User(0, "Administrator", "", "Admin"));
     }
@@ -84,9 +93,22 @@ public class MainDashboard extends JFrame {
             new app.App().main(null);
         });
 
+        // Saves the flight recording, for when "the system hung"
+        JButton diagnosticsBtn = new JButton("SAVE DIAGNOSTICS");
+        diagnosticsBtn.setFont(new Font("SansSerif", Font.BOLD, 12));
+        diagnosticsBtn.setForeground(PRIMARY_RED);
+        diagnosticsBtn.setBackground(Color.WHITE);
+        diagnosticsBtn.setFocusPainted(false);
+        diagnosticsBtn.setBorder(logoutBtn.getBorder());
+        diagnosticsBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        diagnosticsBtn.setToolTipText("Save the last minutes of activity to a file for IT support");
+        diagnosticsBtn.addActionListener(e -> saveDiagnostics(diagnosticsBtn));
+
         // Wrapper for vertical centering
         JPanel btnWrapper = new JPanel(new GridBagLayout());
         btnWrapper.setOpaque(false);
+        btnWrapper.add(diagnosticsBtn, new GridBagConstraints(0, 0, 1, 1, 0, 0,
+                GridBagConstraints.CENTER, GridBagConstraints.NONE, new Insets(0, 0, 0, 10), 0, 0));
         btnWrapper.add(logoutBtn);
         headerPanel.add(btnWrapper, BorderLayout.EAST);
 
@@ -103,13 +125,30 @@ public class MainDashboard extends JFrame {
         gridPanel.add(createDashboardCard("Blood Requests", "Process Hospital Requests", new ClipboardIcon(), e -> openRequestModule()));
 
         if ("Admin".equalsIgnoreCase(user.getRole())) {
-            gridPanel.add(createDashboardCard("Expiry Alerts", "View Warnings & Status", new BellIcon(), e -> openAlertModule()));
+            JPanel alertCard = createDashboardCard("Expiry Alerts", "View Warnings & Status", new BellIcon(), e -> openAlertModule());
+            alertBadge = new JLabel("", SwingConstants.CENTER);
+            alertBadge.setFont(new Font("SansSerif", Font.BOLD, 14));
+            alertBadge.setForeground(Color.WHITE);
+            alertBadge.setBackground(PRIMARY_RED);
+            alertBadge.setOpaque(true);
+            alertBadge.setBorder(new EmptyBorder(4, 10, 4, 10));
+            JPanel badgeWrapper = new JPanel(new GridBagLayout()); badgeWrapper.setOpaque(false); badgeWrapper.add(alertBadge);
+            alertCard.add(badgeWrapper, BorderLayout.EAST);
+            gridPanel.add(alertCard);
+
+            AlertScheduler scheduler = AlertScheduler.getInstance();
+            setAlertBadge(scheduler.getLastPendingAlerts());
+            scheduler.addListener(badgeUpdater);
         } else {
             gridPanel.add(createLockedCard("Expiry Alerts", "Restricted Access", new BellIcon()));
         }
 
         add(gridPanel, BorderLayout.CENTER);
 
+        // Keep alerts and stock counters current in the background, whoever is logged in
+        AlertScheduler.getInstance().start();
+        StockReconciler.getInstance().start();
+
         // 3. --- FOOTER ---
         JPanel footerPanel = new JPanel();
         footerPanel.setBackground(Color.WHITE);
@@ -117,6 +156,34 @@ public class MainDashboard extends JFrame {
         add(footerPanel, BorderLayout.SOUTH);
     }
 
+    private void saveDiagnostics(JButton button) {
+        button.setEnabled(false);
+        new BackgroundTasks(null).run(Diagnostics.getInstance()::dump,
+                file -> {
+                    button.setEnabled(true);
+                    JOptionPane.showMessageDialog(this, "Diagnostics saved to:\n" + file.toAbsolutePath()
+                            + "\n\nPlease send this file to IT support.", "Diagnostics", JOptionPane.INFORMATION_MESSAGE);
+                },
+                error -> {
+                    button.setEnabled(true);
+                    JOptionPane.showMessageDialog(this, "Could not save diagnostics: " + error.getMessage(),
+                            "Diagnostics", JOptionPane.ERROR_MESSAGE);
+                });
+    }
+
+    private void setAlertBadge(int pending) {
+        if (alertBadge == null) return;
+        alertBadge.setText(pending > 0 ? String.valueOf(pending) : "");
+        alertBadge.setVisible(pending > 0);
+        alertBadge.setToolTipText(pending + " pending alert(s)");
+    }
+
+    @Override
+    public void dispose() {
+        AlertScheduler.getInstance().removeListener(badgeUpdater);
+        super.dispose();
+    }
+
     // --- NAVIGATION METHODS ---
     // These methods launch the specific controllers when a card is clicked
 